@@ -2,6 +2,8 @@ package com.demo.ec.bff.gateway.client;
 
 import com.demo.ec.bff.gateway.client.dto.SearchResponse;
 import com.demo.ec.bff.gateway.client.dto.SuggestResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -10,40 +12,69 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
 import java.util.Collections;
 
 @Component
 public class ProductSearchClient {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchClient.class);
+
     private final RestTemplate restTemplate;
     private final String baseUrl;
+    private final Duration slowCallThreshold;
 
     public ProductSearchClient(RestTemplate restTemplate,
-                               @Value("${es-service.base-url}") String baseUrl) {
+                               @Value("${es-service.base-url}") String baseUrl,
+                               @Value("${es-service.slow-call-threshold:500ms}") Duration slowCallThreshold) {
         this.restTemplate = restTemplate;
         this.baseUrl = baseUrl;
+        this.slowCallThreshold = slowCallThreshold;
     }
 
     public SearchResponse searchProducts(String q, Long minPrice, Long maxPrice,
                                          String sort, int page, int size) {
-        String url = UriComponentsBuilder.fromHttpUrl(baseUrl + "/api/search/products")
+        return searchProducts(q, null, minPrice, maxPrice, false, sort, page, size, null, false);
+    }
+
+    /**
+     * Searches products. Pass {@code cursor="*"} to start cursor-based paging and the returned
+     * {@code nextCursor} to fetch the following page; a null cursor uses page/size paging.
+     * With {@code facets} the response also carries category and price range counts (page/size paging only).
+     * With {@code inStock} only products that have stock are returned.
+     */
+    public SearchResponse searchProducts(String q, Long categoryId, Long minPrice, Long maxPrice, boolean inStock,
+                                         String sort, int page, int size, String cursor, boolean facets) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(baseUrl + "/api/search/products")
                 .queryParam("q", q)
+                .queryParam("categoryId", categoryId)
                 .queryParam("minPrice", minPrice)
                 .queryParam("maxPrice", maxPrice)
                 .queryParam("sort", sort)
                 .queryParam("page", page)
-                .queryParam("size", size)
-                .toUriString();
+                .queryParam("size", size);
+        if (cursor != null && !cursor.isBlank()) {
+            builder.queryParam("cursor", cursor);
+        }
+        if (inStock) {
+            builder.queryParam("inStock", true);
+        }
+        if (facets) {
+            builder.queryParam("facets", true);
+        }
+        String url = builder.toUriString();
 
+        long started = System.nanoTime();
         ResponseEntity<SearchResponse> response = restTemplate.exchange(
                 url,
                 HttpMethod.GET,
                 null,
                 new ParameterizedTypeReference<>() {}
         );
+        logIfSlow(url, started);
 
         SearchResponse body = response.getBody();
         if (body == null) {
-            return new SearchResponse(Collections.emptyList(), 0L, page, size, null);
+            return new SearchResponse(Collections.emptyList(), 0L, "eq", page, size, null, null, null, false);
         }
         return body;
     }
@@ -54,12 +85,14 @@ public class ProductSearchClient {
                 .queryParam("size", size)
                 .toUriString();
 
+        long started = System.nanoTime();
         ResponseEntity<SuggestResponse> response = restTemplate.exchange(
                 url,
                 HttpMethod.GET,
                 null,
                 new ParameterizedTypeReference<>() {}
         );
+        logIfSlow(url, started);
 
         SuggestResponse body = response.getBody();
         if (body == null) {
@@ -67,4 +100,14 @@ public class ProductSearchClient {
         }
         return body;
     }
+
+    /**
+     * Logs es-service calls slower than the threshold; es-service's own slow-query log has the query detail.
+     */
+    private void logIfSlow(String url, long startedNanos) {
+        long elapsedMs = (System.nanoTime() - startedNanos) / 1_000_000;
+        if (elapsedMs >= slowCallThreshold.toMillis()) {
+            log.warn("Slow es-service call: elapsedMs={}, url={}", elapsedMs, url);
+        }
+    }
 }
@@ -12,6 +12,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Component
@@ -19,6 +25,14 @@ public class StorageServiceClient {
 
     private static final Logger log = LoggerFactory.getLogger(StorageServiceClient.class);
 
+    // Same limit as the storage service's BatchLookupRequest.MAX_IDS
+    static final int MAX_BATCH_IDS = 200;
+
+    private static final ParameterizedTypeReference<CommonResponse<List<Product>>> PRODUCT_LIST =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<CommonResponse<List<StockResponse>>> STOCK_LIST =
+            new ParameterizedTypeReference<>() {};
+
     private final RestTemplate restTemplate;
     private final String baseUrl;
 
@@ -100,6 +114,104 @@ public class StorageServiceClient {
         }
     }
 
+    /**
+     * Looks up several products, at most {@link #MAX_BATCH_IDS} per request. Products the storage service does not
+     * know are absent from the map; chunks that cannot be fetched are absent too, so callers fall back as they do for
+     * {@link #getProduct(Long)}. A chunk rejected with a 4xx (e.g. a storage service without the batch endpoint) is
+     * looked up item by item.
+     */
+    public Map<Long, Product> getProducts(Collection<Long> productIds) {
+        Map<Long, Product> products = new LinkedHashMap<>();
+        for (List<Long> chunk : chunks(productIds)) {
+            BatchResponse<Product> response = postBatch("/api/storage/products:batch", chunk, PRODUCT_LIST, "getProducts");
+            switch (response.outcome()) {
+                case OK -> response.items().forEach(product -> products.put(product.id(), product));
+                case REJECTED -> chunk.forEach(id -> getProduct(id).ifPresent(product -> products.put(id, product)));
+                case UNREACHABLE -> { }
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Looks up the stock of several products, at most {@link #MAX_BATCH_IDS} per request, with the same reachability
+     * semantics as {@link #getStock(Long)}: a missing entry from a reachable service means the product does not
+     * exist. A chunk rejected with a 4xx is looked up item by item; if any chunk cannot be fetched the whole result
+     * is reported unreachable.
+     */
+    public StockBatchResult getStocks(Collection<Long> productIds) {
+        Map<Long, StockResponse> stocks = new LinkedHashMap<>();
+        for (List<Long> chunk : chunks(productIds)) {
+            BatchResponse<StockResponse> response = postBatch("/api/storage/stocks:batch", chunk, STOCK_LIST, "getStocks");
+            switch (response.outcome()) {
+                case OK -> response.items().forEach(stock -> stocks.put(stock.getProductId(), stock));
+                case REJECTED -> {
+                    for (Long id : chunk) {
+                        StockLookupResult result = getStock(id);
+                        if (!result.reachable()) {
+                            return new StockBatchResult(Map.of(), false);
+                        }
+                        result.stock().ifPresent(stock -> stocks.put(id, stock));
+                    }
+                }
+                case UNREACHABLE -> {
+                    return new StockBatchResult(Map.of(), false);
+                }
+            }
+        }
+        return new StockBatchResult(stocks, true);
+    }
+
+    private <T> BatchResponse<T> postBatch(String path, List<Long> ids,
+                                           ParameterizedTypeReference<CommonResponse<List<T>>> type, String operation) {
+        String url = baseUrl + path;
+        try {
+            ResponseEntity<CommonResponse<List<T>>> response = restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    new HttpEntity<>(new BatchLookupRequest(ids)),
+                    type
+            );
+            CommonResponse<List<T>> body = response.getBody();
+            if (body == null || !body.isSuccess() || body.getData() == null) {
+                log.warn("StorageServiceClient.{} failed, falling back to single lookups: status={}, body={}",
+                        operation, response.getStatusCode(), body);
+                return new BatchResponse<>(BatchOutcome.REJECTED, List.of());
+            }
+            return new BatchResponse<>(BatchOutcome.OK, body.getData());
+        } catch (org.springframework.web.client.ResourceAccessException ex) {
+            log.error("StorageServiceClient.{} - Cannot connect to storage service at {}: {}",
+                    operation, url, ex.getMessage());
+            return new BatchResponse<>(BatchOutcome.UNREACHABLE, List.of());
+        } catch (org.springframework.web.client.HttpClientErrorException ex) {
+            log.warn("StorageServiceClient.{} - HTTP error, falling back to single lookups: status={}, body={}",
+                    operation, ex.getStatusCode(), ex.getResponseBodyAsString());
+            return new BatchResponse<>(BatchOutcome.REJECTED, List.of());
+        } catch (org.springframework.web.client.HttpServerErrorException ex) {
+            log.error("StorageServiceClient.{} - Server error: status={}, body={}",
+                    operation, ex.getStatusCode(), ex.getResponseBodyAsString());
+            return new BatchResponse<>(BatchOutcome.UNREACHABLE, List.of());
+        } catch (RestClientException ex) {
+            log.error("StorageServiceClient.{} error: {}", operation, ex.getMessage(), ex);
+            return new BatchResponse<>(BatchOutcome.UNREACHABLE, List.of());
+        }
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> productIds) {
+        List<Long> ids = productIds.stream().filter(Objects::nonNull).distinct().toList();
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_BATCH_IDS) {
+            chunks.add(ids.subList(from, Math.min(from + MAX_BATCH_IDS, ids.size())));
+        }
+        return chunks;
+    }
+
+    private enum BatchOutcome { OK, REJECTED, UNREACHABLE }
+
+    private record BatchResponse<T>(BatchOutcome outcome, List<T> items) {}
+
+    public record BatchLookupRequest(List<Long> productIds) {}
+
     public static class CommonResponse<T> {
         private boolean success;
         private String message;
@@ -143,6 +255,19 @@ public class StorageServiceClient {
         public boolean reachable() { return reachable; }
     }
 
+    public static class StockBatchResult {
+        private final Map<Long, StockResponse> stocks;
+        private final boolean reachable;
+
+        public StockBatchResult(Map<Long, StockResponse> stocks, boolean reachable) {
+            this.stocks = stocks;
+            this.reachable = reachable;
+        }
+
+        public Optional<StockResponse> stock(Long productId) { return Optional.ofNullable(stocks.get(productId)); }
+        public boolean reachable() { return reachable; }
+    }
+
     public static class StockResponse {
         private Long productId;
         private Integer total;
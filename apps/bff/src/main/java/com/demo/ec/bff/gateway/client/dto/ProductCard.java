@@ -7,6 +7,7 @@ public record ProductCard(
         String title,
         Long price,
         String thumbnailUrl,
-        Instant createdAt
+        Instant createdAt,
+        Boolean inStock
 ) {
 }
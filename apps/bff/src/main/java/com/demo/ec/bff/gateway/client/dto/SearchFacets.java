@@ -0,0 +1,14 @@
+package com.demo.ec.bff.gateway.client.dto;
+
+import java.util.List;
+
+public record SearchFacets(
+        List<CategoryCount> categories,
+        List<PriceRangeCount> priceRanges
+) {
+    public record CategoryCount(Long categoryId, long count) {
+    }
+
+    public record PriceRangeCount(String key, Long from, Long to, long count) {
+    }
+}
@@ -2,11 +2,19 @@ package com.demo.ec.bff.gateway.client.dto;
 
 import java.util.List;
 
+/**
+ * @param totalRelation {@code gte} when {@code total} is a lower bound (shown as e.g. "10,000+")
+ * @param partial       whether es-service returned incomplete results because a shard timed out
+ */
 public record SearchResponse(
         List<ProductCard> items,
         long total,
+        String totalRelation,
         int page,
         int size,
-        String didYouMean
+        String didYouMean,
+        String nextCursor,
+        SearchFacets facets,
+        boolean partial
 ) {
 }
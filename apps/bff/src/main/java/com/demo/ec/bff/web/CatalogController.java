@@ -41,13 +41,17 @@ public class CatalogController {
     @GetMapping("/products/search")
     public SearchResponse searchProducts(
             @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "categoryId", required = false) Long categoryId,
             @RequestParam(value = "minPrice", required = false) Long minPrice,
             @RequestParam(value = "maxPrice", required = false) Long maxPrice,
+            @RequestParam(value = "inStock", defaultValue = "false") boolean inStock,
             @RequestParam(value = "sort", defaultValue = "relevance") String sort,
             @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "size", defaultValue = "20") int size
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "facets", defaultValue = "false") boolean facets
     ) {
-        return productSearchClient.searchProducts(q, minPrice, maxPrice, sort, page, size);
+        return productSearchClient.searchProducts(q, categoryId, minPrice, maxPrice, inStock, sort, page, size, cursor, facets);
     }
 
     @GetMapping("/products/suggest")
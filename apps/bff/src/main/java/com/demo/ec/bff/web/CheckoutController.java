@@ -33,6 +33,7 @@ import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -64,8 +65,9 @@ public class CheckoutController {
         }
         // calculate total
         BigDecimal total = BigDecimal.ZERO;
+        Map<Long, Product> products = findProducts(request.items());
         for (CartItem item : request.items()) {
-            Product p = findProduct(item.productId());
+            Product p = products.get(item.productId());
             total = total.add(p.price().multiply(BigDecimal.valueOf(item.quantity())));
         }
 
@@ -107,8 +109,9 @@ public class CheckoutController {
         BigDecimal total = BigDecimal.ZERO;
         Map<Long, Integer> counts = new HashMap<>();
         try {
+            Map<Long, Product> products = findProducts(request.items());
             for (CartItem item : request.items()) {
-                Product product = findProduct(item.productId());
+                Product product = products.get(item.productId());
                 total = total.add(product.price().multiply(BigDecimal.valueOf(item.quantity())));
                 counts.merge(product.id(), item.quantity(), Integer::sum);
             }
@@ -352,15 +355,25 @@ public class CheckoutController {
         };
     }
 
-    private Product findProduct(Long productId) {
-        StorageServiceClient.StockLookupResult stockResult = storageServiceClient.getStock(productId);
-        if (stockResult.reachable() && stockResult.stock().isEmpty()) {
-            throw new IllegalArgumentException("商品が存在しません: " + productId);
-        }
-        return storageServiceClient.getProduct(productId)
-                .orElseGet(() -> DemoData.products.stream()
+    // カート内の商品を在庫・商品マスタそれぞれ1回のバッチ呼び出しで解決する
+    private Map<Long, Product> findProducts(List<CartItem> items) {
+        List<Long> productIds = items.stream().map(CartItem::productId).distinct().toList();
+        StorageServiceClient.StockBatchResult stockResult = storageServiceClient.getStocks(productIds);
+        Map<Long, Product> fetched = storageServiceClient.getProducts(productIds);
+        Map<Long, Product> products = new HashMap<>();
+        for (Long productId : productIds) {
+            if (stockResult.reachable() && stockResult.stock(productId).isEmpty()) {
+                throw new IllegalArgumentException("商品が存在しません: " + productId);
+            }
+            Product product = fetched.get(productId);
+            if (product == null) {
+                product = DemoData.products.stream()
                         .filter(p -> p.id().equals(productId))
                         .findFirst()
-                        .orElseThrow(() -> new IllegalArgumentException("商品が存在しません: " + productId)));
+                        .orElseThrow(() -> new IllegalArgumentException("商品が存在しません: " + productId));
+            }
+            products.put(productId, product);
+        }
+        return products;
     }
 }
@@ -0,0 +1,148 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.demo.ec.es.domain.ProductCard;
+import com.demo.ec.es.domain.ProductDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Turning one page of search hits into {@link ProductCard}s, before and after source filtering.
+ * <p>
+ * {@code baseline} deserializes hits carrying the whole {@link ProductDocument} (description, hashes, stock) and
+ * parses every thumbnail URL, as {@code SearchService} did before. {@code cardFields} deserializes hits
+ * limited to the card fields straight into {@link ProductCard} and uses {@link ThumbnailUrlNormalizer#normalize},
+ * which returns imported URLs without parsing them. Both go through the client's {@link JacksonJsonpMapper}
+ * configured as in {@code ElasticsearchConfig}; the network transfer saved by the smaller {@code _source} is not
+ * part of this measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchHitMappingBenchmark {
+    private static final String BUCKET = "ec-images";
+    private static final String PUBLIC_URL_PREFIX = "http://localhost:9000/" + BUCKET + "/";
+
+    @Param({"20", "100"})
+    public int hits;
+
+    @Param({"600"})
+    public int descriptionLength;
+
+    private JacksonJsonpMapper mapper;
+    private ThumbnailUrlNormalizer thumbnailUrls;
+    private JsonpDeserializer<SearchResponse<ProductDocument>> documentResponse;
+    private JsonpDeserializer<SearchResponse<ProductCard>> cardResponse;
+    private byte[] fullSourcePage;
+    private byte[] cardSourcePage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper = new JacksonJsonpMapper(objectMapper);
+        thumbnailUrls = new ThumbnailUrlNormalizer(PUBLIC_URL_PREFIX, BUCKET);
+        documentResponse = SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(ProductDocument.class));
+        cardResponse = SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(ProductCard.class));
+
+        List<ProductDocument> documents = new ArrayList<>(hits);
+        for (long id = 1; id <= hits; id++) {
+            documents.add(new ProductDocument(id, "Product " + id, "d".repeat(descriptionLength), 1000 + id, "ACTIVE",
+                    id % 10, PUBLIC_URL_PREFIX + "products/" + id + "/thumb.jpg", Instant.parse("2024-01-01T00:00:00Z"),
+                    "a".repeat(64), "b".repeat(64), 10, true));
+        }
+        fullSourcePage = page(objectMapper, documents, doc -> objectMapper.convertValue(doc, Map.class));
+        cardSourcePage = page(objectMapper, documents, doc -> objectMapper.convertValue(new ProductCard(doc.productId(),
+                doc.title(), doc.price(), doc.thumbnailUrl(), doc.createdAt(), doc.inStock()), Map.class));
+    }
+
+    @Benchmark
+    public List<ProductCard> baseline() {
+        SearchResponse<ProductDocument> response = documentResponse.deserialize(
+                mapper.jsonProvider().createParser(new ByteArrayInputStream(fullSourcePage)), mapper);
+        List<ProductCard> items = new ArrayList<>();
+        response.hits().hits().forEach(hit -> {
+            ProductDocument doc = hit.source();
+            if (doc != null) {
+                String thumbnailUrl = thumbnailUrls.parse(doc.thumbnailUrl());
+                items.add(new ProductCard(doc.productId(), doc.title(), doc.price(), thumbnailUrl, doc.createdAt(),
+                        doc.inStock()));
+            }
+        });
+        return List.copyOf(items);
+    }
+
+    @Benchmark
+    public List<ProductCard> cardFields() {
+        SearchResponse<ProductCard> response = cardResponse.deserialize(
+                mapper.jsonProvider().createParser(new ByteArrayInputStream(cardSourcePage)), mapper);
+        var pageHits = response.hits().hits();
+        List<ProductCard> items = new ArrayList<>(pageHits.size());
+        for (var hit : pageHits) {
+            ProductCard card = hit.source();
+            if (card == null) {
+                continue;
+            }
+            String thumbnailUrl = thumbnailUrls.normalize(card.thumbnailUrl());
+            items.add(Objects.equals(thumbnailUrl, card.thumbnailUrl()) ? card
+                    : new ProductCard(card.productId(), card.title(), card.price(), thumbnailUrl, card.createdAt(),
+                            card.inStock()));
+        }
+        return List.copyOf(items);
+    }
+
+    /**
+     * A search response body as Elasticsearch returns it, with the given {@code _source} per hit.
+     */
+    private static byte[] page(ObjectMapper objectMapper, List<ProductDocument> documents,
+                               Function<ProductDocument, Map<?, ?>> source) throws IOException {
+        List<Map<String, Object>> hitList = new ArrayList<>(documents.size());
+        for (ProductDocument doc : documents) {
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("_index", "products-v1");
+            hit.put("_id", doc.productId().toString());
+            hit.put("_score", 1.0);
+            hit.put("_source", source.apply(doc));
+            hitList.add(hit);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("took", 3);
+        body.put("timed_out", false);
+        body.put("_shards", Map.of("total", 1, "successful", 1, "skipped", 0, "failed", 0));
+        body.put("hits", Map.of(
+                "total", Map.of("value", documents.size(), "relation", "eq"),
+                "max_score", 1.0,
+                "hits", hitList));
+        return objectMapper.writeValueAsBytes(body);
+    }
+}
@@ -0,0 +1,121 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ThumbnailImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.coobird.thumbnailator.Thumbnails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thumbnail rendering of one JPEG original, before and after the single-decode pipeline.
+ * <p>
+ * {@code baseline} is the previous {@code ThumbnailService.createThumbnail}: {@code Thumbnails.of(InputStream)}
+ * decoding the full-resolution image for a 320x320 JPEG at quality 0.85. The other two run the current
+ * {@link ThumbnailService} configured for the same single output, with source subsampling off and on. Run with
+ * {@code -prof gc} to compare allocation per render ({@code gc.alloc.rate.norm}) as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThumbnailRenderBenchmark {
+
+    @Param({"1600x1200", "4000x3000"})
+    public String original;
+
+    private byte[] jpeg;
+    private ThumbnailService fullDecode;
+    private ThumbnailService subsampled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] size = original.split("x");
+        jpeg = syntheticJpeg(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        fullDecode = new ThumbnailService(properties(false), new SimpleMeterRegistry());
+        subsampled = new ThumbnailService(properties(true), new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fullDecode.shutdown();
+        subsampled.shutdown();
+    }
+
+    @Benchmark
+    public byte[] baseline() throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Thumbnails.of(new ByteArrayInputStream(jpeg))
+                    .size(320, 320)
+                    .outputFormat("jpg")
+                    .outputQuality(0.85)
+                    .toOutputStream(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] singleDecode() throws Exception {
+        return firstVariant(fullDecode.createThumbnails(new ByteArrayInputStream(jpeg)));
+    }
+
+    @Benchmark
+    public byte[] singleDecodeSubsampled() throws Exception {
+        return firstVariant(subsampled.createThumbnails(new ByteArrayInputStream(jpeg)));
+    }
+
+    private static byte[] firstVariant(List<ThumbnailImage> images) {
+        return images.get(0).bytes();
+    }
+
+    private static EsServiceProperties properties(boolean subsampling) {
+        EsServiceProperties properties = new EsServiceProperties();
+        properties.getThumbnail().setWidth(320);
+        properties.getThumbnail().setHeight(320);
+        properties.getThumbnail().setThreads(1);
+        properties.getThumbnail().setSubsampling(subsampling);
+        return properties;
+    }
+
+    /**
+     * Gradient with noise, so the encoded size and decode cost resemble a photo rather than a flat image.
+     */
+    private static byte[] syntheticJpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(32)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(32)) & 0xFF;
+                int b = ((x + y) * 127 / (width + height) + random.nextInt(32)) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "jpg", out);
+            return out.toByteArray();
+        }
+    }
+}
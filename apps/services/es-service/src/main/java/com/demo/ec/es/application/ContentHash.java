@@ -0,0 +1,85 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.domain.ProductDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 fingerprints used by the importer to detect unchanged images and documents.
+ */
+final class ContentHash {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes the image file together with the thumbnail settings, so changing the settings
+     * regenerates thumbnails even when the image itself did not change.
+     */
+    static String ofImage(Path imagePath, String thumbnailSpec) throws IOException {
+        try (DigestInputStream in = hashing(Files.newInputStream(imagePath))) {
+            return ofImage(in, thumbnailSpec);
+        }
+    }
+
+    /**
+     * Wraps an image stream so that everything read through it is hashed, for callers that decode the image
+     * while it streams in. {@link #ofImage(DigestInputStream, String)} then completes the hash.
+     */
+    static DigestInputStream hashing(InputStream in) {
+        return new DigestInputStream(in, sha256());
+    }
+
+    /**
+     * Reads whatever is left of the stream and returns the same hash as {@link #ofImage(Path, String)} would
+     * for the whole image.
+     */
+    static String ofImage(DigestInputStream in, String thumbnailSpec) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (in.read(buffer) >= 0) {
+            // digested as it is read
+        }
+        MessageDigest digest = in.getMessageDigest();
+        digest.update((byte) 0);
+        digest.update(thumbnailSpec.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes every imported field, i.e. all but the stock fields and {@code contentHash} itself. A missing
+     * {@code categoryId} is left out entirely: the import then does not write it, and CSVs without the column keep
+     * the hashes they had before it existed.
+     */
+    static String ofDocument(ProductDocument doc) {
+        MessageDigest digest = sha256();
+        Object[] fields = doc.categoryId() == null
+                ? new Object[]{doc.productId(), doc.title(), doc.description(), doc.price(), doc.status(),
+                        doc.thumbnailUrl(), doc.createdAt(), doc.imageHash()}
+                : new Object[]{doc.productId(), doc.title(), doc.description(), doc.price(), doc.status(),
+                        doc.categoryId(), doc.thumbnailUrl(), doc.createdAt(), doc.imageHash()};
+        for (Object field : fields) {
+            if (field != null) {
+                digest.update(field.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
@@ -2,14 +2,33 @@ package com.demo.ec.es.application;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.PresignedUpload;
 import com.demo.ec.es.domain.ProductDocument;
+import com.demo.ec.es.domain.ThumbnailImage;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Stores product images and renders their thumbnails.
+ * <p>
+ * Originals reach object storage either through this service (streamed, multipart for large files) or directly
+ * from the client via a presigned PUT URL. Either way thumbnails are rendered asynchronously from the stored
+ * original once the upload is complete; a product whose image is replaced again before its job ran is rendered
+ * once, from the newest original.
+ */
 @Service
 public class ImageUploadService {
     private static final Logger log = LoggerFactory.getLogger(ImageUploadService.class);
@@ -18,51 +37,136 @@ public class ImageUploadService {
     private final EsServiceProperties properties;
     private final MinioStorageService minioStorageService;
     private final ThumbnailService thumbnailService;
+    private final SearchResultCache searchResultCache;
+    private final ThumbnailCache thumbnailCache;
+    private final Map<Long, String> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
 
     public ImageUploadService(ElasticsearchClient client,
                               EsServiceProperties properties,
                               MinioStorageService minioStorageService,
-                              ThumbnailService thumbnailService) {
+                              ThumbnailService thumbnailService,
+                              SearchResultCache searchResultCache,
+                              ThumbnailCache thumbnailCache) {
         this.client = client;
         this.properties = properties;
         this.minioStorageService = minioStorageService;
         this.thumbnailService = thumbnailService;
+        this.searchResultCache = searchResultCache;
+        this.thumbnailCache = thumbnailCache;
+        AtomicInteger threadSeq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(properties.getThumbnail().getThreads(), 1),
+                r -> new Thread(r, "image-processing-" + threadSeq.incrementAndGet()));
     }
 
+    /**
+     * Stores the original and queues thumbnail rendering.
+     *
+     * @return the thumbnail URL, served once rendering has finished
+     */
     public String uploadAndUpdate(Long productId, MultipartFile file) throws Exception {
         minioStorageService.ensureBucket();
 
-        String filename = file.getOriginalFilename() == null ? "image" : file.getOriginalFilename();
-        String ext = "jpg";
-        int dot = filename.lastIndexOf('.');
-        if (dot >= 0 && dot < filename.length() - 1) {
-            ext = filename.substring(dot + 1).toLowerCase();
+        String ext = extension(file.getOriginalFilename());
+        String origObject = originalObject(productId, ext);
+        try (InputStream in = file.getInputStream()) {
+            minioStorageService.uploadStream(origObject, in, file.getSize(), contentTypeForExt(ext));
         }
+        submit(productId, origObject);
+        return thumbnailUrl(productId);
+    }
+
+    /**
+     * Creates a presigned URL for uploading the original directly to object storage.
+     */
+    public PresignedUpload createUploadUrl(Long productId, String filename) {
+        minioStorageService.ensureBucket();
 
-        String origObject = "products/" + productId + "/orig." + ext;
-        String thumbObject = "products/" + productId + "/thumb.jpg";
+        String ext = extension(filename);
+        String origObject = originalObject(productId, ext);
+        Instant expiresAt = Instant.now().plus(properties.getMinio().getPresignExpiry());
+        return new PresignedUpload(origObject, minioStorageService.presignPut(origObject), contentTypeForExt(ext),
+                expiresAt);
+    }
 
-        minioStorageService.uploadBytes(origObject, file.getBytes(), contentTypeForExt(ext));
-        byte[] thumb;
-        try (var in = file.getInputStream()) {
-            thumb = thumbnailService.createThumbnail(in);
+    /**
+     * Queues thumbnail rendering for an original uploaded through a presigned URL.
+     *
+     * @return the thumbnail URL, served once rendering has finished
+     * @throws IllegalArgumentException if the object is not an original of this product or was not uploaded
+     */
+    public String completeUpload(Long productId, String objectName) {
+        if (objectName == null || !objectName.startsWith("products/" + productId + "/orig.")) {
+            throw new IllegalArgumentException("Not an image object of product " + productId + ": " + objectName);
+        }
+        if (!minioStorageService.exists(objectName)) {
+            throw new IllegalArgumentException("Image has not been uploaded: " + objectName);
         }
-        minioStorageService.uploadBytes(thumbObject, thumb, "image/jpeg");
+        submit(productId, objectName);
+        return thumbnailUrl(productId);
+    }
 
-        String thumbnailUrl = minioStorageService.buildPublicUrl("/" + thumbObject);
+    private void submit(Long productId, String objectName) {
+        if (pending.put(productId, objectName) == null) {
+            executor.execute(() -> process(productId));
+        }
+    }
 
+    private void process(Long productId) {
+        String objectName = pending.remove(productId);
+        if (objectName == null) {
+            return;
+        }
         try {
+            // The original is decoded as it streams in and hashed on the way, so it is never held in memory whole
+            List<ThumbnailImage> thumbnails;
+            String imageHash;
+            try (DigestInputStream in = ContentHash.hashing(minioStorageService.openStream(objectName))) {
+                thumbnails = thumbnailService.createThumbnails(in);
+                imageHash = ContentHash.ofImage(in, thumbnailService.spec());
+            }
+            for (ThumbnailImage thumbnail : thumbnails) {
+                minioStorageService.uploadBytes("products/" + productId + "/" + thumbnail.fileName(),
+                        thumbnail.bytes(), thumbnail.contentType());
+            }
+            thumbnailCache.invalidate("products/" + productId + "/");
+            updateIndex(productId, imageHash);
+            log.debug("Thumbnails rendered: productId={}, object={}, variants={}", productId, objectName, thumbnails.size());
+        } catch (Exception ex) {
+            log.warn("Thumbnail rendering failed: productId={}, object={}, error={}", productId, objectName, ex.getMessage());
+        }
+    }
+
+    private void updateIndex(Long productId, String imageHash) {
+        String thumbnailUrl = thumbnailUrl(productId);
+        try {
+            // The stored hashes no longer describe the CSV image, so the next import restores it
             client.update(u -> u
                     .index(properties.getIndex().getAlias())
                     .id(productId.toString())
-                    .doc(Map.of("thumbnailUrl", thumbnailUrl))
+                    .doc(Map.of("thumbnailUrl", thumbnailUrl, "imageHash", imageHash, "contentHash", ""))
                     .docAsUpsert(false),
                     ProductDocument.class);
+            searchResultCache.invalidate();
         } catch (Exception ex) {
             log.warn("Failed to update thumbnail in ES productId={} error={}", productId, ex.getMessage());
         }
+    }
+
+    private String thumbnailUrl(Long productId) {
+        return minioStorageService.buildPublicUrl("/products/" + productId + "/thumb.jpg");
+    }
+
+    private static String originalObject(Long productId, String ext) {
+        return "products/" + productId + "/orig." + ext;
+    }
 
-        return thumbnailUrl;
+    private static String extension(String filename) {
+        String name = filename == null ? "image" : filename;
+        int dot = name.lastIndexOf('.');
+        String ext = dot >= 0 ? name.substring(dot + 1).toLowerCase() : "";
+        // The extension becomes part of the object key
+        return ext.matches("[a-z0-9]{1,5}") ? ext : "jpg";
     }
 
     private String contentTypeForExt(String ext) {
@@ -73,4 +177,9 @@ public class ImageUploadService {
             default -> "image/jpeg";
         };
     }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
 }
@@ -0,0 +1,53 @@
+package com.demo.ec.es.application;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Tracks the low watermark of a pipelined import: the highest CSV line such that it and every line
+ * before it have finished. Rows finish out of order, so outcomes above the watermark are held until
+ * the gap below them closes; the counts therefore always describe exactly the rows up to the watermark.
+ */
+final class ImportCheckpoint {
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private final TreeMap<Long, Boolean> finished = new TreeMap<>();
+    private long lastRead;
+    private long watermark;
+    private long success;
+    private long failed;
+    private long rowsRead;
+
+    ImportCheckpoint(long watermark, long success, long failed) {
+        this.watermark = watermark;
+        this.lastRead = watermark;
+        this.success = success;
+        this.failed = failed;
+    }
+
+    synchronized void read(long lineNo) {
+        inFlight.add(lineNo);
+        lastRead = Math.max(lastRead, lineNo);
+        rowsRead++;
+    }
+
+    synchronized void done(long lineNo, boolean indexed) {
+        inFlight.remove(lineNo);
+        finished.put(lineNo, indexed);
+        long limit = inFlight.isEmpty() ? lastRead : inFlight.first() - 1;
+        while (!finished.isEmpty() && finished.firstKey() <= limit) {
+            if (finished.pollFirstEntry().getValue()) {
+                success++;
+            } else {
+                failed++;
+            }
+        }
+        watermark = Math.max(watermark, limit);
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(watermark, success, failed, rowsRead);
+    }
+
+    record Snapshot(long watermark, long success, long failed, long rowsRead) {
+    }
+}
@@ -0,0 +1,304 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ImportError;
+import com.demo.ec.es.domain.ImportJob;
+import com.demo.ec.es.domain.ImportJobStatus;
+import com.demo.ec.es.domain.ImportRequest;
+import com.demo.ec.es.domain.ImportResult;
+import com.demo.ec.es.domain.StorageException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Runs CSV imports as background jobs.
+ * <p>
+ * Each job persists its state to {@code <job-dir>/<jobId>.json}. The state is rewritten whenever the
+ * checkpoint (see {@link ImportCheckpoint}) has advanced by {@code checkpoint-interval} rows. Rejected rows
+ * are appended to {@code <jobId>.errors.jsonl} instead of being kept in memory. Jobs left QUEUED or RUNNING
+ * by a previous process are resumed from their checkpoint on startup. Jobs run one at a time, and a run only
+ * starts by moving its job from QUEUED to RUNNING, so a job queued twice (e.g. by concurrent resume calls)
+ * runs once.
+ * <p>
+ * Job ids come from request paths; only canonical UUIDs are accepted and every job file is resolved under
+ * {@code job-dir}, never from paths stored in the job state.
+ */
+@Service
+public class ImportJobService {
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+    private static final String STATE_SUFFIX = ".json";
+    private static final String ERRORS_SUFFIX = ".errors.jsonl";
+
+    private final ImportService importService;
+    private final EsServiceProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "import-job"));
+
+    public ImportJobService(ImportService importService, EsServiceProperties properties, ObjectMapper objectMapper) {
+        this.importService = importService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registers a new job and queues it for execution.
+     */
+    public ImportJob submit(ImportRequest request) {
+        String jobId = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        String errorFile = jobDir().resolve(jobId + ERRORS_SUFFIX).toString();
+        ImportJob job = new ImportJob(jobId, ImportJobStatus.QUEUED, request, 0, 0, 0, 0, errorFile, null, now, now);
+        save(job);
+        executor.execute(() -> execute(jobId));
+        log.info("Import job submitted: jobId={}, csvPath={}", jobId, request.csvPath());
+        return job;
+    }
+
+    public Optional<ImportJob> find(String jobId) {
+        Optional<Path> file = jobFile(jobId, STATE_SUFFIX);
+        if (file.isEmpty()) {
+            return Optional.empty();
+        }
+        ImportJob job = jobs.get(jobId);
+        return job != null ? Optional.of(job) : load(file.get());
+    }
+
+    /**
+     * The rejected-rows file of a known job, if any rows have been written yet.
+     */
+    public Optional<Path> findErrorFile(String jobId) {
+        return find(jobId)
+                .flatMap(job -> jobFile(jobId, ERRORS_SUFFIX))
+                .filter(Files::exists);
+    }
+
+    /**
+     * Queues a FAILED job again; it continues after its last checkpoint. Jobs in any other state are left alone.
+     */
+    public Optional<ImportJob> resume(String jobId) {
+        compareAndSet(jobId, ImportJobStatus.FAILED, ImportJobStatus.QUEUED)
+                .ifPresent(queued -> executor.execute(() -> execute(jobId)));
+        return find(jobId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        Path dir = jobDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(f -> f.getFileName().toString().endsWith(".json"))
+                    .map(this::load)
+                    .flatMap(Optional::stream)
+                    .filter(j -> j.status() == ImportJobStatus.QUEUED || j.status() == ImportJobStatus.RUNNING)
+                    .filter(j -> jobFile(j.jobId(), STATE_SUFFIX).isPresent())
+                    .forEach(j -> {
+                        log.info("Resuming interrupted import job: jobId={}, checkpointLine={}", j.jobId(), j.checkpointLine());
+                        save(j.withProgress(ImportJobStatus.QUEUED, j.checkpointLine(), j.success(), j.failed(), 0, null));
+                        executor.execute(() -> execute(j.jobId()));
+                    });
+        } catch (IOException ex) {
+            log.warn("Failed to scan import job directory: {}", dir, ex);
+        }
+    }
+
+    private void execute(String jobId) {
+        // Another queued run of the same job already took it
+        ImportJob job = compareAndSet(jobId, ImportJobStatus.QUEUED, ImportJobStatus.RUNNING).orElse(null);
+        if (job == null) {
+            log.debug("Import job not queued, skipping run: jobId={}", jobId);
+            return;
+        }
+        ImportCheckpoint checkpoint = new ImportCheckpoint(job.checkpointLine(), job.success(), job.failed());
+        long interval = Math.max(properties.getImport().getCheckpointInterval(), 1);
+        Path errorFile = jobFile(jobId, ERRORS_SUFFIX).orElseThrow();
+
+        try {
+            truncateErrors(errorFile, job.checkpointLine());
+
+            try (BufferedWriter errors = Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                long[] lastSaved = {job.checkpointLine()};
+                ImportResult result = importService.runImport(job.request(), job.checkpointLine(), new ImportProgressListener() {
+                    @Override
+                    public void onRowRead(long lineNo) {
+                        checkpoint.read(lineNo);
+                    }
+
+                    @Override
+                    public void onRowDone(long lineNo, ImportError error) {
+                        if (error != null) {
+                            appendError(errors, error);
+                        }
+                        checkpoint.done(lineNo, error == null);
+                        ImportCheckpoint.Snapshot snapshot = checkpoint.snapshot();
+                        synchronized (lastSaved) {
+                            if (snapshot.watermark() - lastSaved[0] >= interval) {
+                                flush(errors);
+                                lastSaved[0] = snapshot.watermark();
+                                saveProgress(jobId, ImportJobStatus.RUNNING, snapshot, null);
+                            }
+                        }
+                    }
+                });
+                flush(errors);
+                ImportCheckpoint.Snapshot snapshot = checkpoint.snapshot();
+                saveProgress(jobId, ImportJobStatus.COMPLETED, snapshot, null);
+                log.info("Import job completed: jobId={}, processed={}, success={}, failed={}",
+                        jobId, result.total(), snapshot.success(), snapshot.failed());
+            }
+        } catch (Exception ex) {
+            ImportCheckpoint.Snapshot snapshot = checkpoint.snapshot();
+            // Interrupted by shutdown: leave it RUNNING so the next start resumes it
+            ImportJobStatus status = executor.isShutdown() ? ImportJobStatus.RUNNING : ImportJobStatus.FAILED;
+            saveProgress(jobId, status, snapshot, ex.getMessage());
+            log.error("Import job stopped: jobId={}, status={}, checkpointLine={}", jobId, status, snapshot.watermark(), ex);
+        }
+    }
+
+    private void saveProgress(String jobId, ImportJobStatus status, ImportCheckpoint.Snapshot snapshot, String message) {
+        ImportJob current = jobs.get(jobId);
+        save(current.withProgress(status, snapshot.watermark(), snapshot.success(), snapshot.failed(),
+                snapshot.rowsRead(), message));
+    }
+
+    /**
+     * Moves the job to {@code next} only if it is currently in {@code expected}; returns the updated job on success.
+     */
+    private synchronized Optional<ImportJob> compareAndSet(String jobId, ImportJobStatus expected, ImportJobStatus next) {
+        return find(jobId)
+                .filter(job -> job.status() == expected)
+                .map(job -> {
+                    ImportJob updated = job.withProgress(next, job.checkpointLine(), job.success(), job.failed(), 0, null);
+                    save(updated);
+                    return updated;
+                });
+    }
+
+    /**
+     * Writes the job state via a temp file and an atomic rename, so a crash never leaves a torn checkpoint.
+     */
+    private synchronized void save(ImportJob job) {
+        jobs.put(job.jobId(), job);
+        Path dir = jobDir();
+        try {
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(job.jobId() + STATE_SUFFIX + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), job);
+            Files.move(tmp, dir.resolve(job.jobId() + STATE_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new StorageException("Failed to persist import job: " + job.jobId(), ex);
+        }
+    }
+
+    private Optional<ImportJob> load(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), ImportJob.class));
+        } catch (IOException ex) {
+            log.warn("Failed to read import job: {}", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Drops errors recorded after the checkpoint; those rows are processed again by the resumed run.
+     */
+    private void truncateErrors(Path errorFile, long checkpointLine) throws IOException {
+        if (!Files.exists(errorFile)) {
+            return;
+        }
+        List<String> kept = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(errorFile, StandardCharsets.UTF_8)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (!line.isBlank() && objectMapper.readValue(line, ImportError.class).lineNo() <= checkpointLine) {
+                    kept.add(line);
+                }
+            }
+        }
+        Files.write(errorFile, kept, StandardCharsets.UTF_8);
+    }
+
+    private void appendError(BufferedWriter errors, ImportError error) {
+        try {
+            String line = objectMapper.writeValueAsString(error);
+            synchronized (errors) {
+                errors.write(line);
+                errors.newLine();
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to write import error: line={}, productId={}", error.lineNo(), error.productId(), ex);
+        }
+    }
+
+    private void flush(BufferedWriter errors) {
+        try {
+            synchronized (errors) {
+                errors.flush();
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to flush import errors", ex);
+        }
+    }
+
+    /**
+     * Resolves a job file under {@code job-dir}; empty unless {@code jobId} is a canonical UUID and the result stays
+     * inside the directory.
+     */
+    private Optional<Path> jobFile(String jobId, String suffix) {
+        if (!isJobId(jobId)) {
+            return Optional.empty();
+        }
+        Path dir = jobDir().toAbsolutePath().normalize();
+        Path file = dir.resolve(jobId + suffix).normalize();
+        return file.startsWith(dir) ? Optional.of(file) : Optional.empty();
+    }
+
+    private static boolean isJobId(String jobId) {
+        if (jobId == null) {
+            return false;
+        }
+        try {
+            return UUID.fromString(jobId).toString().equals(jobId);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private Path jobDir() {
+        return Path.of(properties.getImport().getJobDir());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,561 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ElasticsearchOperationException;
+import com.demo.ec.es.domain.ImportError;
+import com.demo.ec.es.domain.ImportResult;
+import com.demo.ec.es.domain.ProductDocument;
+import com.demo.ec.es.domain.ThumbnailImage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One run of the staged CSV import: parse → diff → image upload → thumbnail → bulk.
+ * <p>
+ * Stages are connected by bounded queues, so a slow stage applies backpressure to the CSV reader instead of
+ * buffering the catalog in memory. Each stage has its own worker count, and bulk requests are sent from a
+ * separate executor so they overlap with image work. A failed row is reported as an {@link ImportError}
+ * and skipped; a failed bulk request aborts the run, as the sequential importer did.
+ * <p>
+ * The diff stage hashes each row (see {@link ContentHash}) and compares it with the hashes stored in the
+ * index, fetched with one mget per batch. Rows whose document and image are both unchanged finish there;
+ * rows with only document changes skip the image and thumbnail uploads. {@code force} disables the diff.
+ */
+final class ImportPipeline {
+    private static final Logger log = LoggerFactory.getLogger(ImportPipeline.class);
+    private static final Row END = new Row(-1, null, null, null, null, true);
+
+    private final ElasticsearchClient client;
+    private final EsServiceProperties.Import config;
+    private final MinioStorageService minioStorageService;
+    private final ThumbnailService thumbnailService;
+    private final MeterRegistry meterRegistry;
+    private final String index;
+    private final Path imagesDir;
+    private final int batchSize;
+    private final boolean force;
+
+    private final ImportProgressListener listener;
+    private final AtomicLong success = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicReference<RuntimeException> fatal = new AtomicReference<>();
+    private final List<StageStats> stats = new ArrayList<>();
+
+    ImportPipeline(ElasticsearchClient client,
+                   EsServiceProperties.Import config,
+                   MinioStorageService minioStorageService,
+                   ThumbnailService thumbnailService,
+                   MeterRegistry meterRegistry,
+                   String index,
+                   Path imagesDir,
+                   int batchSize,
+                   boolean force,
+                   ImportProgressListener listener) {
+        this.client = client;
+        this.config = config;
+        this.minioStorageService = minioStorageService;
+        this.thumbnailService = thumbnailService;
+        this.meterRegistry = meterRegistry;
+        this.index = index;
+        this.imagesDir = imagesDir;
+        this.batchSize = Math.max(batchSize, 1);
+        this.force = force;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs all stages over the records and blocks until every row has been indexed or rejected.
+     * Rows are reported to the listener as they finish; the returned result carries counts only.
+     *
+     * @param skipThroughLine rows at or before this CSV line are skipped (checkpoint of a resumed run), 0 for none
+     */
+    ImportResult run(Iterable<CSVRecord> records, long skipThroughLine) {
+        int capacity = Math.max(config.getQueueCapacity(), 1);
+        int diffThreads = Math.max(config.getDiffThreads(), 1);
+        int imageThreads = Math.max(config.getImageThreads(), 1);
+        int thumbnailThreads = Math.max(config.getThumbnailThreads(), 1);
+        int bulkConcurrency = Math.max(config.getBulkConcurrency(), 1);
+
+        BlockingQueue<Row> parsed = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Row> diffed = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Row> uploaded = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Row> thumbnailed = new ArrayBlockingQueue<>(capacity);
+
+        AtomicInteger threadSeq = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(diffThreads + imageThreads + thumbnailThreads + 1, r ->
+                new Thread(r, "import-worker-" + threadSeq.incrementAndGet()));
+        ExecutorService bulkExecutor = Executors.newFixedThreadPool(bulkConcurrency, r ->
+                new Thread(r, "import-bulk-" + threadSeq.incrementAndGet()));
+        Semaphore bulkPermits = new Semaphore(bulkConcurrency);
+
+        StageStats parseStats = stage("parse");
+        StageStats diffStats = stage("diff");
+        StageStats imageStats = stage("image");
+        StageStats thumbnailStats = stage("thumbnail");
+        StageStats bulkStats = stage("bulk");
+
+        long started = System.nanoTime();
+        long total = 0;
+        try {
+            startDiffStage(workers, diffThreads, parsed, diffed, diffStats);
+            startStage(workers, imageThreads, diffed, uploaded, imageStats, this::uploadOriginal);
+            startStage(workers, thumbnailThreads, uploaded, thumbnailed, thumbnailStats, this::uploadThumbnail);
+            workers.execute(() -> collectBulk(thumbnailed, bulkExecutor, bulkPermits, bulkConcurrency, bulkStats));
+
+            for (CSVRecord record : records) {
+                if (fatal.get() != null) {
+                    break;
+                }
+                long lineNo = record.getRecordNumber() + 1;
+                if (lineNo <= skipThroughLine) {
+                    continue;
+                }
+                total++;
+                listener.onRowRead(lineNo);
+                long t0 = System.nanoTime();
+                Row row;
+                try {
+                    row = parse(record, lineNo);
+                } catch (Exception ex) {
+                    String productId = record.isMapped("productId") ? record.get("productId") : "";
+                    rowFailed(lineNo, productId, ex);
+                    continue;
+                } finally {
+                    parseStats.record(System.nanoTime() - t0);
+                }
+                parsed.put(row);
+            }
+            parsed.put(END);
+
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Import still running: indexed={}, failed={}", success.get(), failed.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+            throw new IllegalStateException("Import interrupted", ex);
+        } finally {
+            workers.shutdownNow();
+            bulkExecutor.shutdownNow();
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        stats.forEach(s -> s.log(elapsedNanos));
+
+        if (fatal.get() != null) {
+            throw fatal.get();
+        }
+
+        long indexed = success.get();
+        log.info("Import diff: unchanged={}, total={}", unchanged.get(), total);
+        return new ImportResult(total, indexed, total - indexed, unchanged.get(), List.of());
+    }
+
+    private Row parse(CSVRecord record, long lineNo) {
+        String productIdStr = record.get("productId");
+        String title = record.get("title");
+        String description = record.get("description");
+        String priceStr = record.get("price");
+        String status = record.get("status");
+        String createdAtStr = record.get("createdAt");
+        String imageFile = record.get("imageFile");
+        String categoryIdStr = record.isMapped("categoryId") ? record.get("categoryId") : null;
+
+        Long productId = Long.parseLong(productIdStr);
+        Long categoryId = categoryIdStr == null || categoryIdStr.isBlank() ? null : Long.parseLong(categoryIdStr);
+        Long price = Long.parseLong(priceStr);
+        Instant createdAt = Instant.parse(createdAtStr);
+
+        Path imagePath = imagesDir.resolve(imageFile);
+        if (!Files.exists(imagePath)) {
+            log.warn("Image file not found: {} (line {})", imagePath, lineNo);
+        }
+
+        // The thumbnail URL only depends on the product id, so it is part of the hashed document up front
+        String thumbnailUrl = minioStorageService.buildPublicUrl("/products/" + productId + "/thumb.jpg");
+        ProductDocument doc = new ProductDocument(productId, title, description, price, status, categoryId,
+                thumbnailUrl, createdAt, null, null, null, null);
+        return new Row(lineNo, productIdStr, doc, imagePath, extractExtension(imageFile), true);
+    }
+
+    /**
+     * Hashes a batch of rows and drops those whose stored hashes match. Returns the rows that still need work.
+     */
+    private List<Row> diff(List<Row> rows) {
+        String spec = thumbnailService.spec();
+        List<Row> hashed = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            try {
+                ProductDocument doc = row.doc();
+                String imageHash = ContentHash.ofImage(row.imagePath(), spec);
+                ProductDocument withImage = doc.withHashes(imageHash, null);
+                hashed.add(row.withDoc(doc.withHashes(imageHash, ContentHash.ofDocument(withImage))));
+            } catch (Exception ex) {
+                rowFailed(row.lineNo(), row.productId(), ex);
+            }
+        }
+        if (force || hashed.isEmpty()) {
+            return hashed;
+        }
+
+        Map<String, ProductDocument> stored = fetchStoredHashes(hashed);
+        List<Row> changed = new ArrayList<>(hashed.size());
+        for (Row row : hashed) {
+            ProductDocument current = stored.get(row.doc().productId().toString());
+            if (current == null) {
+                changed.add(row);
+            } else if (row.doc().contentHash().equals(current.contentHash())) {
+                unchanged.incrementAndGet();
+                success.incrementAndGet();
+                listener.onRowDone(row.lineNo(), null);
+            } else {
+                changed.add(row.withImageChanged(!row.doc().imageHash().equals(current.imageHash())));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Fetches the stored hashes of the rows' documents. On failure every row is treated as changed.
+     */
+    private Map<String, ProductDocument> fetchStoredHashes(List<Row> rows) {
+        List<String> ids = rows.stream().map(r -> r.doc().productId().toString()).toList();
+        Map<String, ProductDocument> stored = new HashMap<>();
+        try {
+            MgetResponse<ProductDocument> response = client.mget(m -> m
+                    .index(index)
+                    .ids(ids)
+                    .sourceIncludes("imageHash", "contentHash"), ProductDocument.class);
+            for (var item : response.docs()) {
+                if (item.isResult() && item.result().found() && item.result().source() != null) {
+                    stored.put(item.result().id(), item.result().source());
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to fetch stored hashes, importing batch as changed: rows={}, reason={}",
+                    rows.size(), ex.getMessage());
+        }
+        return stored;
+    }
+
+    private Row uploadOriginal(Row row) {
+        if (!row.imageChanged()) {
+            return row;
+        }
+        String origObject = "products/" + row.doc().productId() + "/orig." + row.ext();
+        minioStorageService.uploadFile(origObject, row.imagePath().toString(), contentTypeForExt(row.ext()));
+        return row;
+    }
+
+    private Row uploadThumbnail(Row row) throws Exception {
+        if (!row.imageChanged()) {
+            return row;
+        }
+        List<ThumbnailImage> thumbnails;
+        try (var in = Files.newInputStream(row.imagePath())) {
+            thumbnails = thumbnailService.createThumbnails(in);
+        }
+        for (ThumbnailImage thumbnail : thumbnails) {
+            minioStorageService.uploadBytes("products/" + row.doc().productId() + "/" + thumbnail.fileName(),
+                    thumbnail.bytes(), thumbnail.contentType());
+        }
+        return row;
+    }
+
+    /**
+     * Starts {@code threads} diff workers. Each takes whatever is queued, up to one batch, so the mget
+     * round trip is shared by many rows without waiting for a full batch when the reader is slow.
+     */
+    private void startDiffStage(ExecutorService executor, int threads, BlockingQueue<Row> in, BlockingQueue<Row> out,
+                                StageStats stageStats) {
+        AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    boolean done = false;
+                    while (!done) {
+                        List<Row> batch = new ArrayList<>(batchSize);
+                        batch.add(in.take());
+                        in.drainTo(batch, batchSize - 1);
+                        if (batch.remove(END)) {
+                            in.put(END);
+                            done = true;
+                        }
+                        if (batch.isEmpty() || fatal.get() != null) {
+                            continue;
+                        }
+                        try {
+                            long t0 = System.nanoTime();
+                            List<Row> changed = diff(batch);
+                            stageStats.record(System.nanoTime() - t0, batch.size());
+                            for (Row row : changed) {
+                                out.put(row);
+                            }
+                        } catch (RuntimeException ex) {
+                            // e.g. the job listener failing to save progress; the worker keeps draining to END
+                            fatal.compareAndSet(null, ex);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        forwardEnd(out);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts {@code threads} workers that apply {@code task} to rows from {@code in} and pass them to {@code out}.
+     * The last worker to see the end marker forwards it downstream.
+     */
+    private void startStage(ExecutorService executor, int threads, BlockingQueue<Row> in, BlockingQueue<Row> out,
+                            StageStats stageStats, RowTask task) {
+        AtomicInteger running = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        Row row = in.take();
+                        if (row == END) {
+                            in.put(END);
+                            break;
+                        }
+                        if (fatal.get() != null) {
+                            continue;
+                        }
+                        long t0 = System.nanoTime();
+                        try {
+                            try {
+                                out.put(task.apply(row));
+                            } catch (InterruptedException ex) {
+                                throw ex;
+                            } catch (Exception ex) {
+                                rowFailed(row.lineNo(), row.productId(), ex);
+                            }
+                        } catch (RuntimeException ex) {
+                            // rowFailed itself failed (the job listener); the worker keeps draining to END
+                            fatal.compareAndSet(null, ex);
+                        } finally {
+                            stageStats.record(System.nanoTime() - t0);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        forwardEnd(out);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Passes the end marker on however the last worker of a stage stopped, so the stages after it finish and
+     * {@link #run} returns instead of waiting for them forever.
+     */
+    private static void forwardEnd(BlockingQueue<Row> out) {
+        try {
+            out.put(END);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Groups indexed-ready rows into batches and hands each batch to the bulk executor,
+     * blocking while {@code concurrency} bulk requests are already in flight.
+     */
+    private void collectBulk(BlockingQueue<Row> in, ExecutorService bulkExecutor, Semaphore permits,
+                             int concurrency, StageStats bulkStats) {
+        List<Row> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                Row row = in.take();
+                if (row == END) {
+                    break;
+                }
+                if (fatal.get() != null) {
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    submitBulk(batch, bulkExecutor, permits, bulkStats);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && fatal.get() == null) {
+                submitBulk(batch, bulkExecutor, permits, bulkStats);
+            }
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submitBulk(List<Row> batch, ExecutorService bulkExecutor, Semaphore permits, StageStats bulkStats)
+            throws InterruptedException {
+        permits.acquire();
+        bulkExecutor.execute(() -> {
+            long t0 = System.nanoTime();
+            try {
+                success.addAndGet(flushBulk(batch));
+            } catch (RuntimeException ex) {
+                fatal.compareAndSet(null, ex);
+            } finally {
+                bulkStats.record(System.nanoTime() - t0, batch.size());
+                permits.release();
+            }
+        });
+    }
+
+    private long flushBulk(List<Row> batch) {
+        List<BulkOperation> operations = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            ProductDocument doc = row.doc();
+            // Merged rather than replaced, so the stock fields maintained by ProductSyncService survive re-imports,
+            // and so does categoryId when the CSV has no such column
+            operations.add(BulkOperation.of(op -> op
+                    .update(u -> u.index(index).id(doc.productId().toString())
+                            .action(a -> a.doc(doc).docAsUpsert(true)))));
+        }
+        BulkRequest request = new BulkRequest.Builder()
+                .index(index)
+                .operations(operations)
+                .build();
+
+        try {
+            var response = client.bulk(request);
+            long indexed = 0;
+
+            for (int i = 0; i < batch.size(); i++) {
+                Row ctx = batch.get(i);
+                var item = i < response.items().size() ? response.items().get(i) : null;
+                if (item != null && item.error() != null) {
+                    String message = item.error().type() + ": " + item.error().reason();
+                    log.warn("Bulk item failed: line={}, productId={}, error={}", ctx.lineNo(), ctx.productId(), message);
+                    failed.incrementAndGet();
+                    listener.onRowDone(ctx.lineNo(), new ImportError(ctx.lineNo(), ctx.productId(), message));
+                } else {
+                    indexed++;
+                    listener.onRowDone(ctx.lineNo(), null);
+                }
+            }
+            return indexed;
+        } catch (IOException ex) {
+            log.error("Bulk request failed", ex);
+            throw new ElasticsearchOperationException("Bulk request failed", ex);
+        }
+    }
+
+    private void rowFailed(long lineNo, String productId, Exception ex) {
+        log.warn("Import row failed: line={}, productId={}, reason={}", lineNo, productId, ex.getMessage());
+        failed.incrementAndGet();
+        listener.onRowDone(lineNo, new ImportError(lineNo, productId, ex.getMessage()));
+    }
+
+    private StageStats stage(String name) {
+        StageStats stageStats = new StageStats(name, Timer.builder("es.import.stage")
+                .tag("stage", name)
+                .register(meterRegistry));
+        stats.add(stageStats);
+        return stageStats;
+    }
+
+    private static String extractExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        if (dot >= 0 && dot < filename.length() - 1) {
+            return filename.substring(dot + 1).toLowerCase();
+        }
+        return "jpg";
+    }
+
+    private static String contentTypeForExt(String ext) {
+        return switch (ext) {
+            case "png" -> "image/png";
+            case "gif" -> "image/gif";
+            case "webp" -> "image/webp";
+            default -> "image/jpeg";
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowTask {
+        Row apply(Row row) throws Exception;
+    }
+
+    private record Row(long lineNo, String productId, ProductDocument doc, Path imagePath, String ext,
+                       boolean imageChanged) {
+        Row withDoc(ProductDocument newDoc) {
+            return new Row(lineNo, productId, newDoc, imagePath, ext, imageChanged);
+        }
+
+        Row withImageChanged(boolean changed) {
+            return new Row(lineNo, productId, doc, imagePath, ext, changed);
+        }
+    }
+
+    /**
+     * Per-stage row count and busy time, reported as throughput when the run ends.
+     */
+    private static final class StageStats {
+        private final String name;
+        private final Timer timer;
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        StageStats(String name, Timer timer) {
+            this.name = name;
+            this.timer = timer;
+        }
+
+        void record(long nanos) {
+            record(nanos, 1);
+        }
+
+        void record(long nanos, int count) {
+            rows.add(count);
+            busyNanos.add(nanos);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void log(long elapsedNanos) {
+            double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+            log.info("Import stage throughput: stage={}, rows={}, busyMs={}, rowsPerSec={}",
+                    name, rows.sum(), TimeUnit.NANOSECONDS.toMillis(busyNanos.sum()),
+                    String.format("%.1f", rows.sum() / seconds));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.domain.ImportError;
+
+/**
+ * Receives per-row progress from an {@link ImportPipeline} run.
+ * Callbacks arrive from pipeline worker threads, in completion order rather than CSV order.
+ */
+interface ImportProgressListener {
+    /**
+     * Called on the reader thread before the row enters the pipeline.
+     */
+    default void onRowRead(long lineNo) {
+    }
+
+    /**
+     * Called once the row has been indexed ({@code error == null}) or rejected.
+     */
+    void onRowDone(long lineNo, ImportError error);
+}
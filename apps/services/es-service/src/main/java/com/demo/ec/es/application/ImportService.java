@@ -1,17 +1,13 @@
 package com.demo.ec.es.application;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import com.demo.ec.es.config.EsServiceProperties;
-import com.demo.ec.es.domain.ElasticsearchOperationException;
 import com.demo.ec.es.domain.ImportError;
 import com.demo.ec.es.domain.ImportRequest;
 import com.demo.ec.es.domain.ImportResult;
-import com.demo.ec.es.domain.ProductDocument;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -20,13 +16,15 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  * Service for importing product data from CSV files.
- * Handles CSV parsing, image upload to MinIO, and bulk indexing to Elasticsearch.
+ * Handles CSV parsing, image upload to MinIO, and bulk indexing to Elasticsearch
+ * through a staged {@link ImportPipeline}.
  */
 @Service
 public class ImportService {
@@ -37,17 +35,26 @@ public class ImportService {
     private final MinioStorageService minioStorageService;
     private final ThumbnailService thumbnailService;
     private final IndexAdminService indexAdminService;
+    private final SearchResultCache searchResultCache;
+    private final LocalSuggestIndex localSuggestIndex;
+    private final MeterRegistry meterRegistry;
 
     public ImportService(ElasticsearchClient client,
                          EsServiceProperties properties,
                          MinioStorageService minioStorageService,
                          ThumbnailService thumbnailService,
-                         IndexAdminService indexAdminService) {
+                         IndexAdminService indexAdminService,
+                         SearchResultCache searchResultCache,
+                         LocalSuggestIndex localSuggestIndex,
+                         MeterRegistry meterRegistry) {
         this.client = client;
         this.properties = properties;
         this.minioStorageService = minioStorageService;
         this.thumbnailService = thumbnailService;
         this.indexAdminService = indexAdminService;
+        this.searchResultCache = searchResultCache;
+        this.localSuggestIndex = localSuggestIndex;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -58,146 +65,56 @@ public class ImportService {
      */
     public ImportResult importCsv(ImportRequest request) {
         log.info("Starting CSV import: {}", request);
-        
+
+        List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        ImportResult result = runImport(request, 0, (lineNo, error) -> {
+            if (error != null) {
+                errors.add(error);
+            }
+        });
+
+        List<ImportError> sorted = new ArrayList<>(errors);
+        sorted.sort(Comparator.comparingLong(ImportError::lineNo));
+        log.info("Import completed: total={}, success={}, failed={}", result.total(), result.success(), result.failed());
+        return new ImportResult(result.total(), result.success(), result.failed(), result.unchanged(), sorted);
+    }
+
+    /**
+     * Runs the import pipeline over the CSV, reporting each row to the listener.
+     *
+     * @param skipThroughLine CSV line up to which rows were already processed by an earlier run, 0 for none
+     * @return counts for the rows processed by this run; errors are only reported to the listener
+     */
+    ImportResult runImport(ImportRequest request, long skipThroughLine, ImportProgressListener listener) {
         indexAdminService.initIndexIfMissing();
         minioStorageService.ensureBucket();
 
         int batchSize = request.batchSize() == null ? properties.getImport().getBatchSize() : request.batchSize();
         String index = properties.getIndex().getAlias();
 
-        long total = 0;
-        long success = 0;
-        List<ImportError> errors = new ArrayList<>();
-        List<BulkOperation> operations = new ArrayList<>();
-        List<ImportError> bulkItems = new ArrayList<>();
-
         Path csvPath = Path.of(request.csvPath());
         Path imagesDir = Path.of(request.imagesDir());
+        ImportPipeline pipeline = new ImportPipeline(client, properties.getImport(), minioStorageService,
+                thumbnailService, meterRegistry, index, imagesDir, batchSize, request.forced(), listener);
 
+        ImportResult result;
         try (Reader reader = Files.newBufferedReader(csvPath);
              CSVParser parser = CSVFormat.DEFAULT.builder()
                      .setHeader()
                      .setSkipHeaderRecord(true)
                      .build()
                      .parse(reader)) {
-
-            for (CSVRecord record : parser) {
-                total++;
-                long lineNo = record.getRecordNumber() + 1;
-
-                try {
-                    ProductDocument doc = parseAndUploadProduct(record, imagesDir, lineNo);
-                    
-                    operations.add(BulkOperation.of(op -> op
-                            .index(i -> i.index(index).id(doc.productId().toString()).document(doc))));
-                    bulkItems.add(new ImportError(lineNo, doc.productId().toString(), null));
-
-                    if (operations.size() >= batchSize) {
-                        success += flushBulk(index, operations, bulkItems, errors);
-                    }
-                } catch (Exception ex) {
-                    String productId = record.isMapped("productId") ? record.get("productId") : "";
-                    log.warn("Import row failed: line={}, productId={}, reason={}", lineNo, productId, ex.getMessage());
-                    errors.add(new ImportError(lineNo, productId, ex.getMessage()));
-                }
-            }
+            result = pipeline.run(parser, skipThroughLine);
         } catch (IOException ex) {
             log.error("Failed to read CSV file: {}", csvPath, ex);
             throw new IllegalArgumentException("Failed to read CSV file: " + csvPath, ex);
+        } finally {
+            searchResultCache.invalidate();
         }
 
-        if (!operations.isEmpty()) {
-            success += flushBulk(index, operations, bulkItems, errors);
+        if (result.success() > result.unchanged()) {
+            localSuggestIndex.requestRebuild();
         }
-
-        long failed = total - success;
-        log.info("Import completed: total={}, success={}, failed={}", total, success, failed);
-        return new ImportResult(total, success, failed, errors);
-    }
-
-    private ProductDocument parseAndUploadProduct(CSVRecord record, Path imagesDir, long lineNo) throws Exception {
-        String productIdStr = record.get("productId");
-        String title = record.get("title");
-        String description = record.get("description");
-        String priceStr = record.get("price");
-        String status = record.get("status");
-        String createdAtStr = record.get("createdAt");
-        String imageFile = record.get("imageFile");
-
-        Long productId = Long.parseLong(productIdStr);
-        Long price = Long.parseLong(priceStr);
-        Instant createdAt = Instant.parse(createdAtStr);
-
-        Path imagePath = imagesDir.resolve(imageFile);
-        if (!Files.exists(imagePath)) {
-            log.warn("Image file not found: {} (line {})", imagePath, lineNo);
-        }
-
-        String ext = extractExtension(imageFile);
-        String origObject = "products/" + productId + "/orig." + ext;
-        String thumbObject = "products/" + productId + "/thumb.jpg";
-
-        // Upload original image
-        minioStorageService.uploadFile(origObject, imagePath.toString(), contentTypeForExt(ext));
-        
-        // Generate and upload thumbnail
-        byte[] thumbBytes;
-        try (var in = Files.newInputStream(imagePath)) {
-            thumbBytes = thumbnailService.createThumbnail(in);
-        }
-        minioStorageService.uploadBytes(thumbObject, thumbBytes, "image/jpeg");
-
-        String thumbnailUrl = minioStorageService.buildPublicUrl("/" + thumbObject);
-
-        return new ProductDocument(productId, title, description, price, status, thumbnailUrl, createdAt);
-    }
-
-    private long flushBulk(String index, List<BulkOperation> operations, List<ImportError> bulkItems, List<ImportError> errors) {
-        BulkRequest request = new BulkRequest.Builder()
-                .index(index)
-                .operations(new ArrayList<>(operations))
-                .build();
-
-        try {
-            var response = client.bulk(request);
-            long success = operations.size();
-            
-            if (response.errors()) {
-                for (int i = 0; i < response.items().size(); i++) {
-                    var item = response.items().get(i);
-                    if (item.error() != null) {
-                        success--;
-                        ImportError ctx = bulkItems.size() > i ? bulkItems.get(i) : new ImportError(-1, "", "");
-                        String message = item.error().type() + ": " + item.error().reason();
-                        log.warn("Bulk item failed: line={}, productId={}, error={}", ctx.lineNo(), ctx.productId(), message);
-                        errors.add(new ImportError(ctx.lineNo(), ctx.productId(), message));
-                    }
-                }
-            }
-            
-            operations.clear();
-            bulkItems.clear();
-            return success;
-        } catch (IOException ex) {
-            log.error("Bulk request failed", ex);
-            throw new ElasticsearchOperationException("Bulk request failed", ex);
-        }
-    }
-
-    private String extractExtension(String filename) {
-        int dot = filename.lastIndexOf('.');
-        if (dot >= 0 && dot < filename.length() - 1) {
-            return filename.substring(dot + 1).toLowerCase();
-        }
-        return "jpg";
-    }
-
-    private String contentTypeForExt(String ext) {
-        return switch (ext) {
-            case "png" -> "image/png";
-            case "gif" -> "image/gif";
-            case "webp" -> "image/webp";
-            default -> "image/jpeg";
-        };
+        return result;
     }
 }
@@ -2,9 +2,12 @@ package com.demo.ec.es.application;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.SuggestContext;
 import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexSettingsAnalysis;
 import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
 import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
 import com.demo.ec.es.config.EsServiceProperties;
@@ -14,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,12 +29,51 @@ import java.util.Map;
 public class IndexAdminService {
     private static final Logger log = LoggerFactory.getLogger(IndexAdminService.class);
 
+    /**
+     * Sub-field of {@code title} analyzed into 2-3 character grams, for partial matching of Japanese titles
+     * without fuzzy queries. Indices created before it existed simply have no matches on it.
+     */
+    static final String TITLE_NGRAM_FIELD = "title.ngram";
+    /**
+     * Shortest query that produces a gram on {@link #TITLE_NGRAM_FIELD}.
+     */
+    static final int TITLE_NGRAM_MIN = 2;
+
+    // Built-in ngram tokenizer, so stock Elasticsearch images work as well as the kuromoji-enabled demo image
+    private static final String TITLE_ANALYSIS = """
+            {
+              "tokenizer": {
+                "title_ngram": {
+                  "type": "ngram",
+                  "min_gram": 2,
+                  "max_gram": 3,
+                  "token_chars": ["letter", "digit"]
+                }
+              },
+              "analyzer": {
+                "title_ngram": {
+                  "type": "custom",
+                  "tokenizer": "title_ngram",
+                  "filter": ["cjk_width", "lowercase"]
+                }
+              }
+            }
+            """;
+
     private final ElasticsearchClient client;
     private final EsServiceProperties properties;
+    private final SearchResultCache searchResultCache;
+    private final LocalSuggestIndex localSuggestIndex;
+    private final SearchWarmer searchWarmer;
 
-    public IndexAdminService(ElasticsearchClient client, EsServiceProperties properties) {
+    public IndexAdminService(ElasticsearchClient client, EsServiceProperties properties,
+                             SearchResultCache searchResultCache, LocalSuggestIndex localSuggestIndex,
+                             SearchWarmer searchWarmer) {
         this.client = client;
         this.properties = properties;
+        this.searchResultCache = searchResultCache;
+        this.localSuggestIndex = localSuggestIndex;
+        this.searchWarmer = searchWarmer;
     }
 
     /**
@@ -68,37 +111,50 @@ public class IndexAdminService {
                         Action.of(act -> act.add(ad -> ad.index(indexName).alias(alias)))
                 ));
         client.indices().updateAliases(request);
+        searchResultCache.onAliasSwitched(indexName);
+        localSuggestIndex.requestRebuild();
+        // The new index starts with cold caches
+        searchWarmer.requestWarm("alias-switch");
     }
 
-    public void reindex(String source, String target, String alias) throws IOException {
-        boolean targetExists = client.indices().exists(b -> b.index(target)).value();
-        if (!targetExists) {
-            createIndex(target);
-        }
-
-        client.reindex(r -> r
-                .source(s -> s.index(source))
-                .dest(d -> d.index(target))
-        );
-
-        if (alias != null && !alias.isBlank()) {
-            ensureAlias(target, alias);
-        }
+    private void createIndex(String indexName) throws IOException {
+        createIndex(indexName, null);
     }
 
-    private void createIndex(String indexName) throws IOException {
+    /**
+     * Creates the index with the product mapping and analysis settings plus, if given, index settings.
+     */
+    void createIndex(String indexName, IndexSettings settings) throws IOException {
         Map<String, Property> props = new HashMap<>();
         props.put("productId", Property.of(p -> p.long_(l -> l)));
-        props.put("title", Property.of(p -> p.text(t -> t.fields("keyword", f -> f.keyword(k -> k.ignoreAbove(256))))));
+        props.put("title", Property.of(p -> p.text(t -> t
+                .fields("keyword", f -> f.keyword(k -> k.ignoreAbove(256)))
+                .fields("ngram", f -> f.text(n -> n.analyzer("title_ngram")))
+                .fields("suggest", f -> f.completion(c -> c
+                        .contexts(SuggestContext.of(sc -> sc.name("status").type("category").path("status"))))))));
         props.put("description", Property.of(p -> p.text(t -> t)));
         props.put("price", Property.of(p -> p.long_(l -> l)));
         props.put("status", Property.of(p -> p.keyword(k -> k)));
+        props.put("categoryId", Property.of(p -> p.long_(l -> l)));
         props.put("thumbnailUrl", Property.of(p -> p.keyword(k -> k)));
         props.put("createdAt", Property.of(p -> p.date(d -> d)));
+        props.put("imageHash", Property.of(p -> p.keyword(k -> k.index(false))));
+        props.put("contentHash", Property.of(p -> p.keyword(k -> k.index(false))));
+        props.put("residue", Property.of(p -> p.integer(i -> i)));
+        props.put("inStock", Property.of(p -> p.boolean_(b -> b)));
 
-        CreateIndexRequest request = CreateIndexRequest.of(c -> c
-                .index(indexName)
-                .mappings(TypeMapping.of(m -> m.properties(props))));
+        CreateIndexRequest request = CreateIndexRequest.of(c -> {
+            c.index(indexName)
+                    .mappings(TypeMapping.of(m -> m.properties(props)))
+                    .settings(s -> {
+                        s.analysis(IndexSettingsAnalysis.of(a -> a.withJson(new StringReader(TITLE_ANALYSIS))));
+                        if (settings != null) {
+                            s.index(settings);
+                        }
+                        return s;
+                    });
+            return c;
+        });
         client.indices().create(request);
     }
 }
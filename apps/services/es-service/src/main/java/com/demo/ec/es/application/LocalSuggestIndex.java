@@ -0,0 +1,155 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ProductDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-JVM autocomplete index built from the ACTIVE products behind the alias.
+ * Rebuilds run on a single background thread and are coalesced, so bursts of imports or alias switches
+ * cause at most one pending rebuild. The new {@link PrefixSuggester} replaces the old one atomically;
+ * until the first build completes, or when the catalog exceeds the memory budget, callers fall back to Elasticsearch.
+ */
+@Component
+public class LocalSuggestIndex {
+    private static final Logger log = LoggerFactory.getLogger(LocalSuggestIndex.class);
+
+    private final ElasticsearchClient client;
+    private final EsServiceProperties properties;
+    private final AtomicReference<PrefixSuggester> current = new AtomicReference<>();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "local-suggest-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LocalSuggestIndex(ElasticsearchClient client, EsServiceProperties properties, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.properties = properties;
+
+        Gauge.builder("es.suggest.local.titles", current, ref -> ref.get() == null ? 0 : ref.get().titleCount())
+                .register(meterRegistry);
+        Gauge.builder("es.suggest.local.memory.bytes", current, ref -> ref.get() == null ? 0 : ref.get().estimatedBytes())
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestRebuild();
+    }
+
+    /**
+     * Schedules a rebuild unless one is already pending.
+     */
+    public void requestRebuild() {
+        if (!properties.getSuggest().getLocal().isEnabled()) {
+            return;
+        }
+        if (rebuildPending.compareAndSet(false, true)) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Returns suggestions from the local index, or null if it is not available.
+     */
+    public List<String> suggest(String q, int size) {
+        PrefixSuggester suggester = current.get();
+        if (suggester == null || !properties.getSuggest().getLocal().isEnabled()) {
+            return null;
+        }
+        return suggester.suggest(q, size);
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        long started = System.currentTimeMillis();
+        try {
+            Map<String, Long> weights = loadActiveTitles();
+            if (weights == null) {
+                current.set(null);
+                return;
+            }
+            PrefixSuggester suggester = PrefixSuggester.build(weights);
+            current.set(suggester);
+            log.info("Local suggest index rebuilt: titles={}, entries={}, bytes={}, tookMs={}",
+                    suggester.titleCount(), suggester.entryCount(), suggester.estimatedBytes(),
+                    System.currentTimeMillis() - started);
+        } catch (Exception ex) {
+            log.warn("Local suggest index rebuild failed, keeping previous index: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads title counts of ACTIVE products with search_after on productId.
+     * Returns null when the titles exceed the configured memory budget.
+     */
+    private Map<String, Long> loadActiveTitles() throws Exception {
+        EsServiceProperties.Suggest.Local config = properties.getSuggest().getLocal();
+        long budget = config.getMaxMemory().toBytes();
+        int batchSize = Math.max(config.getLoadBatchSize(), 1);
+
+        Map<String, Long> weights = new HashMap<>();
+        long estimatedBytes = 0;
+        List<FieldValue> after = null;
+        while (true) {
+            List<FieldValue> searchAfter = after;
+            var response = client.search(s -> {
+                s.index(properties.getIndex().getAlias())
+                        .size(batchSize)
+                        .trackTotalHits(t -> t.enabled(false))
+                        .source(src -> src.filter(f -> f.includes("title")))
+                        .query(q -> q.term(t -> t.field("status").value("ACTIVE")))
+                        .sort(so -> so.field(f -> f.field("productId").order(SortOrder.Asc)));
+                if (searchAfter != null) {
+                    s.searchAfter(searchAfter);
+                }
+                return s;
+            }, ProductDocument.class);
+
+            var hits = response.hits().hits();
+            for (var hit : hits) {
+                String title = hit.source() == null ? null : hit.source().title();
+                if (title == null || title.isBlank()) {
+                    continue;
+                }
+                if (weights.merge(title, 1L, Long::sum) == 1L) {
+                    estimatedBytes += PrefixSuggester.estimateTitleBytes(title);
+                    if (estimatedBytes > budget) {
+                        log.warn("Local suggest index exceeds memory budget ({} bytes), serving suggestions from Elasticsearch",
+                                budget);
+                        return null;
+                    }
+                }
+            }
+            if (hits.size() < batchSize) {
+                return weights;
+            }
+            after = hits.get(hits.size() - 1).sort();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,33 +1,61 @@
 package com.demo.ec.es.application;
 
 import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.config.MultipartMinioClient;
 import com.demo.ec.es.domain.StorageException;
 import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.Part;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service for managing file storage operations with MinIO.
- * Handles bucket creation, file uploads, and URL generation.
+ * Handles bucket creation, file uploads, presigned upload URLs, and URL generation.
+ * Objects larger than {@code minio.part-size} are sent as a multipart upload with up to
+ * {@code minio.upload-concurrency} parts in flight; memory use is bounded by part size times concurrency.
  */
 @Service
 public class MinioStorageService {
     private static final Logger log = LoggerFactory.getLogger(MinioStorageService.class);
 
+    // S3 rejects non-final parts below 5 MiB
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
     private final MinioClient minioClient;
+    private final MinioClient presignMinioClient;
+    private final MultipartMinioClient multipartMinioClient;
     private final EsServiceProperties properties;
 
-    public MinioStorageService(MinioClient minioClient, EsServiceProperties properties) {
+    public MinioStorageService(MinioClient minioClient,
+                               @Qualifier("presignMinioClient") MinioClient presignMinioClient,
+                               MultipartMinioClient multipartMinioClient,
+                               EsServiceProperties properties) {
         this.minioClient = minioClient;
+        this.presignMinioClient = presignMinioClient;
+        this.multipartMinioClient = multipartMinioClient;
         this.properties = properties;
     }
 
@@ -89,22 +117,193 @@ public class MinioStorageService {
      * @throws StorageException if upload fails
      */
     public void uploadFile(String objectName, String filePath, String contentType) {
-        try (InputStream in = new FileInputStream(filePath)) {
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(properties.getMinio().getBucket())
-                            .object(objectName)
-                            .stream(in, -1, 10 * 1024 * 1024)
-                            .contentType(contentType)
-                            .build());
-            
+        Path path = Path.of(filePath);
+        try (InputStream in = Files.newInputStream(path)) {
+            uploadStream(objectName, in, Files.size(path), contentType);
             log.debug("Uploaded file to MinIO: {} from {}", objectName, filePath);
         } catch (IOException ex) {
             log.error("Failed to read file: {}", filePath, ex);
             throw new StorageException("Failed to read file: " + filePath, ex);
+        }
+    }
+
+    /**
+     * Uploads a stream of known size, as a concurrent multipart upload when it exceeds the part size.
+     *
+     * @param objectName  the object key in MinIO
+     * @param in          the content; read sequentially, not closed
+     * @param size        number of bytes in the stream
+     * @param contentType MIME type
+     * @throws StorageException if upload fails
+     */
+    public void uploadStream(String objectName, InputStream in, long size, String contentType) {
+        long partSize = Math.max(properties.getMinio().getPartSize().toBytes(), MIN_PART_SIZE);
+        if (size <= partSize) {
+            try {
+                minioClient.putObject(
+                        PutObjectArgs.builder()
+                                .bucket(properties.getMinio().getBucket())
+                                .object(objectName)
+                                .stream(in, size, -1)
+                                .contentType(contentType)
+                                .build());
+            } catch (Exception ex) {
+                log.error("Failed to upload to MinIO: {}", objectName, ex);
+                throw new StorageException("Failed to upload to MinIO: " + objectName, ex);
+            }
+            return;
+        }
+        uploadMultipart(objectName, in, size, (int) partSize, contentType);
+    }
+
+    private void uploadMultipart(String objectName, InputStream in, long size, int partSize, String contentType) {
+        String bucket = properties.getMinio().getBucket();
+        Semaphore permits = new Semaphore(Math.max(properties.getMinio().getUploadConcurrency(), 1));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        String uploadId = null;
+        try {
+            uploadId = multipartMinioClient.createMultipartUpload(bucket, objectName, contentType).join();
+            int partCount = (int) ((size + partSize - 1) / partSize);
+            List<CompletableFuture<Part>> parts = new ArrayList<>(partCount);
+            for (int partNumber = 1; partNumber <= partCount && failure.get() == null; partNumber++) {
+                int length = (int) Math.min(partSize, size - (long) (partNumber - 1) * partSize);
+                byte[] data = in.readNBytes(length);
+                if (data.length != length) {
+                    throw new IOException("Stream ended before part " + partNumber + " of " + objectName);
+                }
+                permits.acquire();
+                parts.add(multipartMinioClient.uploadPart(bucket, objectName, uploadId, partNumber, data)
+                        .whenComplete((part, ex) -> {
+                            if (ex != null) {
+                                failure.compareAndSet(null, ex);
+                            }
+                            permits.release();
+                        }));
+            }
+            CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).join();
+            Part[] uploaded = parts.stream().map(CompletableFuture::join).toArray(Part[]::new);
+            multipartMinioClient.completeMultipartUpload(bucket, objectName, uploadId, uploaded).join();
+            log.debug("Uploaded to MinIO in {} parts: {} ({} bytes)", partCount, objectName, size);
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            abortQuietly(bucket, objectName, uploadId);
+            log.error("Failed multipart upload to MinIO: {}", objectName, ex);
+            throw new StorageException("Failed multipart upload to MinIO: " + objectName, ex);
+        }
+    }
+
+    private void abortQuietly(String bucket, String objectName, String uploadId) {
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            multipartMinioClient.abortMultipartUpload(bucket, objectName, uploadId);
+        } catch (Exception ex) {
+            log.warn("Failed to abort multipart upload: {} uploadId={}", objectName, uploadId, ex);
+        }
+    }
+
+    /**
+     * Creates a presigned PUT URL so a client can upload the object without going through this service.
+     *
+     * @param objectName the object key in MinIO
+     * @return URL signed for {@code minio.presign-endpoint}, valid for {@code minio.presign-expiry}
+     * @throws StorageException if signing fails
+     */
+    public String presignPut(String objectName) {
+        try {
+            return presignMinioClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(Method.PUT)
+                            .bucket(properties.getMinio().getBucket())
+                            .object(objectName)
+                            .expiry((int) properties.getMinio().getPresignExpiry().toSeconds())
+                            .build());
+        } catch (Exception ex) {
+            log.error("Failed to presign upload URL: {}", objectName, ex);
+            throw new StorageException("Failed to presign upload URL: " + objectName, ex);
+        }
+    }
+
+    /**
+     * Returns whether the object exists.
+     *
+     * @throws StorageException if MinIO cannot be queried
+     */
+    public boolean exists(String objectName) {
+        return etag(objectName) != null;
+    }
+
+    /**
+     * Returns the object's ETag, or null if it does not exist.
+     *
+     * @throws StorageException if MinIO cannot be queried
+     */
+    public String etag(String objectName) {
+        try {
+            return unquote(minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(properties.getMinio().getBucket())
+                    .object(objectName)
+                    .build()).etag());
+        } catch (ErrorResponseException ex) {
+            if (isNoSuchKey(ex)) {
+                return null;
+            }
+            throw new StorageException("Failed to stat object in MinIO: " + objectName, ex);
+        } catch (Exception ex) {
+            throw new StorageException("Failed to stat object in MinIO: " + objectName, ex);
+        }
+    }
+
+    /**
+     * Downloads an object to a local file.
+     *
+     * @return the object's ETag, or null if it does not exist
+     * @throws StorageException if download fails
+     */
+    public String downloadTo(String objectName, Path target) {
+        try (GetObjectResponse in = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(properties.getMinio().getBucket())
+                .object(objectName)
+                .build())) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            return unquote(in.headers().get("ETag"));
+        } catch (ErrorResponseException ex) {
+            if (isNoSuchKey(ex)) {
+                return null;
+            }
+            throw new StorageException("Failed to download from MinIO: " + objectName, ex);
+        } catch (Exception ex) {
+            log.error("Failed to download from MinIO: {}", objectName, ex);
+            throw new StorageException("Failed to download from MinIO: " + objectName, ex);
+        }
+    }
+
+    private static boolean isNoSuchKey(ErrorResponseException ex) {
+        return "NoSuchKey".equals(ex.errorResponse().code());
+    }
+
+    private static String unquote(String etag) {
+        return etag != null && etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")
+                ? etag.substring(1, etag.length() - 1) : etag;
+    }
+
+    /**
+     * Opens an object for reading; the caller closes the stream.
+     *
+     * @throws StorageException if the object cannot be opened
+     */
+    public InputStream openStream(String objectName) {
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(properties.getMinio().getBucket())
+                    .object(objectName)
+                    .build());
         } catch (Exception ex) {
-            log.error("Failed to upload file to MinIO: {}", objectName, ex);
-            throw new StorageException("Failed to upload file to MinIO: " + objectName, ex);
+            log.error("Failed to open object in MinIO: {}", objectName, ex);
+            throw new StorageException("Failed to open object in MinIO: " + objectName, ex);
         }
     }
 
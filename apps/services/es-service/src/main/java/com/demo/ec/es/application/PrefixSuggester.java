@@ -0,0 +1,231 @@
+package com.demo.ec.es.application;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable in-memory prefix index over product titles.
+ * <p>
+ * Every word start of every normalized title is an entry (titleId, offset). Entries are sorted by the text
+ * from their offset, so all entries matching a prefix form one contiguous range found by binary search.
+ * Title ids are assigned in descending weight order, so the best titles in a range are the smallest ids,
+ * which a min segment tree over the entries yields in O(k log n) without materializing the range.
+ * Entries reference the normalized title instead of copying substrings, which keeps the structure at
+ * roughly the size of the titles plus 16 bytes per entry.
+ */
+final class PrefixSuggester {
+    private static final long STRING_OVERHEAD_BYTES = 40;
+    private static final long ARRAY_OVERHEAD_BYTES = 16;
+
+    private final String[] titles;
+    private final String[] normalized;
+    private final int[] entryTitle;
+    private final int[] entryOffset;
+    private final int[] tree;
+
+    private PrefixSuggester(String[] titles, String[] normalized, int[] entryTitle, int[] entryOffset) {
+        this.titles = titles;
+        this.normalized = normalized;
+        this.entryTitle = entryTitle;
+        this.entryOffset = entryOffset;
+        int n = entryTitle.length;
+        this.tree = new int[2 * n];
+        System.arraycopy(entryTitle, 0, tree, n, n);
+        for (int i = n - 1; i > 0; i--) {
+            tree[i] = Math.min(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Builds the index from title weights (higher weight ranks first, ties broken by title).
+     */
+    static PrefixSuggester build(Map<String, Long> weights) {
+        String[] titles = weights.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toArray(String[]::new);
+        String[] normalized = new String[titles.length];
+        int entryCount = 0;
+        for (int i = 0; i < titles.length; i++) {
+            String n = normalize(titles[i]);
+            normalized[i] = n.equals(titles[i]) ? titles[i] : n;
+            entryCount += wordStarts(normalized[i]);
+        }
+
+        Integer[] order = new Integer[entryCount];
+        int[] rawTitle = new int[entryCount];
+        int[] rawOffset = new int[entryCount];
+        int e = 0;
+        for (int t = 0; t < normalized.length; t++) {
+            String s = normalized[t];
+            for (int i = 0; i < s.length(); i++) {
+                if (isWordStart(s, i)) {
+                    rawTitle[e] = t;
+                    rawOffset[e] = i;
+                    order[e] = e;
+                    e++;
+                }
+            }
+        }
+        Arrays.sort(order, (a, b) -> compareSuffix(normalized, rawTitle[a], rawOffset[a], rawTitle[b], rawOffset[b]));
+
+        int[] entryTitle = new int[entryCount];
+        int[] entryOffset = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            entryTitle[i] = rawTitle[order[i]];
+            entryOffset[i] = rawOffset[order[i]];
+        }
+        return new PrefixSuggester(titles, normalized, entryTitle, entryOffset);
+    }
+
+    /**
+     * Returns up to {@code size} titles having a word that starts with {@code prefix}, best first.
+     */
+    List<String> suggest(String prefix, int size) {
+        String p = normalize(prefix.trim());
+        int n = entryTitle.length;
+        if (p.isEmpty() || n == 0 || size <= 0) {
+            return List.of();
+        }
+        int lo = boundary(p, false);
+        int hi = boundary(p, true);
+        if (lo >= hi) {
+            return List.of();
+        }
+
+        PriorityQueue<Integer> nodes = new PriorityQueue<>(Comparator.comparingInt(node -> tree[node]));
+        for (int l = lo + n, r = hi + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                nodes.add(l++);
+            }
+            if ((r & 1) == 1) {
+                nodes.add(--r);
+            }
+        }
+
+        List<String> result = new ArrayList<>(size);
+        BitSet seen = new BitSet();
+        while (!nodes.isEmpty() && result.size() < size) {
+            int node = nodes.poll();
+            if (node >= n) {
+                int titleId = tree[node];
+                if (!seen.get(titleId)) {
+                    seen.set(titleId);
+                    result.add(titles[titleId]);
+                }
+            } else {
+                nodes.add(2 * node);
+                nodes.add(2 * node + 1);
+            }
+        }
+        return result;
+    }
+
+    int titleCount() {
+        return titles.length;
+    }
+
+    int entryCount() {
+        return entryTitle.length;
+    }
+
+    /**
+     * Approximate retained heap size of this index.
+     */
+    long estimatedBytes() {
+        long bytes = 5 * ARRAY_OVERHEAD_BYTES;
+        for (int i = 0; i < titles.length; i++) {
+            bytes += 8 + estimateStringBytes(titles[i]);
+            if (normalized[i] != titles[i]) {
+                bytes += estimateStringBytes(normalized[i]);
+            }
+        }
+        return bytes + 16L * entryTitle.length;
+    }
+
+    /**
+     * Upper bound of the heap a title adds to the index, used to enforce the memory budget while loading.
+     */
+    static long estimateTitleBytes(String title) {
+        String n = normalize(title);
+        return 8 + 2 * estimateStringBytes(title) + 16L * wordStarts(n);
+    }
+
+    static String normalize(String value) {
+        return Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    private static long estimateStringBytes(String value) {
+        return STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+
+    private static int wordStarts(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (isWordStart(s, i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isWordStart(String s, int i) {
+        return !Character.isWhitespace(s.charAt(i)) && (i == 0 || Character.isWhitespace(s.charAt(i - 1)));
+    }
+
+    private static int compareSuffix(String[] normalized, int ta, int oa, int tb, int ob) {
+        String a = normalized[ta];
+        String b = normalized[tb];
+        int la = a.length() - oa;
+        int lb = b.length() - ob;
+        int len = Math.min(la, lb);
+        for (int i = 0; i < len; i++) {
+            int c = Character.compare(a.charAt(oa + i), b.charAt(ob + i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(la, lb);
+    }
+
+    /**
+     * Compares the first {@code prefix.length()} characters of an entry with the prefix.
+     */
+    private int comparePrefix(int entry, String prefix) {
+        String s = normalized[entryTitle[entry]];
+        int offset = entryOffset[entry];
+        int len = Math.min(s.length() - offset, prefix.length());
+        for (int i = 0; i < len; i++) {
+            int c = Character.compare(s.charAt(offset + i), prefix.charAt(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return len < prefix.length() ? -1 : 0;
+    }
+
+    /**
+     * First entry comparing {@code >= 0} (or {@code > 0} when {@code upper}) against the prefix.
+     */
+    private int boundary(String prefix, boolean upper) {
+        int lo = 0;
+        int hi = entryTitle.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = comparePrefix(mid, prefix);
+            if (c < 0 || (upper && c == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
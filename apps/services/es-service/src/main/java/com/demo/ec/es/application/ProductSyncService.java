@@ -0,0 +1,286 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ElasticsearchOperationException;
+import com.demo.ec.es.domain.ProductChange;
+import com.demo.ec.es.domain.ProductDocument;
+import com.demo.ec.es.domain.StockChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Applies product master and stock changes to the search index as partial updates.
+ * <p>
+ * Changes arrive in batches (one consumer poll, see {@code es-service.sync.window}); several changes to the same
+ * product within a batch are coalesced into one update carrying the newest state. Updates only touch the fields
+ * owned by the product master, so thumbnails and hashes written by the CSV import are kept; products not in the
+ * index yet are created from the partial document. Updates that change nothing are reported as noop by
+ * Elasticsearch and leave the caches alone.
+ * <p>
+ * Stock changes are applied the same way but only write {@code residue} and {@code inStock}, so the two event
+ * streams never overwrite each other's fields. Stock updates never create documents: a document exists only once
+ * the product master (or the CSV import) has written it, and stock levels for products not indexed yet are
+ * counted as {@code missing} and dropped until the product's next stock change.
+ */
+@Service
+public class ProductSyncService {
+    private static final Logger log = LoggerFactory.getLogger(ProductSyncService.class);
+    private static final String DOCUMENT_MISSING = "document_missing_exception";
+
+    private final ElasticsearchClient client;
+    private final EsServiceProperties properties;
+    private final SearchResultCache searchResultCache;
+    private final LocalSuggestIndex localSuggestIndex;
+    private final SyncMeters productMeters;
+    private final SyncMeters stockMeters;
+    private final AtomicLong lastSuggestRebuild = new AtomicLong();
+
+    public ProductSyncService(ElasticsearchClient client, EsServiceProperties properties,
+                              SearchResultCache searchResultCache, LocalSuggestIndex localSuggestIndex,
+                              MeterRegistry meterRegistry) {
+        this.client = client;
+        this.properties = properties;
+        this.searchResultCache = searchResultCache;
+        this.localSuggestIndex = localSuggestIndex;
+        this.productMeters = new SyncMeters("product", meterRegistry);
+        this.stockMeters = new SyncMeters("stock", meterRegistry);
+    }
+
+    /**
+     * Coalesces the changes per product and sends them as one bulk request.
+     * Item failures are logged and counted; a failed request throws so the batch is redelivered.
+     */
+    public void apply(List<ProductChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<ProductChange> batch = coalesce(changes, ProductChange::productId, ProductChange::updatedAt);
+        productMeters.coalesced.increment(changes.size() - batch.size());
+        List<ProductChange> applied = bulkUpdate(productMeters, batch, ProductChange::productId,
+                ProductSyncService::partialDocument, ProductChange::updatedAt, true);
+
+        log.debug("Product changes applied: received={}, products={}, applied={}", changes.size(), batch.size(),
+                applied.size());
+        if (!applied.isEmpty()) {
+            searchResultCache.invalidate();
+            requestSuggestRebuild();
+        }
+    }
+
+    /**
+     * Writes the newest stock level per product to {@code residue} and {@code inStock}, in one bulk request.
+     * Stock events outnumber product changes by far; coalescing keeps the index writes per window bounded by
+     * the number of products sold, and unchanged levels come back as noop.
+     * <p>
+     * Search results only carry {@code inStock}, so the result cache is dropped only when an applied update
+     * flips it. The stored values are read with one mget before the bulk request; residue-only changes during a
+     * sale leave cached results alone.
+     */
+    public void applyStock(List<StockChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<StockChange> batch = coalesce(changes, StockChange::productId, StockChange::updatedAt);
+        stockMeters.coalesced.increment(changes.size() - batch.size());
+        Set<Long> flipping = availabilityFlips(batch);
+        List<StockChange> applied = bulkUpdate(stockMeters, batch, StockChange::productId,
+                ProductSyncService::stockDocument, StockChange::updatedAt, false);
+
+        boolean flipped = applied.stream().anyMatch(change -> flipping.contains(change.productId()));
+        log.debug("Stock changes applied: received={}, products={}, applied={}, availabilityChanged={}",
+                changes.size(), batch.size(), applied.size(), flipped);
+        if (flipped) {
+            searchResultCache.invalidate();
+        }
+    }
+
+    /**
+     * Products whose {@code inStock} differs from the stored value. If the stored values cannot be read, every
+     * product is assumed to flip, so the cache is dropped as before rather than left stale.
+     */
+    private Set<Long> availabilityFlips(List<StockChange> batch) {
+        Set<Long> flipping = new HashSet<>();
+        try {
+            MgetResponse<ProductDocument> response = client.mget(m -> m
+                    .index(properties.getIndex().getAlias())
+                    .ids(batch.stream().map(change -> change.productId().toString()).toList())
+                    .sourceIncludes("inStock"), ProductDocument.class);
+            Map<String, Boolean> stored = new HashMap<>();
+            for (var item : response.docs()) {
+                if (item.isResult() && item.result().found() && item.result().source() != null) {
+                    stored.put(item.result().id(), item.result().source().inStock());
+                }
+            }
+            for (StockChange change : batch) {
+                if (!Objects.equals(stored.get(change.productId().toString()), change.inStock())) {
+                    flipping.add(change.productId());
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to read stored availability, treating every stock change as a flip: reason={}",
+                    ex.getMessage());
+            batch.forEach(change -> flipping.add(change.productId()));
+        }
+        return flipping;
+    }
+
+    /**
+     * Sends one partial update per change. With {@code upsert} documents that do not exist yet are created from the
+     * partial document; without it updates of missing documents are counted and skipped.
+     *
+     * @return the changes whose update changed a document
+     */
+    private <C> List<C> bulkUpdate(SyncMeters meters, List<C> batch, Function<C, Long> productId,
+                               Function<C, Map<String, Object>> partialDocument, Function<C, Instant> updatedAt,
+                               boolean upsert) {
+        String index = properties.getIndex().getAlias();
+        List<BulkOperation> operations = new ArrayList<>(batch.size());
+        for (C change : batch) {
+            Map<String, Object> doc = partialDocument.apply(change);
+            operations.add(BulkOperation.of(op -> op
+                    .update(u -> u.index(index).id(productId.apply(change).toString())
+                            .action(a -> a.doc(doc).docAsUpsert(upsert)))));
+        }
+
+        List<C> applied = new ArrayList<>(batch.size());
+        try {
+            var response = client.bulk(BulkRequest.of(b -> b.index(index).operations(operations)));
+            Instant now = Instant.now();
+            for (int i = 0; i < batch.size(); i++) {
+                C change = batch.get(i);
+                var item = i < response.items().size() ? response.items().get(i) : null;
+                if (item != null && item.error() != null && DOCUMENT_MISSING.equals(item.error().type())) {
+                    meters.missing.increment();
+                    log.debug("{} sync skipped, product not indexed: productId={}", meters.source, productId.apply(change));
+                } else if (item != null && item.error() != null) {
+                    meters.failed.increment();
+                    log.warn("{} sync failed: productId={}, error={}: {}", meters.source, productId.apply(change),
+                            item.error().type(), item.error().reason());
+                } else if (item != null && Result.NoOp.jsonValue().equals(item.result())) {
+                    meters.noop.increment();
+                } else {
+                    applied.add(change);
+                    meters.applied.increment();
+                    if (updatedAt.apply(change) != null) {
+                        meters.lag.record(Duration.between(updatedAt.apply(change), now));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            log.error("{} sync bulk request failed", meters.source, ex);
+            throw new ElasticsearchOperationException(meters.source + " sync bulk request failed", ex);
+        }
+        return applied;
+    }
+
+    /**
+     * Fields owned by storage-service. Nulls are sent as-is so cleared values are cleared in the index too.
+     */
+    private static Map<String, Object> partialDocument(ProductChange change) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("productId", change.productId());
+        doc.put("title", change.title());
+        doc.put("description", change.description());
+        doc.put("price", change.price());
+        doc.put("status", change.status());
+        doc.put("categoryId", change.categoryId());
+        if (change.createdAt() != null) {
+            doc.put("createdAt", change.createdAt());
+        }
+        return doc;
+    }
+
+    /**
+     * Stock fields; {@code inStock} is what listings filter on, {@code residue} keeps the level itself.
+     */
+    private static Map<String, Object> stockDocument(StockChange change) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("productId", change.productId());
+        doc.put("residue", change.residue());
+        doc.put("inStock", change.inStock());
+        return doc;
+    }
+
+    /**
+     * The local suggest index is rebuilt from a full scan, so sync-driven rebuilds are rate limited.
+     */
+    private void requestSuggestRebuild() {
+        long now = System.currentTimeMillis();
+        long last = lastSuggestRebuild.get();
+        if (now - last >= properties.getSync().getSuggestRebuildInterval().toMillis()
+                && lastSuggestRebuild.compareAndSet(last, now)) {
+            localSuggestIndex.requestRebuild();
+        }
+    }
+
+    /**
+     * Keeps the newest change per product, in first-seen order.
+     */
+    private static <C> List<C> coalesce(List<C> changes, Function<C, Long> productId, Function<C, Instant> updatedAt) {
+        Map<Long, C> latest = new LinkedHashMap<>();
+        for (C change : changes) {
+            latest.merge(productId.apply(change), change,
+                    (current, candidate) -> isNewer(updatedAt.apply(candidate), updatedAt.apply(current))
+                            ? candidate : current);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static boolean isNewer(Instant candidate, Instant current) {
+        if (candidate == null || current == null) {
+            // Later in the batch means later on the partition
+            return true;
+        }
+        return !candidate.isBefore(current);
+    }
+
+    private static final class SyncMeters {
+        private final String source;
+        private final Counter applied;
+        private final Counter coalesced;
+        private final Counter noop;
+        private final Counter missing;
+        private final Counter failed;
+        private final Timer lag;
+
+        private SyncMeters(String source, MeterRegistry meterRegistry) {
+            this.source = source;
+            this.applied = counter(source, "applied", meterRegistry);
+            this.coalesced = counter(source, "coalesced", meterRegistry);
+            this.noop = counter(source, "noop", meterRegistry);
+            this.missing = counter(source, "missing", meterRegistry);
+            this.failed = counter(source, "failed", meterRegistry);
+            this.lag = Timer.builder("es.sync.lag")
+                    .description("Time from the change in storage-service to the index update")
+                    .tag("source", source)
+                    .register(meterRegistry);
+        }
+
+        private static Counter counter(String source, String result, MeterRegistry meterRegistry) {
+            return Counter.builder("es.sync.changes").tag("source", source).tag("result", result).register(meterRegistry);
+        }
+    }
+}
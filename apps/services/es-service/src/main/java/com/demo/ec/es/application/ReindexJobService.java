@@ -0,0 +1,288 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.json.JsonData;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ElasticsearchOperationException;
+import com.demo.ec.es.domain.ReindexJob;
+import com.demo.ec.es.domain.ReindexJobStatus;
+import com.demo.ec.es.domain.ReindexRequest;
+import jakarta.annotation.PreDestroy;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs reindexes as background jobs so that mapping changes can be rolled out without downtime.
+ * <p>
+ * The target is created (or reconfigured) with no replicas and refresh disabled, filled by a sliced,
+ * throttled {@code _reindex} running as an Elasticsearch task, then given back the source's replica count and
+ * refresh interval. The alias is switched atomically only when the target holds as many documents as the
+ * source, which catches documents created or deleted through the alias while the copy was running.
+ * <p>
+ * Partial updates would not be caught that way: a change applied to the source after the copy started would be
+ * missing from the target once the alias moves. The Kafka sync listeners of this instance are therefore paused
+ * (and their in-flight batch finished) before the source is refreshed, and resumed after the alias switch, so
+ * the changes that queued up in the meantime land on the new index. Sync lag grows by the duration of the job.
+ * This relies on the listeners of this instance being the only ones writing to the alias: with several
+ * es-service instances in the sync consumer group, run the reindex with sync disabled on the others, and do not
+ * run CSV imports alongside a reindex.
+ * Job state is kept in memory; the Elasticsearch task id is part of it for inspection via the tasks API.
+ */
+@Service
+public class ReindexJobService {
+    private static final Logger log = LoggerFactory.getLogger(ReindexJobService.class);
+    private static final String DEFAULT_REPLICAS = "1";
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
+    private final ElasticsearchClient client;
+    private final EsServiceProperties properties;
+    private final IndexAdminService indexAdminService;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final Map<String, ReindexJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "reindex-job"));
+
+    public ReindexJobService(ElasticsearchClient client, EsServiceProperties properties,
+                             IndexAdminService indexAdminService, KafkaListenerEndpointRegistry listenerRegistry) {
+        this.client = client;
+        this.properties = properties;
+        this.indexAdminService = indexAdminService;
+        this.listenerRegistry = listenerRegistry;
+    }
+
+    /**
+     * Registers a new job and queues it for execution.
+     */
+    public ReindexJob submit(ReindexRequest request, String alias) {
+        String jobId = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        ReindexJob job = new ReindexJob(jobId, ReindexJobStatus.QUEUED, request.sourceIndex(), request.targetIndex(),
+                alias, null, 0, 0, 0, 0, null, now, now);
+        jobs.put(jobId, job);
+        executor.execute(() -> execute(jobId, request));
+        log.info("Reindex job submitted: jobId={}, source={}, target={}, alias={}",
+                jobId, request.sourceIndex(), request.targetIndex(), alias);
+        return job;
+    }
+
+    public Optional<ReindexJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void execute(String jobId, ReindexRequest request) {
+        ReindexJob job = jobs.get(jobId);
+        String source = job.sourceIndex();
+        String target = job.targetIndex();
+        TargetSettings restore = null;
+        boolean ingestSettingsApplied = false;
+        List<MessageListenerContainer> pausedListeners = List.of();
+
+        try {
+            pausedListeners = pauseSync(jobId);
+            restore = readSettings(source);
+            prepareTarget(target);
+            ingestSettingsApplied = true;
+
+            client.indices().refresh(r -> r.index(source));
+            String taskId = startReindex(source, target, request);
+            jobs.put(jobId, jobs.get(jobId).withTask(ReindexJobStatus.RUNNING, taskId, 0, 0));
+            log.info("Reindex task started: jobId={}, taskId={}", jobId, taskId);
+            awaitTask(jobId, taskId);
+
+            applySettings(target, restore);
+            ingestSettingsApplied = false;
+            client.indices().refresh(r -> r.index(target));
+            client.cluster().health(h -> h
+                    .index(target)
+                    .waitForNoInitializingShards(true)
+                    .timeout(t -> t.time("60s")));
+
+            long sourceCount = client.count(c -> c.index(source)).count();
+            long targetCount = client.count(c -> c.index(target)).count();
+            if (sourceCount != targetCount) {
+                String message = "Document count mismatch (source=" + sourceCount + ", target=" + targetCount
+                        + "), alias not switched";
+                jobs.put(jobId, jobs.get(jobId).withResult(ReindexJobStatus.FAILED, sourceCount, targetCount, message));
+                log.error("Reindex job failed: jobId={}, {}", jobId, message);
+                return;
+            }
+
+            if (job.alias() != null && !job.alias().isBlank()) {
+                indexAdminService.ensureAlias(target, job.alias());
+            }
+            jobs.put(jobId, jobs.get(jobId).withResult(ReindexJobStatus.COMPLETED, sourceCount, targetCount, null));
+            log.info("Reindex job completed: jobId={}, documents={}, alias={} -> {}", jobId, targetCount, job.alias(), target);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            fail(jobId, "Interrupted");
+        } catch (Exception ex) {
+            fail(jobId, ex.getMessage());
+            log.error("Reindex job failed: jobId={}", jobId, ex);
+        } finally {
+            if (ingestSettingsApplied) {
+                try {
+                    applySettings(target, restore);
+                } catch (IOException ex) {
+                    log.warn("Failed to restore settings of {}: {}", target, ex.getMessage());
+                }
+            }
+            pausedListeners.forEach(MessageListenerContainer::resume);
+            if (!pausedListeners.isEmpty()) {
+                log.info("Sync listeners resumed: jobId={}", jobId);
+            }
+        }
+    }
+
+    /**
+     * Pauses the running sync listeners and waits until their current batch has been applied.
+     */
+    private List<MessageListenerContainer> pauseSync(String jobId) throws InterruptedException {
+        List<MessageListenerContainer> running = listenerRegistry.getListenerContainers().stream()
+                .filter(MessageListenerContainer::isRunning)
+                .toList();
+        running.forEach(MessageListenerContainer::pause);
+        long deadline = System.nanoTime() + properties.getIndex().getReindex().getSyncPauseTimeout().toNanos();
+        try {
+            while (!running.stream().allMatch(MessageListenerContainer::isContainerPaused)) {
+                if (System.nanoTime() > deadline) {
+                    throw new ElasticsearchOperationException("Sync listeners did not pause in time, reindex not started");
+                }
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException | RuntimeException ex) {
+            running.forEach(MessageListenerContainer::resume);
+            throw ex;
+        }
+        if (!running.isEmpty()) {
+            log.info("Sync listeners paused: jobId={}, listeners={}", jobId, running.size());
+        }
+        return running;
+    }
+
+    private String startReindex(String source, String target, ReindexRequest request) throws IOException {
+        EsServiceProperties.Index.Reindex config = properties.getIndex().getReindex();
+        int slices = request.slices() != null ? request.slices() : config.getSlices();
+        float requestsPerSecond = request.requestsPerSecond() != null
+                ? request.requestsPerSecond() : config.getRequestsPerSecond();
+
+        var response = client.reindex(r -> r
+                .source(s -> s.index(source).size(config.getBatchSize()))
+                .dest(d -> d.index(target))
+                .slices(sl -> slices > 0 ? sl.value(slices) : sl.computed(SlicesCalculation.Auto))
+                .requestsPerSecond(requestsPerSecond)
+                .waitForCompletion(false));
+        return response.task();
+    }
+
+    /**
+     * Polls the task until it finishes, recording progress on the job. Fails if any document was rejected.
+     */
+    private void awaitTask(String jobId, String taskId) throws IOException, InterruptedException {
+        long pollMillis = Math.max(properties.getIndex().getReindex().getPollInterval().toMillis(), 100);
+        while (true) {
+            GetTasksResponse response = client.tasks().get(g -> g.taskId(taskId));
+            JsonObject status = asObject(response.task().status());
+            long total = longField(status, "total");
+            long copied = longField(status, "created") + longField(status, "updated");
+            jobs.put(jobId, jobs.get(jobId).withTask(ReindexJobStatus.RUNNING, taskId, total, copied));
+
+            if (response.completed()) {
+                if (response.error() != null) {
+                    throw new ElasticsearchOperationException("Reindex task failed: " + response.error().reason());
+                }
+                JsonObject result = asObject(response.response());
+                JsonArray failures = result == null ? null : result.getJsonArray("failures");
+                if (failures != null && !failures.isEmpty()) {
+                    throw new ElasticsearchOperationException("Reindex task finished with " + failures.size()
+                            + " failures, first: " + failures.get(0));
+                }
+                return;
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    /**
+     * Creates the target with ingest settings, or applies them if it already exists.
+     */
+    private void prepareTarget(String target) throws IOException {
+        IndexSettings ingest = IndexSettings.of(s -> s
+                .numberOfReplicas("0")
+                .refreshInterval(t -> t.time("-1")));
+        if (client.indices().exists(b -> b.index(target)).value()) {
+            client.indices().putSettings(p -> p.index(target).settings(ingest));
+        } else {
+            indexAdminService.createIndex(target, ingest);
+        }
+    }
+
+    private TargetSettings readSettings(String source) throws IOException {
+        var response = client.indices().getSettings(g -> g.index(source));
+        IndexState state = response.settings().values().stream().findFirst().orElse(null);
+        IndexSettings settings = state == null ? null : state.settings();
+        if (settings != null && settings.index() != null) {
+            settings = settings.index();
+        }
+        String replicas = settings != null && settings.numberOfReplicas() != null
+                ? settings.numberOfReplicas() : DEFAULT_REPLICAS;
+        Time refreshInterval = settings != null && settings.refreshInterval() != null
+                ? settings.refreshInterval() : Time.of(t -> t.time(DEFAULT_REFRESH_INTERVAL));
+        return new TargetSettings(replicas, refreshInterval);
+    }
+
+    private void applySettings(String target, TargetSettings settings) throws IOException {
+        client.indices().putSettings(p -> p
+                .index(target)
+                .settings(s -> s
+                        .numberOfReplicas(settings.replicas())
+                        .refreshInterval(settings.refreshInterval())));
+    }
+
+    private void fail(String jobId, String message) {
+        ReindexJob current = jobs.get(jobId);
+        jobs.put(jobId, current.withResult(ReindexJobStatus.FAILED, current.sourceCount(), current.targetCount(), message));
+    }
+
+    private static JsonObject asObject(JsonData data) {
+        if (data == null) {
+            return null;
+        }
+        JsonValue value = data.toJson();
+        return value.getValueType() == JsonValue.ValueType.OBJECT ? value.asJsonObject() : null;
+    }
+
+    private static long longField(JsonObject object, String name) {
+        if (object == null || !object.containsKey(name) || object.isNull(name)) {
+            return 0;
+        }
+        return object.getJsonNumber(name).longValue();
+    }
+
+    private record TargetSettings(String replicas, Time refreshInterval) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
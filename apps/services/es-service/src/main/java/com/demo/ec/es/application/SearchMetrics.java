@@ -0,0 +1,142 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.JsonpUtils;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.SearchQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency metrics and slow-query log for search and suggest requests.
+ * <p>
+ * Every request records up to three phases under the same query-shape tags: {@code took} (time Elasticsearch
+ * reports it spent), {@code wall} (from sending the request to having the parsed response, i.e. took plus
+ * network, queueing and deserialization) and {@code mapping} (building the response in this service).
+ * A large gap between took and wall points at the client side, a high took at the query itself.
+ * Timers publish fixed SLO buckets instead of full percentile histograms to keep the series count bounded.
+ * Responses cut short by a timeout, a failed shard or terminate_after are counted per reason.
+ */
+@Component
+public class SearchMetrics {
+    private static final Logger slowLog = LoggerFactory.getLogger("com.demo.ec.es.SlowQuery");
+    private static final Duration[] BUCKETS = {
+            Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100),
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(2)
+    };
+
+    private final MeterRegistry meterRegistry;
+    private final EsServiceProperties properties;
+    private final ElasticsearchAsyncClient asyncClient;
+
+    public SearchMetrics(MeterRegistry meterRegistry, EsServiceProperties properties,
+                         ElasticsearchAsyncClient asyncClient) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * Tags describing the shape of a product search; the page is bucketed to bound cardinality. {@code ngram} tells
+     * whether the query is long enough to also match the title n-gram subfield.
+     */
+    public Tags searchShape(SearchQuery query, boolean aggregated) {
+        return Tags.of(
+                "has_q", String.valueOf(query.q() != null),
+                "ngram", String.valueOf(query.q() != null && query.q().length() >= IndexAdminService.TITLE_NGRAM_MIN),
+                "price_filter", String.valueOf(query.minPrice() != null || query.maxPrice() != null),
+                "category_filter", String.valueOf(query.categoryId() != null),
+                "stock_filter", String.valueOf(query.inStock()),
+                "sort", query.sort().name(),
+                "page", pageBucket(query),
+                "facets", String.valueOf(aggregated));
+    }
+
+    /**
+     * Tags describing the shape of an Elasticsearch suggest lookup; {@code ngram} marks the n-gram aggregation fallback.
+     */
+    public Tags suggestShape(String type, String prefix) {
+        return Tags.of("type", type, "ngram", String.valueOf("aggregation".equals(type)
+                && prefix.length() >= IndexAdminService.TITLE_NGRAM_MIN));
+    }
+
+    /**
+     * Records one Elasticsearch round trip and logs it if it was slow.
+     *
+     * @param operation    {@code search} or {@code suggest}
+     * @param shape        query-shape tags from {@link #searchShape} or {@link #suggestShape}
+     * @param tookMillis   {@code took} reported by Elasticsearch
+     * @param wallNanos    client-side time from sending the request to the parsed response
+     * @param mappingNanos time spent building the response from the hits, or -1 if not measured
+     * @param request      the request, serialized into the slow-query log
+     */
+    public void record(String operation, Tags shape, long tookMillis, long wallNanos, long mappingNanos,
+                       JsonpSerializable request) {
+        String name = "es." + operation + ".query";
+        timer(name, shape, "took").record(tookMillis, TimeUnit.MILLISECONDS);
+        timer(name, shape, "wall").record(wallNanos, TimeUnit.NANOSECONDS);
+        if (mappingNanos >= 0) {
+            timer(name, shape, "mapping").record(mappingNanos, TimeUnit.NANOSECONDS);
+        }
+
+        EsServiceProperties.Search.SlowLog config = properties.getSearch().getSlowLog();
+        if (wallNanos >= config.getThreshold().toNanos()
+                && ThreadLocalRandom.current().nextDouble() < config.getSampleRate()) {
+            slowLog.warn("Slow {}: wallMs={}, tookMs={}, shape={}, query={}", operation,
+                    TimeUnit.NANOSECONDS.toMillis(wallNanos), tookMillis, shape,
+                    JsonpUtils.toJsonString(request, asyncClient._jsonpMapper()));
+        }
+    }
+
+    /**
+     * Counts the response if Elasticsearch cut it short.
+     *
+     * @return whether the response may be incomplete
+     */
+    public boolean partial(String operation, ResponseBody<?> response) {
+        String reason;
+        if (response.timedOut()) {
+            reason = "timeout";
+        } else if (response.shards() != null && response.shards().failed().intValue() > 0) {
+            reason = "shard_failure";
+        } else if (Boolean.TRUE.equals(response.terminatedEarly())) {
+            reason = "terminate_after";
+        } else {
+            return false;
+        }
+        meterRegistry.counter("es." + operation + ".partial", "reason", reason).increment();
+        return true;
+    }
+
+    private Timer timer(String name, Tags shape, String phase) {
+        return Timer.builder(name)
+                .tags(shape)
+                .tag("phase", phase)
+                .serviceLevelObjectives(BUCKETS)
+                .register(meterRegistry);
+    }
+
+    private static String pageBucket(SearchQuery query) {
+        if (query.cursorMode()) {
+            return "cursor";
+        }
+        int page = query.page();
+        if (page == 0) {
+            return "0";
+        }
+        if (page < 5) {
+            return "1-4";
+        }
+        return page < 20 ? "5-19" : "20+";
+    }
+}
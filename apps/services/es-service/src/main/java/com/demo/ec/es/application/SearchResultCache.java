@@ -0,0 +1,175 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.demo.ec.es.config.EsServiceProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded in-process LRU cache for search results and facet counts.
+ * Entries are tagged with the generation (concrete index behind the alias plus a write epoch) they were
+ * computed against, so alias switches and imports invalidate them without waiting for the TTL.
+ * The TTL only bounds staleness caused by writes from other instances.
+ */
+@Component
+public class SearchResultCache {
+    private static final Logger log = LoggerFactory.getLogger(SearchResultCache.class);
+
+    private final ElasticsearchClient client;
+    private final EsServiceProperties properties;
+    private final Map<Object, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicReference<Generation> generation = new AtomicReference<>();
+
+    public SearchResultCache(ElasticsearchClient client, EsServiceProperties properties, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.properties = properties;
+        int maxEntries = Math.max(properties.getSearch().getCache().getMaxEntries(), 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("es.search.cache.requests", hits, AtomicLong::doubleValue)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("es.search.cache.requests", misses, AtomicLong::doubleValue)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("es.search.cache.evictions", evictions, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        FunctionCounter.builder("es.search.cache.stale", stale, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        Gauge.builder("es.search.cache.size", this, SearchResultCache::size)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.getSearch().getCache().isEnabled();
+    }
+
+    /**
+     * Returns the cached value for the key if it was computed against the current generation and
+     * has not expired, otherwise null.
+     */
+    public <T> T get(Object key, Class<T> type) {
+        Generation current = currentGeneration();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.generation().equals(current) && entry.expiresAt() > now
+                    && type.isInstance(entry.value())) {
+                hits.incrementAndGet();
+                return type.cast(entry.value());
+            }
+            if (entry != null) {
+                // Expired or computed against an older generation; not a capacity eviction
+                entries.remove(key);
+                stale.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns the write epoch to pass to {@link #put} once the query has been executed.
+     */
+    public long epoch() {
+        return currentGeneration().epoch();
+    }
+
+    /**
+     * Stores the value unless the cache was invalidated after {@code observedEpoch} was read,
+     * in which case the value may already be stale.
+     */
+    public void put(Object key, Object value, long observedEpoch) {
+        Generation current = currentGeneration();
+        if (current.epoch() != observedEpoch) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + properties.getSearch().getCache().getTtl().toMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, current, expiresAt));
+        }
+    }
+
+    /**
+     * Called after the alias has been pointed at a new index.
+     */
+    public void onAliasSwitched(String indexName) {
+        long next = epoch.incrementAndGet();
+        generation.set(new Generation(indexName, next));
+        clear();
+        log.info("Search cache invalidated: alias now points to {}", indexName);
+    }
+
+    /**
+     * Called after documents have been written to the index behind the alias.
+     */
+    public void invalidate() {
+        long next = epoch.incrementAndGet();
+        // Keeps the index of a concurrent alias switch; only the epoch moves forward
+        generation.updateAndGet(current -> current == null || current.epoch() >= next
+                ? current : new Generation(current.index(), next));
+        clear();
+        log.debug("Search cache invalidated: epoch={}", next);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private Generation currentGeneration() {
+        Generation current = generation.get();
+        if (current == null) {
+            generation.compareAndSet(null, new Generation(resolveAliasTarget(), epoch.get()));
+            current = generation.get();
+        }
+        return current;
+    }
+
+    private String resolveAliasTarget() {
+        String alias = properties.getIndex().getAlias();
+        try {
+            var response = client.indices().getAlias(g -> g.name(alias));
+            return response.aliases().keySet().stream().findFirst().orElse(alias);
+        } catch (Exception ex) {
+            log.debug("Failed to resolve alias target: alias={}, reason={}", alias, ex.getMessage());
+            return alias;
+        }
+    }
+
+    private record Generation(String index, long epoch) {
+    }
+
+    private record Entry(Object value, Generation generation, long expiresAt) {
+    }
+}
@@ -1,156 +1,519 @@
 package com.demo.ec.es.application;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.AggregationRange;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
-import co.elastic.clients.json.JsonData;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
 import com.demo.ec.es.config.EsServiceProperties;
 import com.demo.ec.es.domain.ElasticsearchOperationException;
 import com.demo.ec.es.domain.ProductCard;
-import com.demo.ec.es.domain.ProductDocument;
+import com.demo.ec.es.domain.SearchFacets;
+import com.demo.ec.es.domain.SearchQuery;
 import com.demo.ec.es.domain.SearchResponse;
 import com.demo.ec.es.domain.SearchSort;
+import com.demo.ec.es.domain.StorageException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service for searching products in Elasticsearch.
- * Supports full-text search with fuzziness, price filtering, and multiple sort options.
+ * Supports full-text search with partial title matching on n-grams, category and price filtering, multiple sort
+ * options, facet counts computed in the same request, and cursor-based deep pagination via point-in-time and
+ * search_after.
  */
 @Service
 public class SearchService {
     private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+    private static final String CATEGORY_FACET = "categories";
+    private static final String PRICE_FACET = "price_ranges";
+    private static final String FACET_VALUES = "values";
+    private static final List<String> CARD_FIELDS = List.of("productId", "title", "price", "thumbnailUrl", "createdAt", "inStock");
 
-    private final ElasticsearchClient client;
+    private final ElasticsearchAsyncClient asyncClient;
     private final EsServiceProperties properties;
+    private final SearchResultCache searchResultCache;
+    private final SingleFlight<SearchQuery, SearchResponse> inFlight;
+    private final SearchMetrics searchMetrics;
+    private final ThumbnailCache thumbnailCache;
+    private final ThumbnailUrlNormalizer thumbnailUrls;
 
-    public SearchService(ElasticsearchClient client, EsServiceProperties properties) {
-        this.client = client;
+    public SearchService(ElasticsearchAsyncClient asyncClient, EsServiceProperties properties,
+                         SearchResultCache searchResultCache, MinioStorageService minioStorageService,
+                         ThumbnailCache thumbnailCache, SearchMetrics searchMetrics, MeterRegistry meterRegistry) {
+        this.asyncClient = asyncClient;
         this.properties = properties;
+        this.searchResultCache = searchResultCache;
+        this.inFlight = new SingleFlight<>("search", meterRegistry);
+        this.searchMetrics = searchMetrics;
+        this.thumbnailCache = thumbnailCache;
+        this.thumbnailUrls = new ThumbnailUrlNormalizer(publicUrlPrefix(minioStorageService),
+                properties.getMinio().getBucket());
+    }
+
+    public SearchResponse search(String q, Long minPrice, Long maxPrice, SearchSort sort, int page, int size) {
+        return search(new SearchQuery(q, null, minPrice, maxPrice, false, sort, page, size, null, false), true);
+    }
+
+    /**
+     * Blocking variant of {@link #searchAsync}.
+     */
+    public SearchResponse search(SearchQuery query, boolean useCache) {
+        return SingleFlight.join(searchAsync(query, useCache));
     }
 
     /**
      * Searches products with multi_match query, filters, and sorting.
+     * <p>
+     * With a cursor the search runs against a point-in-time and pages with search_after, using
+     * productId as the tiebreaker, so the cost of a page does not grow with its depth.
+     * Cursor requests are never cached.
+     * <p>
+     * Facets are aggregations of the same request. The category and price filters then move to post_filter,
+     * and each facet aggregation applies only the other filter. Facets of queries without text or price filter
+     * are cached per category and stock filter, so other pages and sort orders of those queries skip the
+     * aggregations.
+     * <p>
+     * Hits are counted up to {@code es-service.search.track-total-hits-up-to}; beyond it the total is a lower
+     * bound ({@code totalRelation=gte}). Shards that exceed {@code es-service.search.timeout} return what they
+     * have; such responses are flagged partial and not cached. Page sizes above
+     * {@code es-service.search.max-size} are reduced to it.
+     * <p>
+     * Runs on the async client without blocking the caller. Identical page queries issued while one is in
+     * flight share its Elasticsearch call.
      *
-     * @param q        search query (optional, searches title^3 and description)
-     * @param minPrice minimum price filter (optional)
-     * @param maxPrice maximum price filter (optional)
-     * @param sort     sort option (relevance, newest, price_asc, price_desc)
-     * @param page     page number (0-indexed)
-     * @param size     page size
-     * @return search response with products, pagination, and total count
+     * @param requested search parameters (q searches title^3 and description)
+     * @param useCache  whether the result cache may be used for this request
+     * @return search response with products, pagination, total count and the next cursor if any
      */
-    public SearchResponse search(String q, Long minPrice, Long maxPrice, SearchSort sort, int page, int size) {
-        int from = Math.max(page, 0) * Math.max(size, 1);
+    public CompletableFuture<SearchResponse> searchAsync(SearchQuery requested, boolean useCache) {
+        SearchQuery query = requested.withMaxSize(properties.getSearch().getMaxSize());
+        if (query.cursorMode()) {
+            return executeWithCursor(query);
+        }
+        if (!useCache || !searchResultCache.isEnabled()) {
+            return inFlight.execute(query, () -> execute(query, null));
+        }
+
+        SearchResponse cached = searchResultCache.get(query, SearchResponse.class);
+        if (cached != null) {
+            log.debug("Search cache hit: {}", query);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return inFlight.execute(query, () -> {
+            long epoch = searchResultCache.epoch();
+            FacetKey facetKey = query.facets() && query.facetsCacheable()
+                    ? new FacetKey(query.categoryId(), query.inStock()) : null;
+            SearchFacets cachedFacets = facetKey == null ? null : searchResultCache.get(facetKey, SearchFacets.class);
+
+            return execute(query, cachedFacets).thenApply(response -> {
+                if (response.partial()) {
+                    // A timed-out response is not what the next caller should get
+                    return response;
+                }
+                searchResultCache.put(query, response, epoch);
+                if (facetKey != null && cachedFacets == null && response.facets() != null) {
+                    searchResultCache.put(facetKey, response.facets(), epoch);
+                }
+                return response;
+            });
+        });
+    }
+
+    /**
+     * @param knownFacets cached facets for this query, or null to aggregate them if the query asks for facets
+     */
+    private CompletableFuture<SearchResponse> execute(SearchQuery query, SearchFacets knownFacets) {
+        int from = query.page() * Math.max(query.size(), 1);
 
         log.debug("Executing search: q={}, minPrice={}, maxPrice={}, sort={}, from={}, size={}",
-                q, minPrice, maxPrice, sort, from, size);
+                query.q(), query.minPrice(), query.maxPrice(), query.sort(), from, query.size());
 
-        BoolQuery.Builder bool = new BoolQuery.Builder();
-        if (q != null && !q.isBlank()) {
-            bool.must(m -> m.multiMatch(mm -> {
-                mm.query(q)
-                        .fields("title^3", "description");
-                if (q.length() >= 3) {
-                    mm.fuzziness("AUTO");
+        boolean aggregate = query.facets() && knownFacets == null;
+        BoolQuery bool = buildQuery(query, !aggregate);
+        Query categoryFilter = categoryFilter(query);
+        Query priceFilter = priceFilter(query);
+        SearchRequest request = SearchRequest.of(s -> {
+            s.index(properties.getIndex().getAlias());
+            s.from(from);
+            s.size(query.size());
+            s.source(src -> src.filter(f -> f.includes(CARD_FIELDS)));
+            s.query(qb -> qb.bool(bool));
+            applyLimits(s);
+            if (aggregate) {
+                Query postFilter = and(categoryFilter, priceFilter);
+                if (postFilter != null) {
+                    s.postFilter(postFilter);
                 }
-                return mm;
-            }));
-        }
-        bool.filter(f -> f.term(t -> t.field("status").value("ACTIVE")));
-        if (minPrice != null || maxPrice != null) {
-            bool.filter(f -> f.range(r -> {
-                r.number(n -> {
-                    n.field("price");
-                    if (minPrice != null) {
-                        n.gte(minPrice.doubleValue());
+                applyFacetAggregations(s, categoryFilter, priceFilter);
+            }
+            applySort(s, query.sort());
+            return s;
+        });
+        long started = System.nanoTime();
+        return asyncClient.search(request, ProductCard.class)
+                .handle((response, ex) -> {
+                    long wallNanos = System.nanoTime() - started;
+                    if (ex != null) {
+                        throw searchFailure(ex);
                     }
-                    if (maxPrice != null) {
-                        n.lte(maxPrice.doubleValue());
+                    List<ProductCard> items = toCards(response);
+                    var totalHits = response.hits().total();
+                    long total = totalHits == null ? items.size() : totalHits.value();
+                    String totalRelation = totalHits == null ? "eq" : totalHits.relation().jsonValue();
+                    boolean partial = searchMetrics.partial("search", response);
+                    SearchFacets facets = aggregate ? toFacets(response.aggregations()) : knownFacets;
+                    searchMetrics.record("search", searchMetrics.searchShape(query, aggregate), response.took(),
+                            wallNanos, System.nanoTime() - started - wallNanos, request);
+
+                    log.debug("Search completed: hits={}, total={}{}, facets={}, partial={}", items.size(), total,
+                            "gte".equals(totalRelation) ? "+" : "",
+                            aggregate ? "aggregated" : knownFacets != null ? "cached" : "none", partial);
+                    return new SearchResponse(items, total, totalRelation, query.page(), query.size(), null, null,
+                            facets, partial);
+                });
+    }
+
+    private CompletableFuture<SearchResponse> executeWithCursor(SearchQuery query) {
+        String keepAlive = properties.getSearch().getPitKeepAlive();
+        SearchCursor cursor = SearchQuery.CURSOR_START.equals(query.cursor()) ? null : decodeCursor(query.cursor());
+
+        CompletableFuture<String> pit = cursor != null
+                ? CompletableFuture.completedFuture(cursor.pitId())
+                : asyncClient.openPointInTime(o -> o
+                        .index(properties.getIndex().getAlias())
+                        .keepAlive(k -> k.time(keepAlive))).thenApply(OpenPointInTimeResponse::id);
+
+        log.debug("Executing cursor search: q={}, minPrice={}, maxPrice={}, sort={}, size={}, first={}",
+                query.q(), query.minPrice(), query.maxPrice(), query.sort(), query.size(), cursor == null);
+
+        BoolQuery bool = buildQuery(query, true);
+        return pit.thenCompose(pitId -> {
+                    SearchRequest request = SearchRequest.of(s -> {
+                        s.pit(p -> p.id(pitId).keepAlive(k -> k.time(keepAlive)));
+                        s.size(query.size());
+                        s.source(src -> src.filter(f -> f.includes(CARD_FIELDS)));
+                        s.query(qb -> qb.bool(bool));
+                        applyLimits(s);
+                        applySort(s, query.sort());
+                        s.sort(so -> so.field(f -> f.field("productId").order(SortOrder.Asc)));
+                        if (cursor != null) {
+                            s.searchAfter(cursor.after().stream().map(SearchService::toFieldValue).toList());
+                        }
+                        return s;
+                    });
+                    long started = System.nanoTime();
+                    return asyncClient.search(request, ProductCard.class).thenApply(response -> {
+                        long wallNanos = System.nanoTime() - started;
+                        List<ProductCard> items = toCards(response);
+                        var totalHits = response.hits().total();
+                        long total = totalHits == null ? items.size() : totalHits.value();
+                        String totalRelation = totalHits == null ? "eq" : totalHits.relation().jsonValue();
+                        boolean partial = searchMetrics.partial("search", response);
+                        String nextPitId = response.pitId() != null ? response.pitId() : pitId;
+
+                        var hits = response.hits().hits();
+                        String nextCursor = null;
+                        if (hits.size() >= query.size() && !hits.isEmpty()) {
+                            List<Object> after = hits.get(hits.size() - 1).sort().stream().map(FieldValue::_get).toList();
+                            nextCursor = encodeCursor(new SearchCursor(nextPitId, after));
+                        } else {
+                            closePointInTime(nextPitId);
+                        }
+
+                        searchMetrics.record("search", searchMetrics.searchShape(query, false), response.took(),
+                                wallNanos, System.nanoTime() - started - wallNanos, request);
+
+                        log.debug("Cursor search completed: hits={}, total={}, hasNext={}, partial={}", items.size(), total,
+                                nextCursor != null, partial);
+                        return new SearchResponse(items, total, totalRelation, query.page(), query.size(), null,
+                                nextCursor, null, partial);
+                    }).whenComplete((response, ex) -> {
+                        // The client never received this point-in-time, so nobody else will close it
+                        if (ex != null && cursor == null) {
+                            closePointInTime(pitId);
+                        }
+                    });
+                })
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        throw searchFailure(ex);
                     }
-                    return n;
+                    return response;
                 });
-                return r;
-            }));
+    }
+
+    private static ElasticsearchOperationException searchFailure(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof ElasticsearchOperationException operationException) {
+            return operationException;
         }
+        log.error("Search failed", cause);
+        return new ElasticsearchOperationException("Search operation failed", cause);
+    }
 
-        try {
-            co.elastic.clients.elasticsearch.core.SearchResponse<ProductDocument> response = client.search(s -> {
-                s.index(properties.getIndex().getAlias());
-                s.from(from);
-                s.size(size);
-                s.query(qb -> qb.bool(bool.build()));
-
-                if (sort == SearchSort.relevance) {
-                    s.sort(so -> so.score(sc -> sc.order(SortOrder.Desc)));
-                } else if (sort == SearchSort.newest) {
-                    s.sort(so -> so.field(f -> f.field("createdAt").order(SortOrder.Desc)));
-                } else if (sort == SearchSort.price_asc) {
-                    s.sort(so -> so.field(f -> f.field("price").order(SortOrder.Asc)));
-                } else if (sort == SearchSort.price_desc) {
-                    s.sort(so -> so.field(f -> f.field("price").order(SortOrder.Desc)));
+    /**
+     * @param includeFilters whether the category and price filters are part of the query (false when they are
+     *                       applied as post_filter for facets)
+     */
+    private BoolQuery buildQuery(SearchQuery query, boolean includeFilters) {
+        String q = query.q();
+
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        if (q != null) {
+            // Partial title matches come from the n-gram sub-field instead of fuzzy expansion at query time
+            bool.must(m -> m.bool(b -> b
+                    .should(s -> s.multiMatch(mm -> mm.query(q).fields("title^3", "description")))
+                    .should(s -> s.match(mt -> mt
+                            .field(IndexAdminService.TITLE_NGRAM_FIELD)
+                            .query(q)
+                            .minimumShouldMatch("75%")))
+                    .minimumShouldMatch("1")));
+        }
+        bool.filter(f -> f.term(t -> t.field("status").value("ACTIVE")));
+        if (query.inStock()) {
+            // Kept in the main query, so facet counts only cover available products too
+            bool.filter(f -> f.term(t -> t.field("inStock").value(true)));
+        }
+        if (includeFilters) {
+            Query categoryFilter = categoryFilter(query);
+            Query priceFilter = priceFilter(query);
+            if (categoryFilter != null) {
+                bool.filter(categoryFilter);
+            }
+            if (priceFilter != null) {
+                bool.filter(priceFilter);
+            }
+        }
+        return bool.build();
+    }
+
+    private Query categoryFilter(SearchQuery query) {
+        Long categoryId = query.categoryId();
+        if (categoryId == null) {
+            return null;
+        }
+        return Query.of(f -> f.term(t -> t.field("categoryId").value(categoryId)));
+    }
+
+    private Query priceFilter(SearchQuery query) {
+        Long minPrice = query.minPrice();
+        Long maxPrice = query.maxPrice();
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        return Query.of(f -> f.range(r -> {
+            r.number(n -> {
+                n.field("price");
+                if (minPrice != null) {
+                    n.gte(minPrice.doubleValue());
                 }
-                return s;
-        }, ProductDocument.class);
-
-            List<ProductCard> items = new ArrayList<>();
-            response.hits().hits().forEach(hit -> {
-                ProductDocument doc = hit.source();
-                if (doc != null) {
-                    String thumbnailUrl = normalizeThumbnailUrl(doc.thumbnailUrl());
-                    items.add(new ProductCard(doc.productId(), doc.title(), doc.price(), thumbnailUrl, doc.createdAt()));
+                if (maxPrice != null) {
+                    n.lte(maxPrice.doubleValue());
                 }
+                return n;
             });
+            return r;
+        }));
+    }
 
-            long total = response.hits().total() == null ? items.size() : response.hits().total().value();
-            
-            log.debug("Search completed: hits={}, total={}", items.size(), total);
-            return new SearchResponse(items, total, page, size, null);
-            
-        } catch (IOException ex) {
-            log.error("Search failed", ex);
-            throw new ElasticsearchOperationException("Search operation failed", ex);
+    private static Query and(Query a, Query b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
         }
+        return Query.of(q -> q.bool(bq -> bq.filter(a).filter(b)));
     }
 
-    private String normalizeThumbnailUrl(String thumbnailUrl) {
-        if (thumbnailUrl == null || thumbnailUrl.isBlank()) {
-            return thumbnailUrl;
+    /**
+     * Adds the facet aggregations; each one is scoped by the filter of the other facet only.
+     */
+    private void applyFacetAggregations(SearchRequest.Builder s, Query categoryFilter, Query priceFilter) {
+        EsServiceProperties.Search.Facets config = properties.getSearch().getFacets();
+        Query matchAll = Query.of(q -> q.matchAll(m -> m));
+
+        s.aggregations(CATEGORY_FACET, a -> a
+                .filter(priceFilter != null ? priceFilter : matchAll)
+                .aggregations(FACET_VALUES, v -> v.terms(t -> t.field("categoryId").size(config.getCategorySize()))));
+        s.aggregations(PRICE_FACET, a -> a
+                .filter(categoryFilter != null ? categoryFilter : matchAll)
+                .aggregations(FACET_VALUES, v -> v.range(r -> r.field("price").ranges(priceRanges(config)))));
+    }
+
+    private static List<AggregationRange> priceRanges(EsServiceProperties.Search.Facets config) {
+        List<Long> boundaries = config.getPriceBoundaries().stream().distinct().sorted().toList();
+        List<AggregationRange> ranges = new ArrayList<>(boundaries.size() + 1);
+        Long from = null;
+        for (Long to : boundaries) {
+            ranges.add(priceRange(from, to));
+            from = to;
+        }
+        ranges.add(priceRange(from, null));
+        return ranges;
+    }
+
+    private static AggregationRange priceRange(Long from, Long to) {
+        String key = (from == null ? "" : from.toString()) + "-" + (to == null ? "" : to.toString());
+        return AggregationRange.of(r -> {
+            r.key(key);
+            if (from != null) {
+                r.from(from.doubleValue());
+            }
+            if (to != null) {
+                r.to(to.doubleValue());
+            }
+            return r;
+        });
+    }
+
+    private SearchFacets toFacets(Map<String, Aggregate> aggregations) {
+        List<SearchFacets.CategoryCount> categories = List.of();
+        Aggregate categoryValues = facetValues(aggregations, CATEGORY_FACET);
+        // An index created before categoryId was mapped returns unmapped (string) terms
+        if (categoryValues != null && categoryValues.isLterms()) {
+            categories = categoryValues.lterms().buckets().array().stream()
+                    .map(b -> new SearchFacets.CategoryCount(b.key(), b.docCount()))
+                    .toList();
         }
-        String bucket = properties.getMinio().getBucket();
-        if (bucket == null || bucket.isBlank()) {
-            return thumbnailUrl;
+
+        List<SearchFacets.PriceRangeCount> priceRanges = List.of();
+        Aggregate priceValues = facetValues(aggregations, PRICE_FACET);
+        if (priceValues != null && priceValues.isRange()) {
+            priceRanges = priceValues.range().buckets().array().stream()
+                    .map(b -> new SearchFacets.PriceRangeCount(b.key(),
+                            b.from() == null ? null : b.from().longValue(),
+                            b.to() == null ? null : b.to().longValue(),
+                            b.docCount()))
+                    .toList();
         }
-        try {
-            java.net.URI uri = java.net.URI.create(thumbnailUrl);
-            String host = uri.getHost();
-            String path = uri.getPath() == null ? "" : uri.getPath();
-            if (host == null) {
-                return thumbnailUrl;
+        return new SearchFacets(categories, priceRanges);
+    }
+
+    private static Aggregate facetValues(Map<String, Aggregate> aggregations, String facet) {
+        Aggregate filter = aggregations.get(facet);
+        return filter == null || !filter.isFilter() ? null : filter.filter().aggregations().get(FACET_VALUES);
+    }
+
+    /**
+     * Caps hit counting and bounds the time each shard may spend on the request.
+     */
+    private void applyLimits(SearchRequest.Builder s) {
+        int cap = properties.getSearch().getTrackTotalHitsUpTo();
+        s.trackTotalHits(t -> cap > 0 ? t.count(cap) : t.enabled(true));
+        Duration timeout = properties.getSearch().getTimeout();
+        if (timeout != null && !timeout.isZero()) {
+            s.timeout(timeout.toMillis() + "ms");
+        }
+    }
+
+    private void applySort(SearchRequest.Builder s, SearchSort sort) {
+        if (sort == SearchSort.relevance) {
+            s.sort(so -> so.score(sc -> sc.order(SortOrder.Desc)));
+        } else if (sort == SearchSort.newest) {
+            s.sort(so -> so.field(f -> f.field("createdAt").order(SortOrder.Desc)));
+        } else if (sort == SearchSort.price_asc) {
+            s.sort(so -> so.field(f -> f.field("price").order(SortOrder.Asc)));
+        } else if (sort == SearchSort.price_desc) {
+            s.sort(so -> so.field(f -> f.field("price").order(SortOrder.Desc)));
+        }
+    }
+
+    private List<ProductCard> toCards(co.elastic.clients.elasticsearch.core.SearchResponse<ProductCard> response) {
+        var hits = response.hits().hits();
+        List<ProductCard> items = new ArrayList<>(hits.size());
+        for (var hit : hits) {
+            ProductCard card = hit.source();
+            if (card == null) {
+                continue;
+            }
+            String thumbnailUrl = thumbnailCache.servingUrl(thumbnailUrls.normalize(card.thumbnailUrl()));
+            // Imported documents already store the normalized URL, so the card is usually returned as read
+            items.add(Objects.equals(thumbnailUrl, card.thumbnailUrl()) ? card
+                    : new ProductCard(card.productId(), card.title(), card.price(), thumbnailUrl, card.createdAt(),
+                            card.inStock()));
+        }
+        return List.copyOf(items);
+    }
+
+    private void closePointInTime(String pitId) {
+        asyncClient.closePointInTime(c -> c.id(pitId)).whenComplete((response, ex) -> {
+            if (ex != null) {
+                log.debug("Failed to close point-in-time: {}", ex.getMessage());
             }
-            boolean hostHasBucket = host.startsWith(bucket + ".");
-            boolean pathHasBucket = path.equals("/" + bucket) || path.startsWith("/" + bucket + "/") || path.contains("/" + bucket + "/");
-            if (hostHasBucket || pathHasBucket) {
-                return thumbnailUrl;
+        });
+    }
+
+    private String encodeCursor(SearchCursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(CURSOR_MAPPER.writeValueAsBytes(cursor));
+        } catch (IOException ex) {
+            throw new ElasticsearchOperationException("Failed to encode search cursor", ex);
+        }
+    }
+
+    private SearchCursor decodeCursor(String cursor) {
+        try {
+            SearchCursor decoded = CURSOR_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), SearchCursor.class);
+            if (decoded.pitId() == null || decoded.after() == null || decoded.after().isEmpty()) {
+                throw new IllegalArgumentException("Invalid search cursor");
             }
-            String normalizedPath = "/" + bucket + (path.startsWith("/") ? path : "/" + path);
-            return new java.net.URI(
-                    uri.getScheme(),
-                    uri.getUserInfo(),
-                    uri.getHost(),
-                    uri.getPort(),
-                    normalizedPath,
-                    uri.getQuery(),
-                    uri.getFragment()
-            ).toString();
-        } catch (Exception ex) {
-            log.warn("Failed to normalize thumbnailUrl: {}", thumbnailUrl);
-            return thumbnailUrl;
+            return decoded;
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid search cursor", ex);
+        }
+    }
+
+    private static FieldValue toFieldValue(Object value) {
+        if (value == null) {
+            return FieldValue.NULL;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return FieldValue.of(((Number) value).doubleValue());
         }
+        if (value instanceof Number number) {
+            return FieldValue.of(number.longValue());
+        }
+        if (value instanceof Boolean bool) {
+            return FieldValue.of(bool);
+        }
+        return FieldValue.of(value.toString());
+    }
+
+    private static String publicUrlPrefix(MinioStorageService minioStorageService) {
+        try {
+            return minioStorageService.buildPublicUrl("/");
+        } catch (StorageException ex) {
+            log.warn("MinIO public base URL is not configured, thumbnail URLs are normalized per hit");
+            return null;
+        }
+    }
+
+    /**
+     * Payload of the opaque cursor: the point-in-time id and the sort values of the last hit.
+     */
+    private record SearchCursor(String pitId, List<Object> after) {
+    }
+
+    /**
+     * Cache key of the facets shared by all pages and sort orders of a category-only query.
+     */
+    private record FacetKey(Long categoryId, boolean inStock) {
     }
 }
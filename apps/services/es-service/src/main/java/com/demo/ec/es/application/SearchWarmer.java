@@ -0,0 +1,274 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.SearchQuery;
+import com.demo.ec.es.domain.SuggestEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Replays the most frequent searches and suggest prefixes so that Elasticsearch's filesystem and query caches
+ * and the result cache are warm before traffic arrives.
+ * <p>
+ * Queries are counted as they come in and saved to a local file periodically; each save halves the counts, so
+ * the ranking follows recent traffic. The saved top queries are replayed with bounded concurrency on startup and
+ * after every alias switch. Readiness reports OUT_OF_SERVICE until the startup replay has finished or timed out;
+ * later replays run while the service keeps serving.
+ */
+@Component
+public class SearchWarmer implements HealthIndicator {
+    private static final Logger log = LoggerFactory.getLogger(SearchWarmer.class);
+
+    private final SearchService searchService;
+    private final SuggestService suggestService;
+    private final EsServiceProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<SearchQuery, LongAdder> searches = new ConcurrentHashMap<>();
+    private final Map<SuggestKey, LongAdder> suggests = new ConcurrentHashMap<>();
+    private final AtomicBoolean warmPending = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "search-warmer");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean loaded;
+    private volatile boolean startupWarmed;
+
+    public SearchWarmer(SearchService searchService, SuggestService suggestService, EsServiceProperties properties,
+                        ObjectMapper objectMapper) {
+        this.searchService = searchService;
+        this.suggestService = suggestService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Counts a product search. Cursor searches are counted as their first page.
+     */
+    public void recordSearch(SearchQuery query) {
+        if (!config().isEnabled()) {
+            return;
+        }
+        if (query.cursorMode()) {
+            if (!SearchQuery.CURSOR_START.equals(query.cursor())) {
+                return;
+            }
+            query = new SearchQuery(query.q(), query.categoryId(), query.minPrice(), query.maxPrice(),
+                    query.inStock(), query.sort(), 0, query.size(), null, false);
+        }
+        increment(searches, query);
+    }
+
+    public void recordSuggest(String prefix, int size) {
+        if (!config().isEnabled() || prefix == null || prefix.trim().length() < 2) {
+            return;
+        }
+        increment(suggests, new SuggestKey(prefix.trim(), size));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config().isEnabled()) {
+            startupWarmed = true;
+            return;
+        }
+        load();
+        loaded = true;
+        long interval = Math.max(config().getPersistInterval().toMillis(), 1000);
+        executor.scheduleWithFixedDelay(this::persist, interval, interval, TimeUnit.MILLISECONDS);
+        requestWarm("startup");
+    }
+
+    /**
+     * Schedules a replay unless one is already pending. Requests before startup are covered by the startup replay.
+     */
+    public void requestWarm(String reason) {
+        if (!config().isEnabled() || !loaded) {
+            return;
+        }
+        if (warmPending.compareAndSet(false, true)) {
+            executor.execute(() -> warm(reason));
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (!config().isEnabled() || startupWarmed) {
+            return Health.up().withDetail("trackedQueries", searches.size() + suggests.size()).build();
+        }
+        return Health.outOfService().withDetail("warming", true).build();
+    }
+
+    private void warm(String reason) {
+        warmPending.set(false);
+        EsServiceProperties.Search.Warmer config = config();
+        List<Supplier<CompletableFuture<?>>> replays = new ArrayList<>();
+        for (SearchQuery query : top(searches, config.getTopN())) {
+            replays.add(() -> searchService.searchAsync(query, true));
+        }
+        for (SuggestKey key : top(suggests, config.getTopN())) {
+            replays.add(() -> suggestService.suggestAsync(key.prefix(), key.size(), SuggestEngine.elasticsearch));
+        }
+
+        int concurrency = Math.max(config.getConcurrency(), 1);
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger failed = new AtomicInteger();
+        int issued = 0;
+        long started = System.nanoTime();
+        long deadline = started + config.getTimeout().toNanos();
+        try {
+            for (Supplier<CompletableFuture<?>> replay : replays) {
+                if (!permits.tryAcquire(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                issued++;
+                try {
+                    replay.get().whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            failed.incrementAndGet();
+                        }
+                        permits.release();
+                    });
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    permits.release();
+                }
+            }
+            // Wait for the replays still in flight
+            if (permits.tryAcquire(concurrency, Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                permits.release(concurrency);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            startupWarmed = true;
+        }
+        log.info("Search warm-up finished: reason={}, queries={}, issued={}, failed={}, tookMs={}", reason,
+                replays.size(), issued, failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private <K> void increment(Map<K, LongAdder> counts, K key) {
+        LongAdder count = counts.get(key);
+        if (count == null) {
+            // New queries wait for the next decay to make room
+            if (counts.size() >= config().getMaxTracked()) {
+                return;
+            }
+            count = counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private static <K> List<K> top(Map<K, LongAdder> counts, int n) {
+        return topEntries(counts, n).stream().map(Map.Entry::getKey).toList();
+    }
+
+    private static <K> List<Map.Entry<K, Long>> topEntries(Map<K, LongAdder> counts, int n) {
+        return counts.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                .limit(Math.max(n, 0))
+                .toList();
+    }
+
+    /**
+     * Saves the top queries and halves all counts.
+     */
+    private void persist() {
+        int n = config().getTopN();
+        Snapshot snapshot = new Snapshot(
+                topEntries(searches, n).stream().map(e -> new SearchEntry(e.getKey(), e.getValue())).toList(),
+                topEntries(suggests, n).stream()
+                        .map(e -> new SuggestEntry(e.getKey().prefix(), e.getKey().size(), e.getValue())).toList());
+        Path file = Path.of(config().getFile());
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(file.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Failed to save warm-up queries: file={}, error={}", file, ex.getMessage());
+        }
+        decay(searches);
+        decay(suggests);
+    }
+
+    private static void decay(Map<?, LongAdder> counts) {
+        counts.values().removeIf(count -> {
+            long half = count.sumThenReset() / 2;
+            count.add(half);
+            return half == 0;
+        });
+    }
+
+    private void load() {
+        Path file = Path.of(config().getFile());
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            Snapshot snapshot = objectMapper.readValue(file.toFile(), Snapshot.class);
+            if (snapshot.searches() != null) {
+                snapshot.searches().forEach(e -> searches.computeIfAbsent(e.query(), k -> new LongAdder()).add(e.count()));
+            }
+            if (snapshot.suggests() != null) {
+                snapshot.suggests().forEach(e -> suggests
+                        .computeIfAbsent(new SuggestKey(e.prefix(), e.size()), k -> new LongAdder()).add(e.count()));
+            }
+            log.info("Warm-up queries loaded: searches={}, suggests={}", searches.size(), suggests.size());
+        } catch (IOException ex) {
+            log.warn("Failed to read warm-up queries, starting empty: file={}, error={}", file, ex.getMessage());
+        }
+    }
+
+    private EsServiceProperties.Search.Warmer config() {
+        return properties.getSearch().getWarmer();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        // Without a completed load the counts would overwrite the saved queries with a partial view
+        if (loaded) {
+            persist();
+        }
+    }
+
+    record Snapshot(List<SearchEntry> searches, List<SuggestEntry> suggests) {
+    }
+
+    record SearchEntry(SearchQuery query, long count) {
+    }
+
+    record SuggestEntry(String prefix, int size, long count) {
+    }
+
+    private record SuggestKey(String prefix, int size) {
+    }
+}
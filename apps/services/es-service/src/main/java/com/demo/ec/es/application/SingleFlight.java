@@ -0,0 +1,67 @@
+package com.demo.ec.es.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one in-flight call.
+ * The first caller starts the call; callers arriving before it completes receive the same result.
+ * The key is released on completion, so later callers start a new call (results are not cached here).
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter started;
+    private final Counter shared;
+
+    SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.started = Counter.builder("es.singleflight.calls").tag("name", name).tag("result", "started")
+                .register(meterRegistry);
+        this.shared = Counter.builder("es.singleflight.calls").tag("name", name).tag("result", "shared")
+                .register(meterRegistry);
+    }
+
+    CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.increment();
+            // A copy, so that one caller cancelling does not cancel the others
+            return existing.copy();
+        }
+        started.increment();
+        try {
+            call.get().whenComplete((value, ex) -> {
+                inFlight.remove(key, mine);
+                if (ex != null) {
+                    mine.completeExceptionally(ex);
+                } else {
+                    mine.complete(value);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(ex);
+        }
+        return mine.copy();
+    }
+
+    /**
+     * Waits for the future and rethrows its failure unwrapped, for the blocking variants of async services.
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -1,82 +1,222 @@
 package com.demo.ec.es.application;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
 import com.demo.ec.es.config.EsServiceProperties;
 import com.demo.ec.es.domain.ElasticsearchOperationException;
+import com.demo.ec.es.domain.SuggestEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Service for generating product title suggestions using Elasticsearch aggregations.
- * Uses multi_match query with fuzziness for better matching.
+ * Service for generating product title suggestions.
+ * Serves from the in-JVM {@link LocalSuggestIndex} when it is loaded; otherwise uses the completion suggester
+ * on {@code title.suggest} (restricted to ACTIVE products via a category context), and falls back to a match
+ * query with a terms aggregation on indices created before that sub-field existed.
+ * Prefixes of 3+ characters the completion suggester does not know are looked up as partial matches on
+ * {@code title.ngram}.
  */
 @Service
 public class SuggestService {
     private static final Logger log = LoggerFactory.getLogger(SuggestService.class);
+    // Shorter prefixes match too many titles for the n-gram lookup to be worth a terms aggregation
+    private static final int PARTIAL_MATCH_MIN_LENGTH = 3;
     
-    private final ElasticsearchClient client;
+    private final ElasticsearchAsyncClient asyncClient;
     private final EsServiceProperties properties;
+    private final LocalSuggestIndex localSuggestIndex;
+    private final MeterRegistry meterRegistry;
+    private final Timer localTimer;
+    private final Timer elasticsearchTimer;
+    private final SingleFlight<SuggestKey, List<String>> inFlight;
+    private final SearchMetrics searchMetrics;
 
-    public SuggestService(ElasticsearchClient client, EsServiceProperties properties) {
-        this.client = client;
+    public SuggestService(ElasticsearchAsyncClient asyncClient, EsServiceProperties properties,
+                          LocalSuggestIndex localSuggestIndex, SearchMetrics searchMetrics, MeterRegistry meterRegistry) {
+        this.asyncClient = asyncClient;
         this.properties = properties;
+        this.localSuggestIndex = localSuggestIndex;
+        this.searchMetrics = searchMetrics;
+        this.meterRegistry = meterRegistry;
+        this.inFlight = new SingleFlight<>("suggest", meterRegistry);
+        this.localTimer = Timer.builder("es.suggest.latency").tag("engine", "local").register(meterRegistry);
+        this.elasticsearchTimer = Timer.builder("es.suggest.latency").tag("engine", "elasticsearch").register(meterRegistry);
+    }
+
+    public List<String> suggest(String q, int size) {
+        return suggest(q, size, SuggestEngine.auto);
+    }
+
+    /**
+     * Blocking variant of {@link #suggestAsync}.
+     */
+    public List<String> suggest(String q, int size, SuggestEngine engine) {
+        return SingleFlight.join(suggestAsync(q, size, engine));
     }
 
     /**
      * Generates autocomplete suggestions for the given query.
+     * Local results complete immediately; Elasticsearch lookups run on the async client, and identical
+     * lookups issued while one is in flight share its call.
      *
-     * @param q    search query (minimum 2 characters)
-     * @param size maximum number of suggestions
+     * @param q      search query (minimum 2 characters)
+     * @param size   maximum number of suggestions
+     * @param engine backend to use; {@code auto} prefers the in-JVM index and falls back to Elasticsearch
      * @return list of unique product titles matching the query
      */
-    public List<String> suggest(String q, int size) {
+    public CompletableFuture<List<String>> suggestAsync(String q, int size, SuggestEngine engine) {
         if (q == null || q.isBlank() || q.trim().length() < 2) {
             log.debug("Query too short for suggestions: '{}'", q);
-            return List.of();
+            return CompletableFuture.completedFuture(List.of());
         }
 
-        log.debug("Generating suggestions: q={}, size={}", q, size);
+        log.debug("Generating suggestions: q={}, size={}, engine={}", q, size, engine);
 
-        BoolQuery.Builder bool = new BoolQuery.Builder();
-        bool.must(m -> m.multiMatch(mm -> {
-            mm.query(q).fields("title");
-            if (q.trim().length() >= 3) {
-                mm.fuzziness("AUTO");
+        if (engine != SuggestEngine.elasticsearch) {
+            List<String> local = localTimer.record(() -> localSuggestIndex.suggest(q, size));
+            // Exact prefix misses on 3+ characters still get the partial-match Elasticsearch path
+            if (engine == SuggestEngine.local
+                    || (local != null && (!local.isEmpty() || q.trim().length() < PARTIAL_MATCH_MIN_LENGTH))) {
+                return CompletableFuture.completedFuture(local == null ? List.of() : local);
             }
-            return mm;
-        }));
-        bool.filter(f -> f.term(t -> t.field("status").value("ACTIVE")));
+        }
+        String prefix = q.trim();
+        return inFlight.execute(new SuggestKey(prefix, size), () -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return suggestFromElasticsearch(prefix, size).whenComplete((suggestions, ex) -> sample.stop(elasticsearchTimer));
+        });
+    }
 
-        try {
-            co.elastic.clients.elasticsearch.core.SearchResponse<Void> response = client.search(s -> s
-                            .index(properties.getIndex().getAlias())
-                            .size(0)
-                            .query(qb -> qb.bool(bool.build()))
-                            .aggregations("titles", a -> a.terms(t -> t.field("title.keyword").size(size))),
-                    Void.class);
-
-            List<String> suggestions = new ArrayList<>();
-            if (response.aggregations() != null && response.aggregations().get("titles") != null) {
-                var buckets = response.aggregations().get("titles").sterms().buckets().array();
-                for (var b : buckets) {
-                    if (b.key() != null) {
-                        suggestions.add(b.key().toString());
-                    }
+    private CompletableFuture<List<String>> suggestFromElasticsearch(String q, int size) {
+        CompletableFuture<List<String>> suggestions;
+        if (properties.getSuggest().isCompletionEnabled()) {
+            suggestions = suggestByCompletion(q, size).exceptionallyCompose(ex -> {
+                if (unwrap(ex) instanceof ElasticsearchException) {
+                    log.warn("Completion suggest failed, falling back to aggregation: {}", unwrap(ex).getMessage());
+                    return suggestByAggregation(q, size);
                 }
+                return CompletableFuture.failedFuture(ex);
+            }).thenCompose(result -> result.isEmpty() && q.length() >= PARTIAL_MATCH_MIN_LENGTH
+                    // Completion only matches title prefixes; partial matches come from the n-gram sub-field
+                    ? suggestByAggregation(q, size)
+                    : CompletableFuture.completedFuture(result));
+        } else {
+            suggestions = suggestByAggregation(q, size);
+        }
+        return suggestions.handle((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = unwrap(ex);
+                log.error("Suggest operation failed", cause);
+                throw new ElasticsearchOperationException("Suggest operation failed", cause);
             }
-            
-            log.debug("Suggestions generated: count={}", suggestions.size());
-            return suggestions;
-            
-        } catch (IOException ex) {
-            log.error("Suggest operation failed", ex);
-            throw new ElasticsearchOperationException("Suggest operation failed", ex);
+            log.debug("Suggestions generated: count={}", result.size());
+            // Shared by every caller of the flight
+            return List.copyOf(result);
+        });
+    }
+
+    private CompletableFuture<List<String>> suggestByCompletion(String prefix, int size) {
+        SearchRequest request = SearchRequest.of(s -> applyLimits(s, false)
+                .index(properties.getIndex().getAlias())
+                .size(0)
+                .source(src -> src.fetch(false))
+                .suggest(su -> su.suggesters("titles", fs -> fs
+                        .prefix(prefix)
+                        .completion(c -> {
+                            c.field("title.suggest")
+                                    .size(size)
+                                    .skipDuplicates(true)
+                                    .contexts("status", List.of(CompletionContext.of(cc -> cc
+                                            .context(ctx -> ctx.category("ACTIVE")))));
+                            return c;
+                        }))));
+        long started = System.nanoTime();
+        return asyncClient.search(request, Void.class)
+                .thenApply(response -> {
+                    searchMetrics.record("suggest", searchMetrics.suggestShape("completion", prefix), response.took(),
+                            System.nanoTime() - started, -1, request);
+                    searchMetrics.partial("suggest", response);
+                    List<String> suggestions = new ArrayList<>();
+                    var titles = response.suggest().get("titles");
+                    if (titles != null) {
+                        for (var suggestion : titles) {
+                            for (var option : suggestion.completion().options()) {
+                                suggestions.add(option.text());
+                            }
+                        }
+                    }
+                    return suggestions;
+                });
+    }
+
+    private CompletableFuture<List<String>> suggestByAggregation(String q, int size) {
+        BoolQuery.Builder bool = new BoolQuery.Builder();
+        bool.must(m -> m.bool(b -> b
+                .should(s -> s.match(mt -> mt.field("title").query(q)))
+                .should(s -> s.match(mt -> mt
+                        .field(IndexAdminService.TITLE_NGRAM_FIELD)
+                        .query(q)
+                        .minimumShouldMatch("75%")))
+                .minimumShouldMatch("1")));
+        bool.filter(f -> f.term(t -> t.field("status").value("ACTIVE")));
+
+        SearchRequest request = SearchRequest.of(s -> applyLimits(s, true)
+                .index(properties.getIndex().getAlias())
+                .size(0)
+                .trackTotalHits(t -> t.enabled(false))
+                .query(qb -> qb.bool(bool.build()))
+                .aggregations("titles", a -> a.terms(t -> t.field("title.keyword").size(size))));
+        long started = System.nanoTime();
+        return asyncClient.search(request, Void.class)
+                .thenApply(response -> {
+                    searchMetrics.record("suggest", searchMetrics.suggestShape("aggregation", q), response.took(),
+                            System.nanoTime() - started, -1, request);
+                    searchMetrics.partial("suggest", response);
+                    List<String> suggestions = new ArrayList<>();
+                    if (response.aggregations() != null && response.aggregations().get("titles") != null) {
+                        var buckets = response.aggregations().get("titles").sterms().buckets().array();
+                        for (var b : buckets) {
+                            if (b.key() != null) {
+                                suggestions.add(b.key().toString());
+                            }
+                        }
+                    }
+                    return suggestions;
+                });
+    }
+
+    /**
+     * Suggestions are best effort: a lookup stops at the configured timeout, and the aggregation fallback also
+     * after {@code terminate-after} matching documents per shard, returning the titles seen up to then.
+     */
+    private SearchRequest.Builder applyLimits(SearchRequest.Builder s, boolean collectsDocuments) {
+        EsServiceProperties.Suggest config = properties.getSuggest();
+        if (collectsDocuments && config.getTerminateAfter() > 0) {
+            s.terminateAfter((long) config.getTerminateAfter());
+        }
+        Duration timeout = config.getTimeout();
+        if (timeout != null && !timeout.isZero()) {
+            s.timeout(timeout.toMillis() + "ms");
         }
+        return s;
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private record SuggestKey(String prefix, int size) {
     }
 }
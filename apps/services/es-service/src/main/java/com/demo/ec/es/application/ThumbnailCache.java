@@ -0,0 +1,365 @@
+package com.demo.ec.es.application;
+
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.StorageException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded LRU cache of thumbnail objects on local disk.
+ * <p>
+ * Files mirror their object keys under {@code thumbnail.cache.dir}, with the MinIO ETag in a {@code .etag} sidecar,
+ * so the index is rebuilt from disk on startup (oldest modification first). Each entry is memory-mapped on first use
+ * and served from the mapping without further reads; a mapping stays valid after its file is evicted, so in-flight
+ * responses are not cut. {@code max-entries} also bounds the number of mappings.
+ * Misses are filled from MinIO once per key, concurrent requests wait for the same download.
+ */
+@Component
+public class ThumbnailCache {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final String ETAG_SUFFIX = ".etag";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final MinioStorageService minioStorageService;
+    private final EsServiceProperties.Thumbnail.Cache config;
+    private final Path dir;
+    private final String minioUrlPrefix;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long totalBytes;
+
+    public ThumbnailCache(MinioStorageService minioStorageService, EsServiceProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.minioStorageService = minioStorageService;
+        this.config = properties.getThumbnail().getCache();
+        this.dir = Path.of(config.getDir()).toAbsolutePath().normalize();
+        this.minioUrlPrefix = minioUrlPrefix(minioStorageService);
+
+        FunctionCounter.builder("es.thumbnail.cache.requests", hits, AtomicLong::doubleValue)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("es.thumbnail.cache.requests", misses, AtomicLong::doubleValue)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("es.thumbnail.cache.revalidations", revalidations, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        FunctionCounter.builder("es.thumbnail.cache.evictions", evictions, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        Gauge.builder("es.thumbnail.cache.size.bytes", this, ThumbnailCache::sizeBytes)
+                .register(meterRegistry);
+
+        if (config.isEnabled()) {
+            loadIndex();
+        }
+    }
+
+    /**
+     * Returns the cached object, filling it from MinIO on a miss.
+     *
+     * @param key object key, already validated by the caller
+     * @return the entry, or null if the object does not exist
+     * @throws StorageException if the object cannot be fetched or stored
+     */
+    public Entry get(String key) {
+        Entry entry = lookup(key);
+        if (entry != null && !mapped(entry)) {
+            // Evicted between lookup and the first read
+            misses.incrementAndGet();
+            entry = load(key);
+            if (entry != null && !mapped(entry)) {
+                throw new StorageException("Cached thumbnail disappeared: " + key);
+            }
+        }
+        return entry;
+    }
+
+    private boolean mapped(Entry entry) {
+        try {
+            entry.map();
+            return true;
+        } catch (NoSuchFileException ex) {
+            remove(entry.key);
+            return false;
+        } catch (IOException ex) {
+            remove(entry.key);
+            throw new StorageException("Failed to read cached thumbnail: " + entry.key, ex);
+        }
+    }
+
+    private Entry lookup(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.validatedAt < config.getRevalidateAfter().toMillis()) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            revalidations.incrementAndGet();
+            String etag = minioStorageService.etag(key);
+            if (entry.etag.equals(etag)) {
+                entry.validatedAt = System.currentTimeMillis();
+                hits.incrementAndGet();
+                return entry;
+            }
+            remove(key);
+            if (etag == null) {
+                return null;
+            }
+        }
+        misses.incrementAndGet();
+        return load(key);
+    }
+
+    /**
+     * Drops cached objects whose key starts with the prefix, e.g. after new thumbnails were uploaded.
+     */
+    public void invalidate(String keyPrefix) {
+        List<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.key.startsWith(keyPrefix)) {
+                    it.remove();
+                    totalBytes -= entry.size;
+                    removed.add(entry);
+                }
+            }
+        }
+        removed.forEach(this::deleteFiles);
+    }
+
+    /**
+     * URL under {@code thumbnail.cache.public-base-url} for a thumbnail stored at the given MinIO URL,
+     * or the URL unchanged when serving through this service is not configured.
+     */
+    public String servingUrl(String minioUrl) {
+        String base = config.getPublicBaseUrl();
+        if (!config.isEnabled() || base == null || base.isBlank() || minioUrl == null || minioUrlPrefix == null
+                || !minioUrl.startsWith(minioUrlPrefix + "products/")) {
+            return minioUrl;
+        }
+        String normalizedBase = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        return normalizedBase + "/api/images/" + minioUrl.substring(minioUrlPrefix.length());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public String cacheControl() {
+        return "public, max-age=" + config.getMaxAge().toSeconds();
+    }
+
+    private Entry load(String key) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(key, mine);
+        if (existing != null) {
+            return SingleFlight.join(existing);
+        }
+        try {
+            Entry entry = fill(key);
+            mine.complete(entry);
+            return entry;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private Entry fill(String key) {
+        Path file = dir.resolve(key).normalize();
+        if (!file.startsWith(dir)) {
+            throw new IllegalArgumentException("Invalid thumbnail key: " + key);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        try {
+            Files.createDirectories(file.getParent());
+            String etag = minioStorageService.downloadTo(key, tmp);
+            if (etag == null) {
+                Files.deleteIfExists(tmp);
+                return null;
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(etagFile(file), etag, StandardCharsets.UTF_8);
+            Entry entry = new Entry(key, file, Files.size(file), etag, System.currentTimeMillis());
+            put(entry);
+            return entry;
+        } catch (IOException ex) {
+            throw new StorageException("Failed to cache thumbnail: " + key, ex);
+        }
+    }
+
+    private void put(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += entry.size;
+            long maxBytes = config.getMaxSize().toBytes();
+            for (Iterator<Entry> it = entries.values().iterator();
+                 it.hasNext() && (totalBytes > maxBytes || entries.size() > config.getMaxEntries()); ) {
+                Entry eldest = it.next();
+                if (eldest == entry) {
+                    break;
+                }
+                it.remove();
+                totalBytes -= eldest.size;
+                evicted.add(eldest);
+            }
+        }
+        evictions.addAndGet(evicted.size());
+        evicted.forEach(this::deleteFiles);
+    }
+
+    private void remove(String key) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+            if (removed != null) {
+                totalBytes -= removed.size;
+            }
+        }
+        if (removed != null) {
+            deleteFiles(removed);
+        }
+    }
+
+    private void deleteFiles(Entry entry) {
+        try {
+            Files.deleteIfExists(entry.file);
+            Files.deleteIfExists(etagFile(entry.file));
+        } catch (IOException ex) {
+            log.warn("Failed to delete cached thumbnail: {}", entry.file, ex);
+        }
+    }
+
+    private void loadIndex() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Entry> found = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || name.endsWith(ETAG_SUFFIX)) {
+                    continue;
+                }
+                Path etagFile = etagFile(file);
+                if (name.endsWith(TMP_SUFFIX) || !Files.exists(etagFile)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                String key = dir.relativize(file).toString().replace('\\', '/');
+                // Entries from a previous run are checked against MinIO on first use
+                found.add(new Entry(key, file, attrs.size(), Files.readString(etagFile, StandardCharsets.UTF_8).trim(),
+                        attrs.lastModifiedTime().toMillis() - config.getRevalidateAfter().toMillis()));
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to scan thumbnail cache directory: {}", dir, ex);
+            return;
+        }
+        found.sort(Comparator.comparingLong(e -> e.validatedAt));
+        found.forEach(this::put);
+        log.info("Thumbnail cache loaded: entries={}, bytes={}", entries.size(), totalBytes);
+    }
+
+    private synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    private static Path etagFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ETAG_SUFFIX);
+    }
+
+    private static String minioUrlPrefix(MinioStorageService minioStorageService) {
+        try {
+            return minioStorageService.buildPublicUrl("/");
+        } catch (StorageException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * One cached object.
+     */
+    public static final class Entry {
+        private final String key;
+        private final Path file;
+        private final long size;
+        private final String etag;
+        private volatile long validatedAt;
+        private volatile MappedByteBuffer mapped;
+
+        private Entry(String key, Path file, long size, String etag, long validatedAt) {
+            this.key = key;
+            this.file = file;
+            this.size = size;
+            this.etag = etag;
+            this.validatedAt = validatedAt;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        /**
+         * Read-only view of {@code length} bytes from {@code offset}, backed by the file mapping.
+         */
+        public ByteBuffer slice(long offset, long length) {
+            return mapped.slice((int) offset, (int) length);
+        }
+
+        private void map() throws IOException {
+            if (mapped == null) {
+                synchronized (this) {
+                    if (mapped == null) {
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,38 +1,268 @@
 package com.demo.ec.es.application;
 
 import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ThumbnailImage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
+/**
+ * Renders all configured thumbnail variants from a single decode of the original image.
+ * <p>
+ * The original is decoded through ImageIO with source subsampling, so only about twice the pixels of the
+ * largest variant are materialized instead of the full-resolution image. Decoded pixels are charged against
+ * a global budget ({@code max-in-flight-pixels}); renders wait while the budget is exhausted, which bounds
+ * heap usage independently of the thread count and the size of the originals. The EXIF orientation of a JPEG
+ * original is read from its APP1 segment before decoding and applied to the decoded image, as
+ * {@code Thumbnails.of(InputStream)} does.
+ */
 @Service
 public class ThumbnailService {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+    private static final int PIXELS_PER_PERMIT = 1024;
+    // Header bytes scanned for the EXIF segment; the stream is reset afterwards, so this is also the mark limit
+    private static final int EXIF_SCAN_LIMIT = 256 * 1024;
+
     private final ExecutorService executor;
-    private final EsServiceProperties properties;
-
-    public ThumbnailService(EsServiceProperties properties) {
-        this.properties = properties;
-        this.executor = Executors.newFixedThreadPool(properties.getThumbnail().getThreads());
-    }
-
-    public byte[] createThumbnail(InputStream inputStream) throws Exception {
-        Future<byte[]> future = executor.submit(() -> {
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                Thumbnails.of(inputStream)
-                        .size(properties.getThumbnail().getWidth(), properties.getThumbnail().getHeight())
-                        .outputFormat("jpg")
-                        .outputQuality(0.85)
-                        .toOutputStream(out);
-                return out.toByteArray();
+    private final List<Variant> variants;
+    private final boolean subsampling;
+    private final Semaphore pixelBudget;
+    private final int budgetPermits;
+    private final Timer renderTimer;
+    private final DistributionSummary decodedPixels;
+    private final DistributionSummary allocatedBytes;
+
+    public ThumbnailService(EsServiceProperties properties, MeterRegistry meterRegistry) {
+        EsServiceProperties.Thumbnail config = properties.getThumbnail();
+        this.executor = Executors.newFixedThreadPool(config.getThreads());
+        this.variants = resolveVariants(config);
+        this.subsampling = config.isSubsampling();
+        this.budgetPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                config.getMaxInFlightPixels() / PIXELS_PER_PERMIT));
+        this.pixelBudget = new Semaphore(budgetPermits);
+
+        this.renderTimer = Timer.builder("es.thumbnail.render").register(meterRegistry);
+        this.decodedPixels = DistributionSummary.builder("es.thumbnail.decoded.pixels").register(meterRegistry);
+        this.allocatedBytes = DistributionSummary.builder("es.thumbnail.allocated.bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("es.thumbnail.pixels.in_flight", pixelBudget,
+                        budget -> (double) (budgetPermits - budget.availablePermits()) * PIXELS_PER_PERMIT)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Describes the rendered variants; part of the image content hash so that changing them regenerates thumbnails.
+     */
+    public String spec() {
+        return variants.stream()
+                .map(v -> v.fileName() + ":" + v.width() + "x" + v.height() + "@" + v.quality())
+                .collect(Collectors.joining(",")) + (subsampling ? "/subsampled" : "");
+    }
+
+    /**
+     * Renders every variant; the first one is always {@code thumb.jpg}, which {@code thumbnailUrl} points to.
+     */
+    public List<ThumbnailImage> createThumbnails(InputStream inputStream) throws Exception {
+        Future<List<ThumbnailImage>> future = executor.submit(() -> renderTimer.recordCallable(() -> render(inputStream)));
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception cause ? cause : ex;
+        }
+    }
+
+    private List<ThumbnailImage> render(InputStream inputStream) throws IOException, InterruptedException {
+        long allocatedBefore = threadAllocatedBytes();
+        InputStream source = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        Orientation orientation = exifOrientation(source);
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                boolean transposed = transposes(orientation);
+                int factor = subsampling
+                        ? (transposed ? subsamplingFactor(height, width) : subsamplingFactor(width, height))
+                        : 1;
+                long pixels = (long) ceilDiv(width, factor) * ceilDiv(height, factor);
+                int permits = (int) Math.min(budgetPermits, Math.max(1, pixels / PIXELS_PER_PERMIT));
+
+                pixelBudget.acquire(permits);
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                    BufferedImage image = reader.read(0, param);
+                    decodedPixels.record(pixels);
+                    if (orientation != null && orientation != Orientation.TOP_LEFT) {
+                        image = ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+                    }
+
+                    List<ThumbnailImage> result = new ArrayList<>(variants.size());
+                    for (Variant variant : variants) {
+                        result.add(encode(image, variant));
+                    }
+                    return result;
+                } finally {
+                    pixelBudget.release(permits);
+                }
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            long allocatedAfter = threadAllocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                allocatedBytes.record(allocatedAfter - allocatedBefore);
+            }
+        }
+    }
+
+    private ThumbnailImage encode(BufferedImage image, Variant variant) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Thumbnails.of(image)
+                    .size(variant.width(), variant.height())
+                    .outputFormat(variant.format())
+                    .outputQuality(variant.quality())
+                    .toOutputStream(out);
+            return new ThumbnailImage(variant.fileName(), variant.contentType(), out.toByteArray());
+        }
+    }
+
+    /**
+     * Walks the JPEG marker segments up to the image data looking for the EXIF APP1 segment, then resets the
+     * stream. Returns null for other formats, when there is no orientation tag or when the header is unreadable.
+     * This does not go through the JPEG reader's metadata, which rejects files with APP1 ahead of the JFIF APP0.
+     */
+    private static Orientation exifOrientation(InputStream in) throws IOException {
+        in.mark(EXIF_SCAN_LIMIT);
+        try {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readUnsignedShort() != 0xFFD8) {
+                return null;
+            }
+            int consumed = 2;
+            while (true) {
+                int marker = data.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return null;
+                }
+                int length = data.readUnsignedShort() - 2;
+                consumed += 4 + length;
+                if (length < 0 || consumed > EXIF_SCAN_LIMIT) {
+                    return null;
+                }
+                if (marker == 0xFFE1) {
+                    byte[] segment = new byte[length];
+                    data.readFully(segment);
+                    Orientation orientation = ExifUtils.getOrientationFromExif(segment);
+                    if (orientation != null) {
+                        return orientation;
+                    }
+                } else {
+                    data.skipNBytes(length);
+                }
+            }
+        } catch (EOFException | RuntimeException ex) {
+            log.debug("Ignoring unreadable EXIF header: {}", ex.toString());
+            return null;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Orientations that rotate by 90 degrees, so the displayed width is the stored height.
+     */
+    private static boolean transposes(Orientation orientation) {
+        return orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+    }
+
+    /**
+     * Largest subsampling step that still decodes at least twice the pixels needed by the largest variant,
+     * leaving the final downscale to Thumbnailator's filtered resize.
+     */
+    private int subsamplingFactor(int width, int height) {
+        double minRatio = Double.MAX_VALUE;
+        for (Variant variant : variants) {
+            double ratio = Math.max((double) width / variant.width(), (double) height / variant.height());
+            minRatio = Math.min(minRatio, ratio);
+        }
+        return Math.max(1, (int) Math.floor(minRatio / 2));
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static long threadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static List<Variant> resolveVariants(EsServiceProperties.Thumbnail config) {
+        List<Variant> resolved = new ArrayList<>();
+        resolved.add(new Variant("thumb.jpg", config.getWidth(), config.getHeight(), "jpg", 0.85));
+        for (EsServiceProperties.Thumbnail.Variant v : config.getVariants()) {
+            String format = v.getFormat().toLowerCase();
+            if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+                log.warn("No ImageIO writer for thumbnail format '{}', skipping variant '{}'", format, v.getName());
+                continue;
             }
-        });
-        return future.get();
+            String ext = format.equals("jpeg") ? "jpg" : format;
+            resolved.add(new Variant("thumb-" + v.getName() + "." + ext, v.getWidth(), v.getHeight(), format,
+                    v.getQuality()));
+        }
+        return List.copyOf(resolved);
+    }
+
+    private record Variant(String fileName, int width, int height, String format, double quality) {
+        String contentType() {
+            return switch (format) {
+                case "png" -> "image/png";
+                case "gif" -> "image/gif";
+                case "webp" -> "image/webp";
+                default -> "image/jpeg";
+            };
+        }
     }
 
     @PreDestroy
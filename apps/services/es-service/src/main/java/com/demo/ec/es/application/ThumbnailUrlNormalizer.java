@@ -0,0 +1,74 @@
+package com.demo.ec.es.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+
+/**
+ * Adds the bucket to thumbnail URLs stored without it (documents indexed before URLs were normalized at import
+ * time). URLs under the public base URL or already containing the bucket are returned unchanged without parsing
+ * them; only legacy URLs go through {@link #parse(String)}.
+ */
+final class ThumbnailUrlNormalizer {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailUrlNormalizer.class);
+
+    private final String publicUrlPrefix;
+    private final String bucket;
+    private final String bucketSegment;
+
+    /**
+     * @param publicUrlPrefix public base URL including the bucket and a trailing slash, or null when not configured
+     */
+    ThumbnailUrlNormalizer(String publicUrlPrefix, String bucket) {
+        this.publicUrlPrefix = publicUrlPrefix;
+        this.bucket = bucket == null || bucket.isBlank() ? null : bucket;
+        this.bucketSegment = this.bucket == null ? null : "/" + this.bucket + "/";
+    }
+
+    String normalize(String thumbnailUrl) {
+        if (thumbnailUrl == null || thumbnailUrl.isBlank()) {
+            return thumbnailUrl;
+        }
+        if ((publicUrlPrefix != null && thumbnailUrl.startsWith(publicUrlPrefix))
+                || (bucketSegment != null && thumbnailUrl.contains(bucketSegment))) {
+            return thumbnailUrl;
+        }
+        return parse(thumbnailUrl);
+    }
+
+    /**
+     * Parses the URL and inserts the bucket as the first path segment unless the host or the path already carries it.
+     */
+    String parse(String thumbnailUrl) {
+        if (thumbnailUrl == null || thumbnailUrl.isBlank() || bucket == null) {
+            return thumbnailUrl;
+        }
+        try {
+            URI uri = URI.create(thumbnailUrl);
+            String host = uri.getHost();
+            String path = uri.getPath() == null ? "" : uri.getPath();
+            if (host == null) {
+                return thumbnailUrl;
+            }
+            boolean hostHasBucket = host.startsWith(bucket + ".");
+            boolean pathHasBucket = path.equals("/" + bucket) || path.startsWith("/" + bucket + "/") || path.contains("/" + bucket + "/");
+            if (hostHasBucket || pathHasBucket) {
+                return thumbnailUrl;
+            }
+            String normalizedPath = "/" + bucket + (path.startsWith("/") ? path : "/" + path);
+            return new URI(
+                    uri.getScheme(),
+                    uri.getUserInfo(),
+                    uri.getHost(),
+                    uri.getPort(),
+                    normalizedPath,
+                    uri.getQuery(),
+                    uri.getFragment()
+            ).toString();
+        } catch (Exception ex) {
+            log.warn("Failed to normalize thumbnailUrl: {}", thumbnailUrl);
+            return thumbnailUrl;
+        }
+    }
+}
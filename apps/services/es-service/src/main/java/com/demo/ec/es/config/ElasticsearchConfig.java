@@ -1,5 +1,6 @@
 package com.demo.ec.es.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
@@ -15,7 +16,13 @@ import org.springframework.context.annotation.Configuration;
 public class ElasticsearchConfig {
     @Bean
     public RestClient restClient(EsServiceProperties properties) {
-        return RestClient.builder(HttpHost.create(properties.getElasticsearch().getEndpoint())).build();
+        // Async searches are bounded by the connection pool rather than by threads, so size it beyond the defaults (10/30)
+        int maxConnections = properties.getElasticsearch().getMaxConnections();
+        return RestClient.builder(HttpHost.create(properties.getElasticsearch().getEndpoint()))
+                .setHttpClientConfigCallback(http -> http
+                        .setMaxConnPerRoute(maxConnections)
+                        .setMaxConnTotal(maxConnections))
+                .build();
     }
 
     @Bean
@@ -30,4 +37,9 @@ public class ElasticsearchConfig {
     public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         return new ElasticsearchClient(transport);
     }
+
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
 }
@@ -1,6 +1,11 @@
 package com.demo.ec.es.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @ConfigurationProperties(prefix = "es-service")
 public class EsServiceProperties {
@@ -9,6 +14,9 @@ public class EsServiceProperties {
     private Minio minio = new Minio();
     private Thumbnail thumbnail = new Thumbnail();
     private Import importConfig = new Import();
+    private Search search = new Search();
+    private Suggest suggest = new Suggest();
+    private Sync sync = new Sync();
 
     public Elasticsearch getElasticsearch() {
         return elasticsearch;
@@ -34,8 +42,21 @@ public class EsServiceProperties {
         this.importConfig = importConfig;
     }
 
+    public Search getSearch() {
+        return search;
+    }
+
+    public Suggest getSuggest() {
+        return suggest;
+    }
+
+    public Sync getSync() {
+        return sync;
+    }
+
     public static class Elasticsearch {
         private String endpoint;
+        private int maxConnections = 200;
 
         public String getEndpoint() {
             return endpoint;
@@ -44,11 +65,20 @@ public class EsServiceProperties {
         public void setEndpoint(String endpoint) {
             this.endpoint = endpoint;
         }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
     }
 
     public static class Index {
         private String name;
         private String alias;
+        private Reindex reindex = new Reindex();
 
         public String getName() {
             return name;
@@ -65,6 +95,62 @@ public class EsServiceProperties {
         public void setAlias(String alias) {
             this.alias = alias;
         }
+
+        public Reindex getReindex() {
+            return reindex;
+        }
+
+        /**
+         * Settings for background reindex jobs. {@code slices} 0 lets Elasticsearch pick one slice per shard;
+         * {@code requestsPerSecond} -1 disables throttling.
+         */
+        public static class Reindex {
+            private int slices = 0;
+            private float requestsPerSecond = 5000;
+            private int batchSize = 1000;
+            private Duration pollInterval = Duration.ofSeconds(5);
+            private Duration syncPauseTimeout = Duration.ofSeconds(60);
+
+            public int getSlices() {
+                return slices;
+            }
+
+            public void setSlices(int slices) {
+                this.slices = slices;
+            }
+
+            public float getRequestsPerSecond() {
+                return requestsPerSecond;
+            }
+
+            public void setRequestsPerSecond(float requestsPerSecond) {
+                this.requestsPerSecond = requestsPerSecond;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public Duration getPollInterval() {
+                return pollInterval;
+            }
+
+            public void setPollInterval(Duration pollInterval) {
+                this.pollInterval = pollInterval;
+            }
+
+            public Duration getSyncPauseTimeout() {
+                return syncPauseTimeout;
+            }
+
+            public void setSyncPauseTimeout(Duration syncPauseTimeout) {
+                this.syncPauseTimeout = syncPauseTimeout;
+            }
+        }
     }
 
     public static class Minio {
@@ -73,6 +159,10 @@ public class EsServiceProperties {
         private String secretKey;
         private String bucket;
         private String publicBaseUrl;
+        private String presignEndpoint;
+        private Duration presignExpiry = Duration.ofMinutes(15);
+        private DataSize partSize = DataSize.ofMegabytes(16);
+        private int uploadConcurrency = 4;
 
         public String getEndpoint() {
             return endpoint;
@@ -113,12 +203,51 @@ public class EsServiceProperties {
         public void setPublicBaseUrl(String publicBaseUrl) {
             this.publicBaseUrl = publicBaseUrl;
         }
+
+        /**
+         * Endpoint clients use to reach MinIO, signed into presigned URLs; defaults to {@code endpoint}.
+         */
+        public String getPresignEndpoint() {
+            return presignEndpoint;
+        }
+
+        public void setPresignEndpoint(String presignEndpoint) {
+            this.presignEndpoint = presignEndpoint;
+        }
+
+        public Duration getPresignExpiry() {
+            return presignExpiry;
+        }
+
+        public void setPresignExpiry(Duration presignExpiry) {
+            this.presignExpiry = presignExpiry;
+        }
+
+        public DataSize getPartSize() {
+            return partSize;
+        }
+
+        public void setPartSize(DataSize partSize) {
+            this.partSize = partSize;
+        }
+
+        public int getUploadConcurrency() {
+            return uploadConcurrency;
+        }
+
+        public void setUploadConcurrency(int uploadConcurrency) {
+            this.uploadConcurrency = uploadConcurrency;
+        }
     }
 
     public static class Thumbnail {
         private int width = 320;
         private int height = 320;
         private int threads = 2;
+        private boolean subsampling = true;
+        private long maxInFlightPixels = 48_000_000;
+        private List<Variant> variants = new ArrayList<>();
+        private Cache cache = new Cache();
 
         public int getWidth() {
             return width;
@@ -143,10 +272,166 @@ public class EsServiceProperties {
         public void setThreads(int threads) {
             this.threads = threads;
         }
+
+        public boolean isSubsampling() {
+            return subsampling;
+        }
+
+        public void setSubsampling(boolean subsampling) {
+            this.subsampling = subsampling;
+        }
+
+        public long getMaxInFlightPixels() {
+            return maxInFlightPixels;
+        }
+
+        public void setMaxInFlightPixels(long maxInFlightPixels) {
+            this.maxInFlightPixels = maxInFlightPixels;
+        }
+
+        public List<Variant> getVariants() {
+            return variants;
+        }
+
+        public void setVariants(List<Variant> variants) {
+            this.variants = variants;
+        }
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        /**
+         * Local disk cache behind {@code /api/images}. Entries are checked against MinIO once they are older than
+         * {@code revalidateAfter}; {@code publicBaseUrl}, when set, makes search results point at this service.
+         */
+        public static class Cache {
+            private boolean enabled = true;
+            private String dir = "data/thumbnail-cache";
+            private DataSize maxSize = DataSize.ofMegabytes(1024);
+            private int maxEntries = 10_000;
+            private Duration revalidateAfter = Duration.ofMinutes(5);
+            private Duration maxAge = Duration.ofMinutes(1);
+            private String publicBaseUrl;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDir() {
+                return dir;
+            }
+
+            public void setDir(String dir) {
+                this.dir = dir;
+            }
+
+            public DataSize getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(DataSize maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public Duration getRevalidateAfter() {
+                return revalidateAfter;
+            }
+
+            public void setRevalidateAfter(Duration revalidateAfter) {
+                this.revalidateAfter = revalidateAfter;
+            }
+
+            public Duration getMaxAge() {
+                return maxAge;
+            }
+
+            public void setMaxAge(Duration maxAge) {
+                this.maxAge = maxAge;
+            }
+
+            public String getPublicBaseUrl() {
+                return publicBaseUrl;
+            }
+
+            public void setPublicBaseUrl(String publicBaseUrl) {
+                this.publicBaseUrl = publicBaseUrl;
+            }
+        }
+
+        /**
+         * Additional thumbnail rendered from the same decode, stored as {@code thumb-<name>.<format>}.
+         */
+        public static class Variant {
+            private String name;
+            private int width;
+            private int height;
+            private String format = "jpg";
+            private double quality = 0.85;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public int getWidth() {
+                return width;
+            }
+
+            public void setWidth(int width) {
+                this.width = width;
+            }
+
+            public int getHeight() {
+                return height;
+            }
+
+            public void setHeight(int height) {
+                this.height = height;
+            }
+
+            public String getFormat() {
+                return format;
+            }
+
+            public void setFormat(String format) {
+                this.format = format;
+            }
+
+            public double getQuality() {
+                return quality;
+            }
+
+            public void setQuality(double quality) {
+                this.quality = quality;
+            }
+        }
     }
 
     public static class Import {
         private int batchSize = 200;
+        private int queueCapacity = 500;
+        private int diffThreads = 2;
+        private int imageThreads = 4;
+        private int thumbnailThreads = 2;
+        private int bulkConcurrency = 2;
+        private String jobDir = "data/import-jobs";
+        private long checkpointInterval = 1000;
 
         public int getBatchSize() {
             return batchSize;
@@ -155,5 +440,387 @@ public class EsServiceProperties {
         public void setBatchSize(int batchSize) {
             this.batchSize = batchSize;
         }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getDiffThreads() {
+            return diffThreads;
+        }
+
+        public void setDiffThreads(int diffThreads) {
+            this.diffThreads = diffThreads;
+        }
+
+        public int getImageThreads() {
+            return imageThreads;
+        }
+
+        public void setImageThreads(int imageThreads) {
+            this.imageThreads = imageThreads;
+        }
+
+        public int getThumbnailThreads() {
+            return thumbnailThreads;
+        }
+
+        public void setThumbnailThreads(int thumbnailThreads) {
+            this.thumbnailThreads = thumbnailThreads;
+        }
+
+        public int getBulkConcurrency() {
+            return bulkConcurrency;
+        }
+
+        public void setBulkConcurrency(int bulkConcurrency) {
+            this.bulkConcurrency = bulkConcurrency;
+        }
+
+        public String getJobDir() {
+            return jobDir;
+        }
+
+        public void setJobDir(String jobDir) {
+            this.jobDir = jobDir;
+        }
+
+        public long getCheckpointInterval() {
+            return checkpointInterval;
+        }
+
+        public void setCheckpointInterval(long checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+        }
+    }
+
+    public static class Search {
+        private Cache cache = new Cache();
+        private Facets facets = new Facets();
+        private SlowLog slowLog = new SlowLog();
+        private Warmer warmer = new Warmer();
+        private String pitKeepAlive = "1m";
+        private int trackTotalHitsUpTo = 10000;
+        private Duration timeout = Duration.ofSeconds(2);
+        private int maxSize = 100;
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public Facets getFacets() {
+            return facets;
+        }
+
+        public SlowLog getSlowLog() {
+            return slowLog;
+        }
+
+        public Warmer getWarmer() {
+            return warmer;
+        }
+
+        public String getPitKeepAlive() {
+            return pitKeepAlive;
+        }
+
+        public void setPitKeepAlive(String pitKeepAlive) {
+            this.pitKeepAlive = pitKeepAlive;
+        }
+
+        /**
+         * Hits are counted exactly up to this number and reported as a lower bound beyond it; 0 counts exactly.
+         */
+        public int getTrackTotalHitsUpTo() {
+            return trackTotalHitsUpTo;
+        }
+
+        public void setTrackTotalHitsUpTo(int trackTotalHitsUpTo) {
+            this.trackTotalHitsUpTo = trackTotalHitsUpTo;
+        }
+
+        /**
+         * Per-shard search timeout; shards that run out return what they collected so far. Zero disables it.
+         */
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * Largest page size a search may request; larger sizes are reduced to it.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public static class Cache {
+            private boolean enabled = true;
+            private int maxEntries = 1000;
+            private Duration ttl = Duration.ofSeconds(30);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public Duration getTtl() {
+                return ttl;
+            }
+
+            public void setTtl(Duration ttl) {
+                this.ttl = ttl;
+            }
+        }
+
+        /**
+         * {@code priceBoundaries} split prices into ranges: below the first, between neighbours, and from the last.
+         */
+        public static class Facets {
+            private int categorySize = 20;
+            private List<Long> priceBoundaries = new ArrayList<>(List.of(1000L, 5000L, 10000L, 30000L, 50000L, 100000L));
+
+            public int getCategorySize() {
+                return categorySize;
+            }
+
+            public void setCategorySize(int categorySize) {
+                this.categorySize = categorySize;
+            }
+
+            public List<Long> getPriceBoundaries() {
+                return priceBoundaries;
+            }
+
+            public void setPriceBoundaries(List<Long> priceBoundaries) {
+                this.priceBoundaries = priceBoundaries;
+            }
+        }
+
+        /**
+         * Searches and suggests slower than {@code threshold} (client wall time) are logged with their query JSON;
+         * {@code sampleRate} is the fraction of them that is logged.
+         */
+        public static class SlowLog {
+            private Duration threshold = Duration.ofMillis(500);
+            private double sampleRate = 1.0;
+
+            public Duration getThreshold() {
+                return threshold;
+            }
+
+            public void setThreshold(Duration threshold) {
+                this.threshold = threshold;
+            }
+
+            public double getSampleRate() {
+                return sampleRate;
+            }
+
+            public void setSampleRate(double sampleRate) {
+                this.sampleRate = sampleRate;
+            }
+        }
+
+        /**
+         * The {@code topN} most frequent searches and suggest prefixes (out of at most {@code maxTracked}) are
+         * saved to {@code file} every {@code persistInterval} and replayed, {@code concurrency} at a time, on
+         * startup and after alias switches. Readiness waits for the startup replay for at most {@code timeout}.
+         */
+        public static class Warmer {
+            private boolean enabled = true;
+            private int topN = 100;
+            private int maxTracked = 10000;
+            private int concurrency = 4;
+            private String file = "data/search-warmer.json";
+            private Duration persistInterval = Duration.ofMinutes(1);
+            private Duration timeout = Duration.ofSeconds(60);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getTopN() {
+                return topN;
+            }
+
+            public void setTopN(int topN) {
+                this.topN = topN;
+            }
+
+            public int getMaxTracked() {
+                return maxTracked;
+            }
+
+            public void setMaxTracked(int maxTracked) {
+                this.maxTracked = maxTracked;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public String getFile() {
+                return file;
+            }
+
+            public void setFile(String file) {
+                this.file = file;
+            }
+
+            public Duration getPersistInterval() {
+                return persistInterval;
+            }
+
+            public void setPersistInterval(Duration persistInterval) {
+                this.persistInterval = persistInterval;
+            }
+
+            public Duration getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(Duration timeout) {
+                this.timeout = timeout;
+            }
+        }
+    }
+
+    /**
+     * {@code terminateAfter} caps the documents each shard collects for the aggregation fallback (0 disables it);
+     * {@code timeout} is the per-shard search timeout of Elasticsearch lookups (zero disables it).
+     */
+    public static class Suggest {
+        private boolean completionEnabled = true;
+        private int terminateAfter = 10000;
+        private Duration timeout = Duration.ofMillis(500);
+        private Local local = new Local();
+
+        public boolean isCompletionEnabled() {
+            return completionEnabled;
+        }
+
+        public void setCompletionEnabled(boolean completionEnabled) {
+            this.completionEnabled = completionEnabled;
+        }
+
+        public int getTerminateAfter() {
+            return terminateAfter;
+        }
+
+        public void setTerminateAfter(int terminateAfter) {
+            this.terminateAfter = terminateAfter;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Local getLocal() {
+            return local;
+        }
+
+        public static class Local {
+            private boolean enabled = true;
+            private DataSize maxMemory = DataSize.ofMegabytes(64);
+            private int loadBatchSize = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public DataSize getMaxMemory() {
+                return maxMemory;
+            }
+
+            public void setMaxMemory(DataSize maxMemory) {
+                this.maxMemory = maxMemory;
+            }
+
+            public int getLoadBatchSize() {
+                return loadBatchSize;
+            }
+
+            public void setLoadBatchSize(int loadBatchSize) {
+                this.loadBatchSize = loadBatchSize;
+            }
+        }
+    }
+
+    public static class Sync {
+        private boolean enabled = true;
+        private Duration window = Duration.ofSeconds(1);
+        private int maxBatch = 500;
+        private Duration suggestRebuildInterval = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        public void setMaxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        public Duration getSuggestRebuildInterval() {
+            return suggestRebuildInterval;
+        }
+
+        public void setSuggestRebuildInterval(Duration suggestRebuildInterval) {
+            this.suggestRebuildInterval = suggestRebuildInterval;
+        }
     }
 }
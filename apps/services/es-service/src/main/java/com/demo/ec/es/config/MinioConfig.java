@@ -1,16 +1,45 @@
 package com.demo.ec.es.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class MinioConfig {
+    // Fixed so presigning never needs a bucket-location call through the client-facing endpoint
+    private static final String PRESIGN_REGION = "us-east-1";
+
     @Bean
+    @Primary
     public MinioClient minioClient(EsServiceProperties properties) {
         return MinioClient.builder()
                 .endpoint(properties.getMinio().getEndpoint())
                 .credentials(properties.getMinio().getAccessKey(), properties.getMinio().getSecretKey())
                 .build();
     }
+
+    @Bean
+    public MultipartMinioClient multipartMinioClient(EsServiceProperties properties) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(properties.getMinio().getEndpoint())
+                .credentials(properties.getMinio().getAccessKey(), properties.getMinio().getSecretKey())
+                .build());
+    }
+
+    /**
+     * Signs URLs for the endpoint clients upload to, which may differ from the one es-service uses.
+     */
+    @Bean
+    public MinioClient presignMinioClient(EsServiceProperties properties) {
+        EsServiceProperties.Minio config = properties.getMinio();
+        String endpoint = config.getPresignEndpoint() == null || config.getPresignEndpoint().isBlank()
+                ? config.getEndpoint() : config.getPresignEndpoint();
+        return MinioClient.builder()
+                .endpoint(endpoint)
+                .region(PRESIGN_REGION)
+                .credentials(config.getAccessKey(), config.getSecretKey())
+                .build();
+    }
 }
@@ -0,0 +1,44 @@
+package com.demo.ec.es.config;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.errors.MinioException;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes the low-level multipart calls of {@link MinioAsyncClient} so parts can be uploaded concurrently;
+ * {@code putObject} sends the parts of one object sequentially.
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public CompletableFuture<String> createMultipartUpload(String bucket, String object, String contentType)
+            throws MinioException, IOException, GeneralSecurityException {
+        return createMultipartUploadAsync(bucket, null, object, ImmutableMultimap.of("Content-Type", contentType), null)
+                .thenApply(response -> response.result().uploadId());
+    }
+
+    public CompletableFuture<Part> uploadPart(String bucket, String object, String uploadId, int partNumber, byte[] data)
+            throws MinioException, IOException, GeneralSecurityException {
+        return uploadPartAsync(bucket, null, object, data, data.length, uploadId, partNumber, null, null)
+                .thenApply(response -> new Part(partNumber, response.etag()));
+    }
+
+    public CompletableFuture<ObjectWriteResponse> completeMultipartUpload(String bucket, String object, String uploadId,
+                                                                          Part[] parts)
+            throws MinioException, IOException, GeneralSecurityException {
+        return completeMultipartUploadAsync(bucket, null, object, uploadId, parts, null, null);
+    }
+
+    public void abortMultipartUpload(String bucket, String object, String uploadId)
+            throws MinioException, IOException, GeneralSecurityException {
+        abortMultipartUploadAsync(bucket, null, object, uploadId, null, null).join();
+    }
+}
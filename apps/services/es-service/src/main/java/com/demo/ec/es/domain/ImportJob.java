@@ -0,0 +1,31 @@
+package com.demo.ec.es.domain;
+
+import java.time.Instant;
+
+/**
+ * State of a background CSV import, persisted as the job's checkpoint.
+ *
+ * @param checkpointLine every CSV line up to this one has been indexed or rejected; a resumed run starts after it
+ * @param success        rows indexed up to the checkpoint
+ * @param failed         rows rejected up to the checkpoint (details are in {@code errorFile})
+ * @param rowsRead       rows read by the current run, including rows still in the pipeline
+ */
+public record ImportJob(
+        String jobId,
+        ImportJobStatus status,
+        ImportRequest request,
+        long checkpointLine,
+        long success,
+        long failed,
+        long rowsRead,
+        String errorFile,
+        String message,
+        Instant createdAt,
+        Instant updatedAt
+) {
+    public ImportJob withProgress(ImportJobStatus status, long checkpointLine, long success, long failed,
+                                  long rowsRead, String message) {
+        return new ImportJob(jobId, status, request, checkpointLine, success, failed, rowsRead, errorFile, message,
+                createdAt, Instant.now());
+    }
+}
@@ -0,0 +1,8 @@
+package com.demo.ec.es.domain;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -2,9 +2,16 @@ package com.demo.ec.es.domain;
 
 import jakarta.validation.constraints.NotBlank;
 
+/**
+ * @param force re-upload and re-index every row even if its content hash is unchanged
+ */
 public record ImportRequest(
         @NotBlank String csvPath,
         @NotBlank String imagesDir,
-        Integer batchSize
+        Integer batchSize,
+        Boolean force
 ) {
+    public boolean forced() {
+        return Boolean.TRUE.equals(force);
+    }
 }
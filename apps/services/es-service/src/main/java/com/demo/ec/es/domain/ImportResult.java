@@ -2,10 +2,14 @@ package com.demo.ec.es.domain;
 
 import java.util.List;
 
+/**
+ * @param unchanged rows skipped because their content hash matched the indexed document (counted in {@code success})
+ */
 public record ImportResult(
         long total,
         long success,
         long failed,
+        long unchanged,
         List<ImportError> errors
 ) {
 }
@@ -0,0 +1,16 @@
+package com.demo.ec.es.domain;
+
+import java.time.Instant;
+
+/**
+ * Target for a direct upload of a product image to object storage.
+ * The client PUTs the file to {@code uploadUrl} with {@code contentType}, then reports {@code objectName}
+ * as completed so the thumbnails are rendered.
+ */
+public record PresignedUpload(
+        String objectName,
+        String uploadUrl,
+        String contentType,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,20 @@
+package com.demo.ec.es.domain;
+
+import java.time.Instant;
+
+/**
+ * Latest state of one product as published by storage-service, mapped to index field names.
+ *
+ * @param updatedAt when the row was changed in the product master; used to keep the newest of several changes
+ */
+public record ProductChange(
+        Long productId,
+        String title,
+        String description,
+        Long price,
+        String status,
+        Long categoryId,
+        Instant createdAt,
+        Instant updatedAt
+) {
+}
@@ -1,14 +1,35 @@
 package com.demo.ec.es.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.time.Instant;
 
+/**
+ * Product as stored in the search index.
+ *
+ * @param categoryId  optional category, used for filtering and facets; left out of the JSON when null, so an import
+ *                    without the column keeps the category maintained by the product sync
+ * @param imageHash   SHA-256 of the original image and thumbnail settings, used to skip unchanged uploads
+ * @param contentHash SHA-256 of the indexed fields and {@code imageHash}, used to skip unchanged documents
+ * @param residue     units in stock, maintained from storage-service stock events; never written by the import
+ * @param inStock     whether {@code residue} is positive, for availability filters
+ */
 public record ProductDocument(
         Long productId,
         String title,
         String description,
         Long price,
         String status,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Long categoryId,
         String thumbnailUrl,
-        Instant createdAt
+        Instant createdAt,
+        String imageHash,
+        String contentHash,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Integer residue,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Boolean inStock
 ) {
+    public ProductDocument withHashes(String imageHash, String contentHash) {
+        return new ProductDocument(productId, title, description, price, status, categoryId, thumbnailUrl, createdAt,
+                imageHash, contentHash, residue, inStock);
+    }
 }
@@ -0,0 +1,38 @@
+package com.demo.ec.es.domain;
+
+import java.time.Instant;
+
+/**
+ * State of a background reindex.
+ *
+ * @param taskId      Elasticsearch task running the reindex, null until it has been started
+ * @param total       documents the reindex task will copy, as reported by the task
+ * @param copied      documents created or updated in the target so far
+ * @param sourceCount documents in the source, counted once the task has finished
+ * @param targetCount documents in the target, counted once the task has finished; the alias is only switched when equal
+ */
+public record ReindexJob(
+        String jobId,
+        ReindexJobStatus status,
+        String sourceIndex,
+        String targetIndex,
+        String alias,
+        String taskId,
+        long total,
+        long copied,
+        long sourceCount,
+        long targetCount,
+        String message,
+        Instant createdAt,
+        Instant updatedAt
+) {
+    public ReindexJob withTask(ReindexJobStatus status, String taskId, long total, long copied) {
+        return new ReindexJob(jobId, status, sourceIndex, targetIndex, alias, taskId, total, copied,
+                sourceCount, targetCount, message, createdAt, Instant.now());
+    }
+
+    public ReindexJob withResult(ReindexJobStatus status, long sourceCount, long targetCount, String message) {
+        return new ReindexJob(jobId, status, sourceIndex, targetIndex, alias, taskId, total, copied,
+                sourceCount, targetCount, message, createdAt, Instant.now());
+    }
+}
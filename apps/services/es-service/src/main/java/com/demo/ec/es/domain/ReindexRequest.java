@@ -2,9 +2,15 @@ package com.demo.ec.es.domain;
 
 import jakarta.validation.constraints.NotBlank;
 
+/**
+ * @param slices            parallel reindex slices, 0 for one per shard; defaults to the configured value
+ * @param requestsPerSecond throttle for the reindex, -1 for none; defaults to the configured value
+ */
 public record ReindexRequest(
         @NotBlank String sourceIndex,
         @NotBlank String targetIndex,
-        String alias
+        String alias,
+        Integer slices,
+        Float requestsPerSecond
 ) {
 }
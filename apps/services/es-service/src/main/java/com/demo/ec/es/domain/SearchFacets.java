@@ -0,0 +1,22 @@
+package com.demo.ec.es.domain;
+
+import java.util.List;
+
+/**
+ * Facet counts computed alongside a search.
+ * Each facet ignores its own filter, so the counts show what selecting another value would return.
+ */
+public record SearchFacets(
+        List<CategoryCount> categories,
+        List<PriceRangeCount> priceRanges
+) {
+    public record CategoryCount(Long categoryId, long count) {
+    }
+
+    /**
+     * @param from inclusive lower bound, null if unbounded
+     * @param to   exclusive upper bound, null if unbounded
+     */
+    public record PriceRangeCount(String key, Long from, Long to, long count) {
+    }
+}
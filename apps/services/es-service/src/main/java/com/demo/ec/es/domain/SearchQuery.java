@@ -0,0 +1,50 @@
+package com.demo.ec.es.domain;
+
+/**
+ * Normalized product search parameters. Also serves as the result cache key,
+ * so every field that changes the response must be part of it.
+ *
+ * @param inStock whether only products with stock are returned
+ * @param cursor opaque search_after cursor; {@code "*"} opens a new point-in-time, null uses from/size paging
+ * @param facets whether facet counts are computed with the results (from/size paging only)
+ */
+public record SearchQuery(
+        String q,
+        Long categoryId,
+        Long minPrice,
+        Long maxPrice,
+        boolean inStock,
+        SearchSort sort,
+        int page,
+        int size,
+        String cursor,
+        boolean facets
+) {
+    public static final String CURSOR_START = "*";
+
+    public SearchQuery {
+        q = q == null || q.isBlank() ? null : q.trim();
+        sort = sort == null ? SearchSort.relevance : sort;
+        page = Math.max(page, 0);
+        cursor = cursor == null || cursor.isBlank() ? null : cursor.trim();
+    }
+
+    /**
+     * This query with its page size limited to {@code maxSize}, or itself when it is within the limit.
+     */
+    public SearchQuery withMaxSize(int maxSize) {
+        return size <= maxSize ? this
+                : new SearchQuery(q, categoryId, minPrice, maxPrice, inStock, sort, page, maxSize, cursor, facets);
+    }
+
+    public boolean cursorMode() {
+        return cursor != null;
+    }
+
+    /**
+     * Facets of queries without text and price filter depend only on the category, which makes them worth caching.
+     */
+    public boolean facetsCacheable() {
+        return q == null && minPrice == null && maxPrice == null;
+    }
+}
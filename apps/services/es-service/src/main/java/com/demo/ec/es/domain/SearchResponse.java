@@ -2,11 +2,19 @@ package com.demo.ec.es.domain;
 
 import java.util.List;
 
+/**
+ * @param totalRelation {@code eq} if {@code total} is exact, {@code gte} if counting stopped at the configured cap
+ * @param partial       whether a shard timed out or failed, so items, total and facets may be incomplete
+ */
 public record SearchResponse(
         List<ProductCard> items,
         long total,
+        String totalRelation,
         int page,
         int size,
-        String didYouMean
+        String didYouMean,
+        String nextCursor,
+        SearchFacets facets,
+        boolean partial
 ) {
 }
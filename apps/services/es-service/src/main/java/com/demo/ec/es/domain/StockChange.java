@@ -0,0 +1,19 @@
+package com.demo.ec.es.domain;
+
+import java.time.Instant;
+
+/**
+ * Latest stock level of one product as published by storage-service.
+ *
+ * @param residue   units available for new orders
+ * @param updatedAt when the stock row was changed; used to keep the newest of several changes
+ */
+public record StockChange(
+        Long productId,
+        Integer residue,
+        Instant updatedAt
+) {
+    public boolean inStock() {
+        return residue != null && residue > 0;
+    }
+}
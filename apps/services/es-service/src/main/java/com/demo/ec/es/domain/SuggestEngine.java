@@ -0,0 +1,22 @@
+package com.demo.ec.es.domain;
+
+/**
+ * Which backend serves a suggest request. {@code auto} uses the in-JVM index and
+ * falls back to Elasticsearch when it is not loaded or has no match.
+ */
+public enum SuggestEngine {
+    auto,
+    local,
+    elasticsearch;
+
+    public static SuggestEngine fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return auto;
+        }
+        try {
+            return SuggestEngine.valueOf(value.toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return auto;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.demo.ec.es.domain;
+
+/**
+ * One rendered thumbnail variant.
+ *
+ * @param fileName object file name under {@code products/<productId>/}, e.g. {@code thumb.jpg}
+ */
+public record ThumbnailImage(
+        String fileName,
+        String contentType,
+        byte[] bytes
+) {
+}
@@ -0,0 +1,82 @@
+package com.demo.ec.es.gateway.messaging;
+
+import com.demo.ec.es.application.ProductSyncService;
+import com.demo.ec.es.domain.ProductChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes product change events in batches and hands them to {@link ProductSyncService}.
+ * The consumer waits up to {@code es-service.sync.window} for a batch to fill, which is the coalescing window;
+ * offsets are committed after the batch has been applied, so a failed bulk request redelivers the batch.
+ */
+@Component
+public class ProductChangeConsumer {
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeConsumer.class);
+
+    private final ObjectMapper objectMapper;
+    private final ProductSyncService productSyncService;
+
+    public ProductChangeConsumer(ObjectMapper objectMapper, ProductSyncService productSyncService) {
+        this.objectMapper = objectMapper;
+        this.productSyncService = productSyncService;
+    }
+
+    @KafkaListener(
+            topics = "${ec-demo.kafka.topics.products-events}",
+            autoStartup = "${es-service.sync.enabled:true}",
+            batch = "true",
+            properties = {
+                    "fetch.min.bytes=1048576",
+                    "fetch.max.wait.ms=#{T(org.springframework.boot.convert.DurationStyle).detectAndParse('${es-service.sync.window:1s}').toMillis()}",
+                    "max.poll.records=${es-service.sync.max-batch:500}"
+            }
+    )
+    public void onMessages(List<String> raws) {
+        List<ProductChange> changes = new ArrayList<>(raws.size());
+        for (String raw : raws) {
+            ProductChange change = toChange(raw);
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        productSyncService.apply(changes);
+    }
+
+    private ProductChange toChange(String raw) {
+        ProductChangedEvent event;
+        try {
+            event = objectMapper.readValue(raw, ProductChangedEvent.class);
+        } catch (Exception ex) {
+            log.warn("Failed to parse product event: err={}, raw={}", ex.toString(), raw);
+            return null;
+        }
+        if (!"ProductChanged".equals(event.eventType()) || event.payload() == null
+                || event.payload().productId() == null) {
+            log.info("Skipping product event: eventType={}, eventId={}", event.eventType(), event.eventId());
+            return null;
+        }
+        ProductChangedEvent.Payload p = event.payload();
+        try {
+            return new ProductChange(
+                    p.productId(),
+                    p.name(),
+                    p.description(),
+                    p.price() == null ? null : p.price().longValue(),
+                    p.status(),
+                    p.categoryId(),
+                    p.createdAt() == null ? null : Instant.parse(p.createdAt()),
+                    p.updatedAt() == null ? null : Instant.parse(p.updatedAt()));
+        } catch (RuntimeException ex) {
+            log.warn("Invalid product event: eventId={}, productId={}, err={}", event.eventId(), p.productId(), ex.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.demo.ec.es.gateway.messaging;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.math.BigDecimal;
+
+/**
+ * ProductChanged event published by storage-service on {@code ec-demo.products.events.v1}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductChangedEvent(
+        String eventId,
+        String eventType,
+        int schemaVersion,
+        String aggregateId,
+        String occurredAt,
+        Payload payload
+) {
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Payload(
+            Long productId,
+            Long categoryId,
+            String name,
+            String description,
+            BigDecimal price,
+            String status,
+            String createdAt,
+            String updatedAt
+    ) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.demo.ec.es.gateway.messaging;
+
+import com.demo.ec.es.application.ProductSyncService;
+import com.demo.ec.es.domain.StockChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes stock change events in batches and hands them to {@link ProductSyncService}.
+ * Uses the same coalescing window and batch size as {@link ProductChangeConsumer}.
+ */
+@Component
+public class StockChangeConsumer {
+    private static final Logger log = LoggerFactory.getLogger(StockChangeConsumer.class);
+
+    private final ObjectMapper objectMapper;
+    private final ProductSyncService productSyncService;
+
+    public StockChangeConsumer(ObjectMapper objectMapper, ProductSyncService productSyncService) {
+        this.objectMapper = objectMapper;
+        this.productSyncService = productSyncService;
+    }
+
+    @KafkaListener(
+            topics = "${ec-demo.kafka.topics.stock-events}",
+            autoStartup = "${es-service.sync.enabled:true}",
+            batch = "true",
+            properties = {
+                    "fetch.min.bytes=1048576",
+                    "fetch.max.wait.ms=#{T(org.springframework.boot.convert.DurationStyle).detectAndParse('${es-service.sync.window:1s}').toMillis()}",
+                    "max.poll.records=${es-service.sync.max-batch:500}"
+            }
+    )
+    public void onMessages(List<String> raws) {
+        List<StockChange> changes = new ArrayList<>(raws.size());
+        for (String raw : raws) {
+            StockChange change = toChange(raw);
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        productSyncService.applyStock(changes);
+    }
+
+    private StockChange toChange(String raw) {
+        StockChangedEvent event;
+        try {
+            event = objectMapper.readValue(raw, StockChangedEvent.class);
+        } catch (Exception ex) {
+            log.warn("Failed to parse stock event: err={}, raw={}", ex.toString(), raw);
+            return null;
+        }
+        if (!"StockChanged".equals(event.eventType()) || event.payload() == null
+                || event.payload().productId() == null) {
+            log.info("Skipping stock event: eventType={}, eventId={}", event.eventType(), event.eventId());
+            return null;
+        }
+        StockChangedEvent.Payload p = event.payload();
+        try {
+            return new StockChange(
+                    p.productId(),
+                    p.residue(),
+                    p.updatedAt() == null ? null : Instant.parse(p.updatedAt()));
+        } catch (RuntimeException ex) {
+            log.warn("Invalid stock event: eventId={}, productId={}, err={}", event.eventId(), p.productId(), ex.toString());
+            return null;
+        }
+    }
+}
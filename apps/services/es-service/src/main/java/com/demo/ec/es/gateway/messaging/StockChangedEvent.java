@@ -0,0 +1,26 @@
+package com.demo.ec.es.gateway.messaging;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * StockChanged event published by storage-service on {@code ec-demo.stock.events.v1}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record StockChangedEvent(
+        String eventId,
+        String eventType,
+        int schemaVersion,
+        String aggregateId,
+        String occurredAt,
+        Payload payload
+) {
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Payload(
+            Long productId,
+            Integer total,
+            Integer residue,
+            Integer frozen,
+            String updatedAt
+    ) {
+    }
+}
@@ -1,10 +1,13 @@
 package com.demo.ec.es.web;
 
 import com.demo.ec.es.application.ImageUploadService;
+import com.demo.ec.es.domain.PresignedUpload;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,10 +22,33 @@ public class InternalImageController {
         this.imageUploadService = imageUploadService;
     }
 
+    /**
+     * Uploads the image through es-service; thumbnails are rendered in the background.
+     */
     @PostMapping("/{productId}/image")
     public Map<String, String> uploadImage(@PathVariable("productId") Long productId,
                                            @RequestParam("file") MultipartFile file) throws Exception {
         String url = imageUploadService.uploadAndUpdate(productId, file);
         return Map.of("thumbnailUrl", url);
     }
+
+    /**
+     * Returns a presigned URL for uploading the image directly to object storage.
+     */
+    @PostMapping("/{productId}/image/upload-url")
+    public PresignedUpload createUploadUrl(@PathVariable("productId") Long productId,
+                                           @RequestParam(value = "filename", required = false) String filename) {
+        return imageUploadService.createUploadUrl(productId, filename);
+    }
+
+    /**
+     * Reports a presigned upload as finished and queues thumbnail rendering.
+     */
+    @PostMapping("/{productId}/image/complete")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Map<String, String> completeUpload(@PathVariable("productId") Long productId,
+                                              @RequestParam("objectName") String objectName) {
+        String url = imageUploadService.completeUpload(productId, objectName);
+        return Map.of("thumbnailUrl", url);
+    }
 }
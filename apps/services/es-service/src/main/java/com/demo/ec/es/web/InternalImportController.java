@@ -1,11 +1,19 @@
 package com.demo.ec.es.web;
 
+import com.demo.ec.es.domain.ImportJob;
 import com.demo.ec.es.domain.ImportRequest;
 import com.demo.ec.es.domain.ImportResult;
+import com.demo.ec.es.application.ImportJobService;
 import com.demo.ec.es.application.ImportService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,7 +21,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 /**
  * Internal API controller for product data import.
- * Handles CSV import with image upload to MinIO and indexing to Elasticsearch.
+ * Handles CSV import with image upload to MinIO and indexing to Elasticsearch,
+ * either synchronously or as a resumable background job.
  */
 @RestController
 @RequestMapping("/internal/products")
@@ -21,9 +30,11 @@ public class InternalImportController {
     private static final Logger log = LoggerFactory.getLogger(InternalImportController.class);
     
     private final ImportService importService;
+    private final ImportJobService importJobService;
 
-    public InternalImportController(ImportService importService) {
+    public InternalImportController(ImportService importService, ImportJobService importJobService) {
         this.importService = importService;
+        this.importJobService = importJobService;
     }
 
     @PostMapping("/import")
@@ -38,4 +49,33 @@ public class InternalImportController {
         
         return result;
     }
+
+    @PostMapping("/import/jobs")
+    public ResponseEntity<ImportJob> submitImportJob(@Valid @RequestBody ImportRequest request) {
+        log.info("Submitting CSV import job: csvPath={}, imagesDir={}, batchSize={}",
+                request.csvPath(), request.imagesDir(), request.batchSize());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobService.submit(request));
+    }
+
+    @GetMapping("/import/jobs/{jobId}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable("jobId") String jobId) {
+        return importJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/import/jobs/{jobId}/errors", produces = "application/x-ndjson")
+    public ResponseEntity<Resource> getImportJobErrors(@PathVariable("jobId") String jobId) {
+        return importJobService.findErrorFile(jobId)
+                .<Resource>map(FileSystemResource::new)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/import/jobs/{jobId}/resume")
+    public ResponseEntity<ImportJob> resumeImportJob(@PathVariable("jobId") String jobId) {
+        return importJobService.resume(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
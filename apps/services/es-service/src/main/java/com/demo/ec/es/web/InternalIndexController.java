@@ -1,9 +1,15 @@
 package com.demo.ec.es.web;
 
 import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ReindexJob;
 import com.demo.ec.es.domain.ReindexRequest;
 import com.demo.ec.es.application.IndexAdminService;
+import com.demo.ec.es.application.ReindexJobService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,10 +22,13 @@ import java.util.Map;
 @RequestMapping("/internal/products")
 public class InternalIndexController {
     private final IndexAdminService indexAdminService;
+    private final ReindexJobService reindexJobService;
     private final EsServiceProperties properties;
 
-    public InternalIndexController(IndexAdminService indexAdminService, EsServiceProperties properties) {
+    public InternalIndexController(IndexAdminService indexAdminService, ReindexJobService reindexJobService,
+                                   EsServiceProperties properties) {
         this.indexAdminService = indexAdminService;
+        this.reindexJobService = reindexJobService;
         this.properties = properties;
     }
 
@@ -30,9 +39,15 @@ public class InternalIndexController {
     }
 
     @PostMapping("/reindex")
-    public Map<String, String> reindex(@Valid @RequestBody ReindexRequest request) throws IOException {
+    public ResponseEntity<ReindexJob> reindex(@Valid @RequestBody ReindexRequest request) {
         String alias = request.alias() == null || request.alias().isBlank() ? properties.getIndex().getAlias() : request.alias();
-        indexAdminService.reindex(request.sourceIndex(), request.targetIndex(), alias);
-        return Map.of("source", request.sourceIndex(), "target", request.targetIndex(), "alias", alias);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reindexJobService.submit(request, alias));
+    }
+
+    @GetMapping("/reindex/{jobId}")
+    public ResponseEntity<ReindexJob> getReindexJob(@PathVariable("jobId") String jobId) {
+        return reindexJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 }
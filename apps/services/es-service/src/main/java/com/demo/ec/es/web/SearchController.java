@@ -1,20 +1,28 @@
 package com.demo.ec.es.web;
 
+import com.demo.ec.es.domain.SearchQuery;
 import com.demo.ec.es.domain.SearchResponse;
 import com.demo.ec.es.domain.SearchSort;
+import com.demo.ec.es.domain.SuggestEngine;
 import com.demo.ec.es.domain.SuggestResponse;
 import com.demo.ec.es.application.SearchService;
+import com.demo.ec.es.application.SearchWarmer;
 import com.demo.ec.es.application.SuggestService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * REST controller for product search and suggestion APIs.
  * Handles search queries with filtering, sorting, and pagination.
+ * Responses are asynchronous, so servlet threads are released while Elasticsearch is queried.
  */
 @RestController
 @RequestMapping("/api/search")
@@ -23,34 +31,46 @@ public class SearchController {
     
     private final SearchService searchService;
     private final SuggestService suggestService;
+    private final SearchWarmer searchWarmer;
 
-    public SearchController(SearchService searchService, SuggestService suggestService) {
+    public SearchController(SearchService searchService, SuggestService suggestService, SearchWarmer searchWarmer) {
         this.searchService = searchService;
         this.suggestService = suggestService;
+        this.searchWarmer = searchWarmer;
     }
 
     @GetMapping("/products")
-    public SearchResponse searchProducts(
+    public CompletableFuture<SearchResponse> searchProducts(
             @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "categoryId", required = false) Long categoryId,
             @RequestParam(value = "minPrice", required = false) Long minPrice,
             @RequestParam(value = "maxPrice", required = false) Long maxPrice,
+            @RequestParam(value = "inStock", defaultValue = "false") boolean inStock,
             @RequestParam(value = "sort", defaultValue = "relevance") String sortParam,
             @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "size", defaultValue = "20") int size
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "facets", defaultValue = "false") boolean facets,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl
     ) {
-        log.debug("Searching products: q={}, minPrice={}, maxPrice={}, sort={}, page={}, size={}",
-                q, minPrice, maxPrice, sortParam, page, size);
+        log.debug("Searching products: q={}, categoryId={}, minPrice={}, maxPrice={}, inStock={}, sort={}, page={}, size={}, cursor={}, facets={}",
+                q, categoryId, minPrice, maxPrice, inStock, sortParam, page, size, cursor, facets);
         
         SearchSort sort = SearchSort.fromString(sortParam);
-        return searchService.search(q, minPrice, maxPrice, sort, page, size);
+        boolean useCache = cacheControl == null || !cacheControl.contains("no-cache");
+        SearchQuery query = new SearchQuery(q, categoryId, minPrice, maxPrice, inStock, sort, page, size, cursor, facets);
+        searchWarmer.recordSearch(query);
+        return searchService.searchAsync(query, useCache);
     }
 
     @GetMapping("/suggest")
-    public SuggestResponse suggest(
+    public CompletableFuture<SuggestResponse> suggest(
             @RequestParam("q") String q,
-            @RequestParam(value = "size", defaultValue = "10") int size
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "engine", defaultValue = "auto") String engine
     ) {
-        log.debug("Fetching suggestions: q={}, size={}", q, size);
-        return new SuggestResponse(suggestService.suggest(q, size));
+        log.debug("Fetching suggestions: q={}, size={}, engine={}", q, size, engine);
+        searchWarmer.recordSuggest(q, size);
+        return suggestService.suggestAsync(q, size, SuggestEngine.fromString(engine)).thenApply(SuggestResponse::new);
     }
 }
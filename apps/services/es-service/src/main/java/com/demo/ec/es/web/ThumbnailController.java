@@ -0,0 +1,111 @@
+package com.demo.ec.es.web;
+
+import com.demo.ec.es.application.ThumbnailCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Serves product thumbnails from the local {@link ThumbnailCache}.
+ * Supports conditional GET ({@code If-None-Match}) and single byte ranges; multi-range requests get the whole file.
+ */
+@RestController
+@RequestMapping("/api/images")
+public class ThumbnailController {
+    private static final Pattern FILE_NAME = Pattern.compile("thumb(-[a-z0-9]+)?\\.(jpg|png|webp)");
+
+    private final ThumbnailCache thumbnailCache;
+
+    public ThumbnailController(ThumbnailCache thumbnailCache) {
+        this.thumbnailCache = thumbnailCache;
+    }
+
+    @GetMapping("/products/{productId}/{fileName:.+}")
+    public void thumbnail(@PathVariable("productId") Long productId,
+                          @PathVariable("fileName") String fileName,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            throw new IllegalArgumentException("Unsupported image: " + fileName);
+        }
+        if (!thumbnailCache.isEnabled()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String key = "products/" + productId + "/" + fileName;
+        ThumbnailCache.Entry entry = thumbnailCache.get(key);
+        if (entry == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, thumbnailCache.cacheControl());
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + entry.etag() + "\"")) {
+            return;
+        }
+
+        long size = entry.size();
+        long start = 0;
+        long length = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, entry)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    long end = ranges.get(0).getRangeEnd(size);
+                    if (start > end) {
+                        // HttpRange clamps the end to the size but not the start, e.g. bytes=10- on 10 bytes
+                        throw new IllegalArgumentException("Range not satisfiable: " + range);
+                    }
+                    length = end - start + 1;
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + start + "-" + (start + length - 1) + "/" + size);
+                }
+            } catch (IllegalArgumentException ex) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        ByteBuffer body = entry.slice(start, length);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType(fileName));
+        response.setContentLengthLong(length);
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (body.hasRemaining()) {
+            out.write(body);
+        }
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, ThumbnailCache.Entry entry) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        return ifRange == null || ifRange.equals("\"" + entry.etag() + "\"");
+    }
+
+    private static String contentType(String fileName) {
+        if (fileName.endsWith(".png")) {
+            return "image/png";
+        }
+        if (fileName.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return "image/jpeg";
+    }
+}
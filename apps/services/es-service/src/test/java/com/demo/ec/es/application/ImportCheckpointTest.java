@@ -0,0 +1,80 @@
+package com.demo.ec.es.application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImportCheckpointTest {
+    // Line 1 is the CSV header, so a fresh import starts with the watermark on it
+    private static final long HEADER = 1;
+
+    @Test
+    void advancesWithRowsFinishingInOrder() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(HEADER, 0, 0);
+        checkpoint.read(2);
+        checkpoint.read(3);
+
+        checkpoint.done(2, true);
+        assertEquals(new ImportCheckpoint.Snapshot(2, 1, 0, 2), checkpoint.snapshot());
+
+        checkpoint.done(3, false);
+        assertEquals(new ImportCheckpoint.Snapshot(3, 1, 1, 2), checkpoint.snapshot());
+    }
+
+    @Test
+    void holdsOutcomesAboveAGapUntilItCloses() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(HEADER, 0, 0);
+        checkpoint.read(2);
+        checkpoint.read(3);
+        checkpoint.read(4);
+
+        checkpoint.done(4, true);
+        checkpoint.done(3, false);
+        // Line 2 is still in flight: nothing above it may count yet
+        assertEquals(new ImportCheckpoint.Snapshot(HEADER, 0, 0, 3), checkpoint.snapshot());
+
+        checkpoint.done(2, true);
+        assertEquals(new ImportCheckpoint.Snapshot(4, 2, 1, 3), checkpoint.snapshot());
+    }
+
+    @Test
+    void stopsBelowTheLowestRowInFlight() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(HEADER, 0, 0);
+        checkpoint.read(2);
+        checkpoint.read(3);
+        checkpoint.read(4);
+
+        checkpoint.done(2, true);
+        checkpoint.done(4, true);
+
+        assertEquals(new ImportCheckpoint.Snapshot(2, 1, 0, 3), checkpoint.snapshot());
+    }
+
+    @Test
+    void movesToTheLastReadLineWhenNothingIsInFlight() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(HEADER, 0, 0);
+        checkpoint.read(2);
+        // Lines in between never reached the pipeline, e.g. rows skipped by the reader
+        checkpoint.read(5);
+
+        checkpoint.done(5, true);
+        assertEquals(new ImportCheckpoint.Snapshot(HEADER, 0, 0, 2), checkpoint.snapshot());
+
+        checkpoint.done(2, false);
+        assertEquals(new ImportCheckpoint.Snapshot(5, 1, 1, 2), checkpoint.snapshot());
+    }
+
+    @Test
+    void resumesFromTheSavedCheckpoint() {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(10, 7, 2);
+        assertEquals(new ImportCheckpoint.Snapshot(10, 7, 2, 0), checkpoint.snapshot());
+
+        checkpoint.read(11);
+        checkpoint.read(12);
+        checkpoint.done(12, false);
+        assertEquals(new ImportCheckpoint.Snapshot(10, 7, 2, 2), checkpoint.snapshot());
+
+        checkpoint.done(11, true);
+        assertEquals(new ImportCheckpoint.Snapshot(12, 8, 3, 2), checkpoint.snapshot());
+    }
+}
@@ -0,0 +1,93 @@
+package com.demo.ec.es.application;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.ProductDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalSuggestIndexTest {
+    private static final List<String> TITLES = List.of("apple pie", "apple cider", "apple pie", "green apple");
+
+    private EsServiceProperties properties;
+    private LocalSuggestIndex index;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        ElasticsearchClient client = mock(ElasticsearchClient.class);
+        when(client.search(any(Function.class), eq(ProductDocument.class))).thenReturn(activeProducts(TITLES));
+        properties = new EsServiceProperties();
+        properties.getIndex().setAlias("products");
+        index = new LocalSuggestIndex(client, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void servesTitlesRankedByProductCount() throws Exception {
+        index.requestRebuild();
+        await(() -> index.suggest("app", 10) != null);
+
+        assertEquals(List.of("apple pie", "apple cider", "green apple"), index.suggest("app", 10));
+        assertEquals(List.of("green apple"), index.suggest("gr", 10));
+    }
+
+    @Test
+    void fallsBackToElasticsearchWhenTheTitlesExceedTheBudget() throws Exception {
+        index.requestRebuild();
+        await(() -> index.suggest("app", 10) != null);
+
+        // Room for the first title only: the rebuild gives up and drops the previous index
+        long firstTitle = PrefixSuggester.estimateTitleBytes(TITLES.get(0));
+        properties.getSuggest().getLocal().setMaxMemory(DataSize.ofBytes(firstTitle + 1));
+        index.requestRebuild();
+
+        await(() -> index.suggest("app", 10) == null);
+    }
+
+    // Rebuilds run on the index's own thread
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Local suggest index did not rebuild");
+    }
+
+    // One page, shorter than the batch size, so the load stops after it
+    private static SearchResponse<ProductDocument> activeProducts(List<String> titles) {
+        List<Hit<ProductDocument>> hits = new ArrayList<>();
+        for (int i = 0; i < titles.size(); i++) {
+            long productId = i + 1;
+            ProductDocument document = new ProductDocument(productId, titles.get(i), null, 100L, "ACTIVE", null, null,
+                    null, null, null, null, null);
+            hits.add(Hit.of(h -> h.index("products").id(Long.toString(productId)).source(document).sort(productId)));
+        }
+        return SearchResponse.of(r -> r.took(1).timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.hits(hits)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.demo.ec.es.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixSuggesterTest {
+
+    @Test
+    void ranksByWeightThenTitle() {
+        PrefixSuggester suggester = PrefixSuggester.build(Map.of(
+                "red apple", 3L, "green apple", 10L, "apple pie", 5L, "apple cider", 5L, "banana", 20L));
+
+        assertEquals(List.of("green apple", "apple cider", "apple pie", "red apple"), suggester.suggest("apple", 10));
+        assertEquals(List.of("green apple", "apple cider"), suggester.suggest("apple", 2));
+    }
+
+    @Test
+    void returnsATitleOnceWhenSeveralOfItsWordsMatch() {
+        PrefixSuggester suggester = PrefixSuggester.build(Map.of(
+                "tea tin", 1L, "green tea tea tree", 2L, "teapot", 3L));
+
+        assertEquals(7, suggester.entryCount());
+        assertEquals(List.of("teapot", "green tea tea tree", "tea tin"), suggester.suggest("te", 10));
+        // The size counts titles, not the entries pointing at them
+        assertEquals(List.of("teapot", "green tea tea tree"), suggester.suggest("t", 2));
+    }
+
+    @Test
+    void matchesNormalizedTitlesAndReturnsTheOriginals() {
+        // Full-width letters and digits fold to ASCII under NFKC
+        PrefixSuggester suggester = PrefixSuggester.build(Map.of("ＡＢＣ Phone １２", 1L, "Café Latte", 2L));
+
+        assertEquals(List.of("ＡＢＣ Phone １２"), suggester.suggest("abc", 10));
+        assertEquals(List.of("ＡＢＣ Phone １２"), suggester.suggest("  PHO ", 10));
+        assertEquals(List.of("ＡＢＣ Phone １２"), suggester.suggest("1２", 10));
+        // A decomposed é composes to the indexed form
+        assertEquals(List.of("Café Latte"), suggester.suggest("cafe\u0301", 10));
+    }
+
+    @Test
+    void returnsNothingForAnEmptyRange() {
+        PrefixSuggester suggester = PrefixSuggester.build(Map.of("apple pie", 1L, "apricot jam", 2L));
+
+        assertEquals(List.of(), suggester.suggest("apq", 10));
+        assertEquals(List.of(), suggester.suggest("aa", 10));
+        assertEquals(List.of(), suggester.suggest("zucchini", 10));
+        assertEquals(List.of(), suggester.suggest("apples", 10));
+        assertEquals(List.of(), suggester.suggest("ple", 10));
+        assertEquals(List.of(), suggester.suggest("   ", 10));
+        assertEquals(List.of(), suggester.suggest("apple", 0));
+        assertEquals(List.of(), PrefixSuggester.build(Map.of()).suggest("apple", 10));
+    }
+
+    @Test
+    void titleEstimatesBoundTheBuiltIndex() {
+        Map<String, Long> weights = Map.of("ＡＢＣ Phone １２", 1L, "green tea tea tree", 2L, "apple", 3L);
+        long estimated = 0;
+        for (String title : weights.keySet()) {
+            estimated += PrefixSuggester.estimateTitleBytes(title);
+        }
+
+        long built = PrefixSuggester.build(weights).estimatedBytes();
+        assertTrue(built <= estimated, built + " > " + estimated);
+    }
+}
@@ -0,0 +1,181 @@
+package com.demo.ec.es.web;
+
+import com.demo.ec.es.application.MinioStorageService;
+import com.demo.ec.es.application.ThumbnailCache;
+import com.demo.ec.es.config.EsServiceProperties;
+import com.demo.ec.es.domain.GlobalExceptionHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Serves through a real ThumbnailCache on a temporary directory; MinIO is a mock holding one object.
+class ThumbnailControllerTest {
+    private static final String KEY = "products/1/thumb.jpg";
+    private static final String URL = "/api/images/" + KEY;
+
+    @TempDir
+    Path cacheDir;
+
+    private MinioStorageService minioStorageService;
+    private EsServiceProperties properties;
+    private ThumbnailCache thumbnailCache;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        minioStorageService = mock(MinioStorageService.class);
+        stored("0123456789", "v1");
+        properties = new EsServiceProperties();
+        properties.getThumbnail().getCache().setDir(cacheDir.toString());
+        start();
+    }
+
+    @Test
+    void servesTheWholeImageFromTheCache() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(URL))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"v1\""))
+                    .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=60"))
+                    .andExpect(content().contentType("image/jpeg"))
+                    .andExpect(content().string("0123456789"));
+        }
+
+        verify(minioStorageService, times(1)).downloadTo(eq(KEY), any(Path.class));
+    }
+
+    @Test
+    void answersNotModifiedForAMatchingEtag() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void servesASingleRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void servesASuffixRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+                .andExpect(content().string("789"));
+    }
+
+    @Test
+    void servesTheWholeImageForMultipleRanges() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void ignoresTheRangeWhenIfRangeDoesNotMatch() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, "\"v0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().string("0123456789"));
+
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, "\"v1\""))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void rejectsARangeBeyondTheImage() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-20"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=5-2"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void revalidatesTheEtagAfterRevalidateAfter() throws Exception {
+        properties.getThumbnail().getCache().setRevalidateAfter(Duration.ZERO);
+        start();
+
+        mockMvc.perform(get(URL)).andExpect(header().string(HttpHeaders.ETAG, "\"v1\""));
+        // Unchanged in MinIO: the cached file is kept
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(status().isNotModified());
+        verify(minioStorageService, times(1)).downloadTo(eq(KEY), any(Path.class));
+
+        stored("abcdef", "v2");
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"v2\""))
+                .andExpect(content().string("abcdef"));
+        verify(minioStorageService, times(2)).downloadTo(eq(KEY), any(Path.class));
+    }
+
+    @Test
+    void answersNotFoundForAMissingObject() throws Exception {
+        mockMvc.perform(get("/api/images/products/2/thumb.jpg"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void rejectsFileNamesOutsideTheThumbnailPattern() throws Exception {
+        mockMvc.perform(get("/api/images/products/1/.."))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/images/products/1/thumb.jpg.etag"))
+                .andExpect(status().isBadRequest());
+
+        verify(minioStorageService, never()).downloadTo(any(), any());
+    }
+
+    @Test
+    void cacheRejectsKeysEscapingItsDirectory() {
+        assertThrows(IllegalArgumentException.class, () -> thumbnailCache.get("products/1/../../../outside.jpg"));
+
+        verify(minioStorageService, never()).downloadTo(any(), any());
+    }
+
+    private void start() {
+        thumbnailCache = new ThumbnailCache(minioStorageService, properties, new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ThumbnailController(thumbnailCache))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private void stored(String body, String etag) {
+        // Stubbed with doAnswer, so replacing the object does not run the previous download answer
+        doReturn(etag).when(minioStorageService).etag(KEY);
+        doAnswer(inv -> {
+            Files.writeString(inv.getArgument(1), body, StandardCharsets.US_ASCII);
+            return etag;
+        }).when(minioStorageService).downloadTo(eq(KEY), any(Path.class));
+    }
+}
@@ -2,8 +2,10 @@ package com.demo.ec.storage;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StorageServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(StorageServiceApplication.class, args);
@@ -0,0 +1,279 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.domain.StorageTxStepLog;
+import com.demo.ec.storage.gateway.StorageMapper;
+import com.demo.ec.storage.gateway.StorageTxStepLogMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Group commit for Saga deductions: concurrent deducts of one product are collected for a short window and applied
+// in one transaction. The stock row is locked once, requests are admitted in arrival order while residue lasts,
+// one conditional UPDATE takes the admitted total and their tx_step_log rows are inserted as one batch.
+// Each caller then gets its own result (success, already processed or insufficient stock). If the group
+// transaction fails as a whole, every caller is told to retry on the single-request path, which is idempotent
+// through tx_step_log.
+// Off by default: every deduct waits up to one window before its transaction starts, which only pays off when
+// many orders hit the same product at once. The flush pool (flush-threads) bounds how many products commit
+// groups in parallel.
+@Component
+public class DeductGroupCommitter {
+    private static final Logger log = LoggerFactory.getLogger(DeductGroupCommitter.class);
+
+    private final StorageMapper storageMapper;
+    private final StorageTxStepLogMapper txStepLogMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowMicros;
+    private final int maxBatchSize;
+    private final long awaitTimeoutMillis;
+    private final Map<Long, Batch> open = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final DistributionSummary batchSizes;
+
+    public DeductGroupCommitter(
+            StorageMapper storageMapper,
+            StorageTxStepLogMapper txStepLogMapper,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.saga.group-commit.enabled:false}") boolean enabled,
+            @Value("${app.saga.group-commit.window:2ms}") Duration window,
+            @Value("${app.saga.group-commit.max-batch-size:100}") int maxBatchSize,
+            @Value("${app.saga.group-commit.flush-threads:4}") int flushThreads,
+            @Value("${app.saga.group-commit.await-timeout:5s}") Duration awaitTimeout) {
+        this.storageMapper = storageMapper;
+        this.txStepLogMapper = txStepLogMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.windowMicros = Math.max(TimeUnit.NANOSECONDS.toMicros(window.toNanos()), 0);
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.awaitTimeoutMillis = Math.max(awaitTimeout.toMillis(), 1);
+        AtomicInteger threads = new AtomicInteger();
+        this.flusher = Executors.newScheduledThreadPool(Math.max(flushThreads, 1), r -> {
+            Thread t = new Thread(r, "deduct-group-commit-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.batchSizes = DistributionSummary.builder("storage.saga.deduct.batch.size").register(meterRegistry);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Blocks until the caller's group has been committed, or at most {@code await-timeout}. A caller that times out
+     * gets {@link GroupCommitAbortedException} and retries on the single-request path. That is safe even while its
+     * group is still committing: both insert the same tx_step_log row, so the retry either sees the group's row and
+     * reports the order as already processed, or, if the group rolled back, deducts on its own.
+     */
+    public boolean deduct(Long productId, Integer count, String orderNo) {
+        Request request = new Request(orderNo, count, new CompletableFuture<>());
+        Batch batch = enqueue(productId, request);
+        try {
+            return request.result().get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            // Not yet flushed: leave the group so it does not deduct for an order that is retried elsewhere
+            boolean withdrawn = batch.withdraw(request);
+            log.warn("[SAGA][Storage] group deduct timed out productId={} orderNo={} withdrawn={}",
+                    productId, orderNo, withdrawn);
+            throw new GroupCommitAbortedException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            batch.withdraw(request);
+            throw new GroupCommitAbortedException(ex);
+        }
+    }
+
+    private Batch enqueue(Long productId, Request request) {
+        while (true) {
+            Batch batch = open.computeIfAbsent(productId, this::openBatch);
+            int size = batch.add(request);
+            if (size == maxBatchSize) {
+                flusher.execute(() -> flush(productId, batch));
+            }
+            if (size > 0) {
+                return batch;
+            }
+            // The batch is closed or full; drop the stale mapping and join (or open) the next one
+            open.remove(productId, batch);
+        }
+    }
+
+    private Batch openBatch(Long productId) {
+        Batch batch = new Batch(maxBatchSize);
+        flusher.schedule(() -> flush(productId, batch), windowMicros, TimeUnit.MICROSECONDS);
+        return batch;
+    }
+
+    private void flush(Long productId, Batch batch) {
+        List<Request> requests = batch.close();
+        if (requests == null) {
+            return;
+        }
+        open.remove(productId, batch);
+        if (requests.isEmpty()) {
+            return;
+        }
+        batchSizes.record(requests.size());
+        Map<String, List<Request>> byOrder = requests.stream()
+                .collect(Collectors.groupingBy(Request::orderNo, LinkedHashMap::new, Collectors.toList()));
+        Map<String, Outcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> apply(productId, byOrder));
+        } catch (Exception ex) {
+            log.warn("[SAGA][Storage] group deduct failed, falling back to single deducts productId={} size={} err={}",
+                    productId, requests.size(), ex.toString());
+            GroupCommitAbortedException aborted = new GroupCommitAbortedException(ex);
+            requests.forEach(r -> r.result().completeExceptionally(aborted));
+            return;
+        }
+        // Callers are answered only after the commit
+        byOrder.forEach((orderNo, sameOrder) -> {
+            Outcome outcome = outcomes.get(orderNo);
+            for (Request r : sameOrder) {
+                if (outcome == Outcome.INSUFFICIENT) {
+                    r.result().completeExceptionally(new StorageATServiceImpl.InsufficientStockException(
+                            "Insufficient stock for productId=" + productId + ", count=" + r.count()));
+                } else {
+                    r.result().complete(true);
+                }
+            }
+        });
+    }
+
+    private Map<String, Outcome> apply(Long productId, Map<String, List<Request>> byOrder) {
+        Set<String> processed = txStepLogMapper.selectList(new LambdaQueryWrapper<StorageTxStepLog>()
+                        .select(StorageTxStepLog::getOrderNo)
+                        .eq(StorageTxStepLog::getStep, StorageSagaServiceImpl.STEP_DEDUCT)
+                        .in(StorageTxStepLog::getOrderNo, byOrder.keySet()))
+                .stream()
+                .map(StorageTxStepLog::getOrderNo)
+                .collect(Collectors.toSet());
+        Storage storage = storageMapper.selectOne(new LambdaQueryWrapper<Storage>()
+                .eq(Storage::getProductId, productId)
+                .last("FOR UPDATE"));
+        int available = storage == null || storage.getResidue() == null ? 0 : storage.getResidue();
+
+        Map<String, Outcome> outcomes = new HashMap<>();
+        List<StorageTxStepLog> steps = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<String, List<Request>> entry : byOrder.entrySet()) {
+            String orderNo = entry.getKey();
+            // Retries of one order inside the window count once, with the first request's quantity
+            int count = entry.getValue().get(0).count();
+            if (processed.contains(orderNo)) {
+                outcomes.put(orderNo, Outcome.ALREADY_PROCESSED);
+            } else if (count <= available - total) {
+                total += count;
+                steps.add(doneStep(orderNo));
+                outcomes.put(orderNo, Outcome.DEDUCTED);
+            } else {
+                outcomes.put(orderNo, Outcome.INSUFFICIENT);
+            }
+        }
+        if (total > 0) {
+            LambdaUpdateWrapper<Storage> uw = new LambdaUpdateWrapper<>();
+            uw.eq(Storage::getProductId, productId)
+              .ge(Storage::getResidue, total)
+              .setSql("used = used + " + total)
+              .setSql("residue = residue - " + total);
+            if (storageMapper.update(null, uw) == 0) {
+                throw new IllegalStateException("Stock changed under row lock for productId=" + productId);
+            }
+            txStepLogMapper.insert(steps);
+        }
+        log.info("[SAGA][Storage] group deduct productId={} orders={} deducted={} total={}",
+                productId, byOrder.size(), steps.size(), total);
+        return outcomes;
+    }
+
+    private static StorageTxStepLog doneStep(String orderNo) {
+        StorageTxStepLog step = new StorageTxStepLog();
+        step.setOrderNo(orderNo);
+        step.setStep(StorageSagaServiceImpl.STEP_DEDUCT);
+        step.setStatus("DONE");
+        return step;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+
+    public static class GroupCommitAbortedException extends RuntimeException {
+        public GroupCommitAbortedException(Throwable cause) {
+            super("Group deduct aborted", cause);
+        }
+    }
+
+    private enum Outcome {
+        DEDUCTED, ALREADY_PROCESSED, INSUFFICIENT
+    }
+
+    private record Request(String orderNo, int count, CompletableFuture<Boolean> result) {
+    }
+
+    private static final class Batch {
+        private final int maxSize;
+        private final List<Request> requests = new ArrayList<>();
+        private boolean closed;
+
+        Batch(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        // Returns the batch size after adding, or 0 when the batch is closed or full.
+        synchronized int add(Request request) {
+            if (closed || requests.size() >= maxSize) {
+                return 0;
+            }
+            requests.add(request);
+            return requests.size();
+        }
+
+        // Removes a request that timed out; false once the batch has been handed to a flush.
+        synchronized boolean withdraw(Request request) {
+            return !closed && requests.remove(request);
+        }
+
+        // Hands the collected requests to the first caller only.
+        synchronized List<Request> close() {
+            if (closed) {
+                return null;
+            }
+            closed = true;
+            return requests;
+        }
+    }
+}
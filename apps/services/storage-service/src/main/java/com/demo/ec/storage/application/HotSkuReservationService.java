@@ -0,0 +1,232 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.gateway.StorageMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Hot-SKU mode for Saga reservations: stock of flagged products lives in Redis and each reserve/compensate is
+// decided by one Lua script, so a flash sale no longer queues on the t_storage row lock.
+// Every accepted change is appended to a per-product journal that HotSkuWriteBehind applies to t_storage in
+// batches, using tx_step_log rows as the idempotency record. Per-order markers in Redis make retries and
+// out-of-order compensations safe before the journal has been flushed.
+// Flagged products must only be changed through the Saga path while flagged (AT/TCC and manual edits bypass Redis),
+// and their journal should be drained before a product is unflagged. Redis needs persistence (AOF) in this mode:
+// unflushed journal entries exist only there.
+@Service
+public class HotSkuReservationService {
+    private static final Logger log = LoggerFactory.getLogger(HotSkuReservationService.class);
+
+    static final String STEP_DEDUCT = "STORAGE_DEDUCT";
+    static final String STEP_COMPENSATE = "STORAGE_COMPENSATE";
+
+    // KEYS: stock, journal, deduct marker, compensate marker. ARGV: count, orderNo, marker ttl seconds.
+    // Returns 1 reserved, 0 insufficient, 2 already handled for this order, -1 stock not seeded yet.
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[3]) == 1 or redis.call('EXISTS', KEYS[4]) == 1 then
+              return 2
+            end
+            local stock = redis.call('GET', KEYS[1])
+            if not stock then
+              return -1
+            end
+            if tonumber(stock) < tonumber(ARGV[1]) then
+              return 0
+            end
+            redis.call('DECRBY', KEYS[1], ARGV[1])
+            redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[3])
+            redis.call('RPUSH', KEYS[2], 'STORAGE_DEDUCT|' .. ARGV[2] .. '|' .. ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Restores exactly what the order reserved. A compensation that arrives before (or without) its reservation is
+    // only recorded, which also makes a late reservation for the same order a no-op. Without a stock key the
+    // restore is journaled only, and the next seed reads it from t_storage once the journal has been flushed.
+    // Returns 1 restored, 2 already compensated, 3 nothing was reserved.
+    private static final RedisScript<Long> COMPENSATE = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[4]) == 1 then
+              return 2
+            end
+            redis.call('SET', KEYS[4], ARGV[1], 'EX', ARGV[3])
+            local reserved = redis.call('GET', KEYS[3])
+            if not reserved then
+              return 3
+            end
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+              redis.call('INCRBY', KEYS[1], reserved)
+            end
+            redis.call('RPUSH', KEYS[2], 'STORAGE_COMPENSATE|' .. ARGV[2] .. '|' .. reserved)
+            return 1
+            """, Long.class);
+
+    // Seeds the Redis stock from t_storage. An empty journal means the row already reflects every Redis change, as
+    // long as the residue was read under the flush lock: otherwise a flush could commit and trim in between, and
+    // the stale residue would be seeded. Returns 1 seeded, 0 already present, -1 journal not yet flushed.
+    private static final RedisScript<Long> SEED = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+              return 0
+            end
+            if redis.call('LLEN', KEYS[2]) > 0 then
+              return -1
+            end
+            redis.call('SET', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final StorageMapper storageMapper;
+    private final Set<Long> productIds;
+    private final long markerTtlSeconds;
+    private final Duration flushLockTtl;
+    private final Counter reserved;
+    private final Counter insufficient;
+    private final Counter duplicate;
+    private final Counter compensated;
+
+    public HotSkuReservationService(
+            StringRedisTemplate redisTemplate,
+            StorageMapper storageMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.hot-sku.enabled:false}") boolean enabled,
+            @Value("${app.hot-sku.product-ids:}") String productIds,
+            @Value("${app.hot-sku.marker-ttl:7d}") Duration markerTtl,
+            @Value("${app.hot-sku.flush-lock-ttl:30s}") Duration flushLockTtl) {
+        this.redisTemplate = redisTemplate;
+        this.storageMapper = storageMapper;
+        this.productIds = enabled ? parseIds(productIds) : Set.of();
+        this.markerTtlSeconds = Math.max(markerTtl.toSeconds(), 1);
+        this.flushLockTtl = flushLockTtl;
+        this.reserved = reservations(meterRegistry, "reserved");
+        this.insufficient = reservations(meterRegistry, "insufficient");
+        this.duplicate = reservations(meterRegistry, "duplicate");
+        this.compensated = reservations(meterRegistry, "compensated");
+        if (!this.productIds.isEmpty()) {
+            log.info("Hot-SKU reservation enabled productIds={}", this.productIds);
+        }
+    }
+
+    public boolean handles(Long productId) {
+        return productIds.contains(productId);
+    }
+
+    public Set<Long> productIds() {
+        return productIds;
+    }
+
+    public boolean reserve(Long productId, Integer count, String orderNo) {
+        requireOrderNo(orderNo);
+        Long result = runReserve(productId, count, orderNo);
+        if (result == -1) {
+            seed(productId);
+            result = runReserve(productId, count, orderNo);
+        }
+        if (result == 0) {
+            insufficient.increment();
+            log.warn("[SAGA][Storage][HOT] reserve insufficient stock orderNo={} productId={} count={}", orderNo, productId, count);
+            throw new StorageATServiceImpl.InsufficientStockException("Insufficient stock for productId=" + productId + ", count=" + count);
+        }
+        if (result == 2) {
+            duplicate.increment();
+            log.info("[SAGA][Storage][HOT] reserve already processed. orderNo={}", orderNo);
+            return true;
+        }
+        if (result != 1) {
+            throw new IllegalStateException("Hot-SKU stock unavailable for productId=" + productId);
+        }
+        reserved.increment();
+        return true;
+    }
+
+    public boolean compensate(Long productId, Integer count, String orderNo) {
+        requireOrderNo(orderNo);
+        Long result = redisTemplate.execute(COMPENSATE, keys(productId, orderNo),
+                String.valueOf(count), orderNo, String.valueOf(markerTtlSeconds));
+        if (Objects.equals(result, 1L)) {
+            compensated.increment();
+        } else {
+            log.info("[SAGA][Storage][HOT] compensate without pending reservation orderNo={} result={}", orderNo, result);
+        }
+        return true;
+    }
+
+    static String stockKey(Long productId) {
+        // Hash tag keeps every key of one product in the same cluster slot, as the scripts require
+        return "hot-sku:{" + productId + "}:stock";
+    }
+
+    static String journalKey(Long productId) {
+        return "hot-sku:{" + productId + "}:journal";
+    }
+
+    static String flushLockKey(Long productId) {
+        return "hot-sku:{" + productId + "}:flush-lock";
+    }
+
+    private Long runReserve(Long productId, Integer count, String orderNo) {
+        Long result = redisTemplate.execute(RESERVE, keys(productId, orderNo),
+                String.valueOf(count), orderNo, String.valueOf(markerTtlSeconds));
+        return result == null ? -1L : result;
+    }
+
+    // Holds the write-behind flush lock from reading the residue until the stock is seeded. While a flush runs the
+    // stock stays unseeded and the reservation fails, as it does while the journal is not yet flushed.
+    private void seed(Long productId) {
+        RelayLock flushLock = new RelayLock(redisTemplate, flushLockKey(productId), flushLockTtl);
+        if (!flushLock.tryAcquire()) {
+            log.info("Hot-SKU stock not seeded, journal flush in progress productId={}", productId);
+            return;
+        }
+        try {
+            Storage storage = storageMapper.selectOne(
+                    new LambdaQueryWrapper<Storage>().eq(Storage::getProductId, productId));
+            if (storage == null || storage.getResidue() == null) {
+                return;
+            }
+            Long result = redisTemplate.execute(SEED, List.of(stockKey(productId), journalKey(productId)),
+                    String.valueOf(storage.getResidue()));
+            if (Objects.equals(result, 1L)) {
+                log.info("Hot-SKU stock seeded productId={} residue={}", productId, storage.getResidue());
+            }
+        } finally {
+            flushLock.release();
+        }
+    }
+
+    private List<String> keys(Long productId, String orderNo) {
+        String prefix = "hot-sku:{" + productId + "}:order:" + orderNo + ":";
+        return List.of(stockKey(productId), journalKey(productId), prefix + STEP_DEDUCT, prefix + STEP_COMPENSATE);
+    }
+
+    private static void requireOrderNo(String orderNo) {
+        if (orderNo == null || orderNo.trim().isEmpty()) {
+            throw new IllegalArgumentException("orderNo must not be blank");
+        }
+    }
+
+    private static Counter reservations(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("storage.hot_sku.reservations").tag("result", result).register(meterRegistry);
+    }
+
+    private static Set<Long> parseIds(String productIds) {
+        return Arrays.stream(productIds.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Long::valueOf)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,149 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.domain.StorageTxStepLog;
+import com.demo.ec.storage.gateway.StorageMapper;
+import com.demo.ec.storage.gateway.StorageTxStepLogMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+// Applies the hot-SKU journals to t_storage in batches.
+// Each batch runs in one transaction: a tx_step_log row is inserted per entry and only entries whose row is new
+// count towards the single residue/used update, so a batch replayed after a crash between commit and LTRIM
+// changes nothing. A per-product Redis lock keeps two instances from trimming the same journal.
+@Component
+public class HotSkuWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(HotSkuWriteBehind.class);
+
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final HotSkuReservationService hotSkuReservationService;
+    private final StorageMapper storageMapper;
+    private final StorageTxStepLogMapper txStepLogMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration lockTtl;
+    private final String owner = UUID.randomUUID().toString();
+    private final Counter flushed;
+    private final Counter replayed;
+
+    public HotSkuWriteBehind(
+            HotSkuReservationService hotSkuReservationService,
+            StorageMapper storageMapper,
+            StorageTxStepLogMapper txStepLogMapper,
+            StringRedisTemplate redisTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.hot-sku.flush-batch-size:500}") int batchSize,
+            @Value("${app.hot-sku.flush-lock-ttl:30s}") Duration lockTtl) {
+        this.hotSkuReservationService = hotSkuReservationService;
+        this.storageMapper = storageMapper;
+        this.txStepLogMapper = txStepLogMapper;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(batchSize, 1);
+        this.lockTtl = lockTtl;
+        this.flushed = Counter.builder("storage.hot_sku.flushed").register(meterRegistry);
+        this.replayed = Counter.builder("storage.hot_sku.replayed").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.hot-sku.flush-interval-ms:200}")
+    public void flush() {
+        for (Long productId : hotSkuReservationService.productIds()) {
+            String lockKey = HotSkuReservationService.flushLockKey(productId);
+            Boolean locked = null;
+            try {
+                locked = redisTemplate.opsForValue().setIfAbsent(lockKey, owner, lockTtl);
+                if (Boolean.TRUE.equals(locked)) {
+                    flush(productId);
+                }
+            } catch (Exception ex) {
+                log.warn("Hot-SKU write-behind failed productId={} err={}", productId, ex.toString());
+            } finally {
+                if (Boolean.TRUE.equals(locked)) {
+                    redisTemplate.execute(UNLOCK, List.of(lockKey), owner);
+                }
+            }
+        }
+    }
+
+    private void flush(Long productId) {
+        String journalKey = HotSkuReservationService.journalKey(productId);
+        List<String> entries;
+        do {
+            entries = redisTemplate.opsForList().range(journalKey, 0, batchSize - 1);
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+            List<String> batch = entries;
+            Integer delta = transactionTemplate.execute(status -> apply(productId, batch));
+            redisTemplate.opsForList().trim(journalKey, batch.size(), -1);
+            log.info("Hot-SKU journal flushed productId={} entries={} delta={}", productId, batch.size(), delta);
+        } while (entries.size() == batchSize);
+    }
+
+    // Returns the net units taken from stock by the entries that were not applied before.
+    private int apply(Long productId, List<String> entries) {
+        int delta = 0;
+        for (String entry : entries) {
+            JournalEntry parsed = JournalEntry.parse(entry);
+            if (!recordStep(parsed)) {
+                replayed.increment();
+                continue;
+            }
+            delta += HotSkuReservationService.STEP_DEDUCT.equals(parsed.step()) ? parsed.count() : -parsed.count();
+            flushed.increment();
+        }
+        if (delta != 0) {
+            LambdaUpdateWrapper<Storage> uw = new LambdaUpdateWrapper<>();
+            uw.eq(Storage::getProductId, productId)
+              .setSql("used = used + " + delta)
+              .setSql("residue = residue - " + delta);
+            storageMapper.update(null, uw);
+        }
+        return delta;
+    }
+
+    private boolean recordStep(JournalEntry entry) {
+        StorageTxStepLog logEntry = new StorageTxStepLog();
+        logEntry.setOrderNo(entry.orderNo());
+        logEntry.setStep(entry.step());
+        logEntry.setStatus("DONE");
+        try {
+            return txStepLogMapper.insert(logEntry) == 1;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    // "<step>|<orderNo>|<count>", as written by the HotSkuReservationService scripts
+    private record JournalEntry(String step, String orderNo, int count) {
+        static JournalEntry parse(String entry) {
+            int first = entry.indexOf('|');
+            int last = entry.lastIndexOf('|');
+            return new JournalEntry(entry.substring(0, first), entry.substring(first + 1, last),
+                    Integer.parseInt(entry.substring(last + 1)));
+        }
+    }
+}
@@ -2,66 +2,173 @@ package com.demo.ec.storage.application;
 
 import com.demo.ec.storage.web.dto.ProductResponse;
 import com.demo.ec.storage.domain.Product;
-import com.demo.ec.storage.gateway.ProductMapper;
+import com.demo.ec.storage.gateway.messaging.redis.ProductCacheInvalidation;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
-// Redis-backed cache for product master data with DB preload support.
+// Two-level cache for product master data with preload support: an in-JVM near-cache (L1) in front of Redis (L2).
+// Every write goes to Redis first and is then announced on the invalidation channel so other instances drop their
+// L1 copy and re-read Redis on the next lookup.
 @Service
 public class ProductCacheService {
     private static final Logger log = LoggerFactory.getLogger(ProductCacheService.class);
     private static final String KEY_PREFIX = "product:";
 
     private final RedisTemplate<String, ProductResponse> redisTemplate;
-    private final ProductMapper productMapper;
+    private final ProductNearCache nearCache;
+    private final ProductCacheInvalidation invalidation;
     private final Duration ttl;
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong redisMisses = new AtomicLong();
 
     public ProductCacheService(
             RedisTemplate<String, ProductResponse> redisTemplate,
-            ProductMapper productMapper,
+            ProductNearCache nearCache,
+            ProductCacheInvalidation invalidation,
+            MeterRegistry meterRegistry,
             @Value("${app.product-cache.ttl-seconds:1800}") long ttlSeconds) {
         this.redisTemplate = redisTemplate;
-        this.productMapper = productMapper;
+        this.nearCache = nearCache;
+        this.invalidation = invalidation;
         this.ttl = Duration.ofSeconds(ttlSeconds);
+        ProductNearCache.ProductCacheMetrics.register(meterRegistry, "redis", redisHits, redisMisses);
     }
 
     public Optional<ProductResponse> get(Long productId) {
+        ProductResponse local = nearCache.get(productId);
+        if (local != null) {
+            return Optional.of(local);
+        }
+        long readSequence = nearCache.sequence();
         try {
             ProductResponse cached = redisTemplate.opsForValue().get(key(productId));
-            return Optional.ofNullable(cached);
+            if (cached == null) {
+                redisMisses.incrementAndGet();
+                return Optional.empty();
+            }
+            redisHits.incrementAndGet();
+            nearCache.fill(cached, readSequence);
+            return Optional.of(cached);
         } catch (Exception ex) {
+            redisMisses.incrementAndGet();
             log.warn("Product cache read failed productId={} err={}", productId, ex.getMessage());
             return Optional.empty();
         }
     }
 
+    // Local hits first, then one MGET for the rest. Missing products are absent from the result.
+    public Map<Long, ProductResponse> getAll(Collection<Long> productIds) {
+        Map<Long, ProductResponse> found = new LinkedHashMap<>();
+        List<Long> remote = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductResponse local = nearCache.get(productId);
+            if (local != null) {
+                found.put(productId, local);
+            } else {
+                remote.add(productId);
+            }
+        }
+        if (remote.isEmpty()) {
+            return found;
+        }
+        long readSequence = nearCache.sequence();
+        try {
+            List<ProductResponse> cached = redisTemplate.opsForValue().multiGet(remote.stream().map(this::key).toList());
+            for (int i = 0; i < remote.size(); i++) {
+                ProductResponse product = cached == null ? null : cached.get(i);
+                if (product == null) {
+                    redisMisses.incrementAndGet();
+                    continue;
+                }
+                redisHits.incrementAndGet();
+                nearCache.fill(product, readSequence);
+                found.put(remote.get(i), product);
+            }
+        } catch (Exception ex) {
+            redisMisses.addAndGet(remote.size());
+            log.warn("Product cache batch read failed count={} err={}", remote.size(), ex.getMessage());
+        }
+        return found;
+    }
+
     public void put(ProductResponse product) {
         if (product == null || product.getId() == null) {
             return;
         }
+        write(product);
+        nearCache.put(product);
+        invalidation.publish(product.getId());
+    }
+
+    // Writes the batch in one pipeline and announces it in one invalidation message.
+    public void putAll(Collection<ProductResponse> products) {
+        List<ProductResponse> valid = products.stream().filter(p -> p != null && p.getId() != null).toList();
+        if (valid.isEmpty()) {
+            return;
+        }
         try {
-            redisTemplate.opsForValue().set(key(product.getId()), product, ttl);
+            writePipelined(valid, 0);
         } catch (Exception ex) {
-            log.warn("Product cache write failed productId={} err={}", product.getId(), ex.getMessage());
+            log.warn("Product cache batch write failed count={} err={}", valid.size(), ex.getMessage());
         }
+        valid.forEach(nearCache::put);
+        invalidation.publish(valid.stream().map(ProductResponse::getId).toList());
+    }
+    // Called by ProductChangeRelay so that cached copies follow product master updates.
+    public void refresh(List<Product> products) {
+        putAll(products.stream().map(this::toResponse).toList());
     }
 
-    public void preloadAll() {
-        try {
-            List<Product> products = productMapper.selectList(null);
-            for (Product product : products) {
-                put(toResponse(product));
+    // Writes one preload page in a single pipeline. TTLs are spread over ttl..ttl+jitter so that keys preloaded
+    // together do not all expire together. Failures are left to the caller, which counts them per page.
+    public void preload(List<Product> products, long ttlJitterSeconds) {
+        writePipelined(products.stream().map(this::toResponse).toList(), ttlJitterSeconds);
+    }
+
+    // Drops every instance's near-cache after a preload with one broadcast instead of one message per product.
+    public void preloadCompleted() {
+        nearCache.clear();
+        invalidation.publishAll();
+    }
+
+    private void writePipelined(List<ProductResponse> products, long ttlJitterSeconds) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, ProductResponse> ops = (RedisOperations<String, ProductResponse>) operations;
+                for (ProductResponse product : products) {
+                    Duration expiry = ttlJitterSeconds > 0
+                            ? ttl.plusSeconds(ThreadLocalRandom.current().nextLong(ttlJitterSeconds + 1))
+                            : ttl;
+                    ops.opsForValue().set(key(product.getId()), product, expiry);
+                }
+                return null;
             }
-            log.info("Product cache preload complete size={}", products.size());
+        });
+    }
+
+    private void write(ProductResponse product) {
+        try {
+            redisTemplate.opsForValue().set(key(product.getId()), product, ttl);
         } catch (Exception ex) {
-            log.warn("Product cache preload failed err={}", ex.getMessage());
+            log.warn("Product cache write failed productId={} err={}", product.getId(), ex.getMessage());
         }
     }
 
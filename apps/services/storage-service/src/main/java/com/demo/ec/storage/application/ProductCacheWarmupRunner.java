@@ -1,21 +1,170 @@
 package com.demo.ec.storage.application;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.demo.ec.storage.domain.Product;
+import com.demo.ec.storage.gateway.ProductMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 // Application startup hook that preloads product data into Redis.
+// Products are read in product_id keyset pages so only a few pages are in memory at a time; each page is written
+// in one Redis pipeline, with at most `concurrency` pages in flight. The preload runs in the background and the
+// readiness group reports OUT_OF_SERVICE until it has finished, failed or timed out; lookups during the preload
+// simply fall through to the DB.
 @Component
-public class ProductCacheWarmupRunner implements ApplicationRunner {
+public class ProductCacheWarmupRunner implements ApplicationRunner, HealthIndicator {
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheWarmupRunner.class);
 
+    private final ProductMapper productMapper;
     private final ProductCacheService productCacheService;
+    private final boolean enabled;
+    private final int pageSize;
+    private final int concurrency;
+    private final long ttlJitterSeconds;
+    private final Duration timeout;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ExecutorService writers;
+    private volatile boolean completed;
 
-    public ProductCacheWarmupRunner(ProductCacheService productCacheService) {
+    public ProductCacheWarmupRunner(
+            ProductMapper productMapper,
+            ProductCacheService productCacheService,
+            MeterRegistry meterRegistry,
+            @Value("${app.product-cache.warmup.enabled:true}") boolean enabled,
+            @Value("${app.product-cache.warmup.page-size:1000}") int pageSize,
+            @Value("${app.product-cache.warmup.concurrency:4}") int concurrency,
+            @Value("${app.product-cache.warmup.ttl-jitter-seconds:300}") long ttlJitterSeconds,
+            @Value("${app.product-cache.warmup.timeout:5m}") Duration timeout) {
+        this.productMapper = productMapper;
         this.productCacheService = productCacheService;
+        this.enabled = enabled;
+        this.pageSize = Math.max(pageSize, 1);
+        this.concurrency = Math.max(concurrency, 1);
+        this.ttlJitterSeconds = Math.max(ttlJitterSeconds, 0);
+        this.timeout = timeout;
+        AtomicInteger threads = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(this.concurrency, r -> {
+            Thread t = new Thread(r, "product-cache-warmup-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        FunctionCounter.builder("product.cache.warmup.loaded", loaded, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        FunctionCounter.builder("product.cache.warmup.failed", failed, AtomicLong::doubleValue)
+                .register(meterRegistry);
+        Gauge.builder("product.cache.warmup.total", total, AtomicLong::doubleValue).register(meterRegistry);
+        Gauge.builder("product.cache.warmup.progress", this, ProductCacheWarmupRunner::progress)
+                .register(meterRegistry);
     }
 
     @Override
     public void run(ApplicationArguments args) {
-        productCacheService.preloadAll();
+        if (!enabled) {
+            completed = true;
+            writers.shutdown();
+            return;
+        }
+        Thread reader = new Thread(this::preload, "product-cache-warmup");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = completed ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("total", total.get())
+                .withDetail("loaded", loaded.get())
+                .withDetail("failed", failed.get())
+                .build();
+    }
+
+    private void preload() {
+        long started = System.nanoTime();
+        long deadline = started + timeout.toNanos();
+        Semaphore inFlight = new Semaphore(concurrency);
+        try {
+            total.set(productMapper.selectCount(null));
+            long lastId = 0L;
+            List<Product> page;
+            do {
+                page = productMapper.selectList(pageAfter(lastId));
+                if (page.isEmpty()) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+                if (!inFlight.tryAcquire(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                    log.warn("Product cache preload timed out after loaded={} of total={}", loaded.get(), total.get());
+                    return;
+                }
+                List<Product> batch = page;
+                writers.execute(() -> {
+                    try {
+                        productCacheService.preload(batch, ttlJitterSeconds);
+                        loaded.addAndGet(batch.size());
+                    } catch (Exception ex) {
+                        failed.addAndGet(batch.size());
+                        log.warn("Product cache preload page failed size={} err={}", batch.size(), ex.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } while (page.size() == pageSize);
+            // Wait for the pages still being written
+            if (inFlight.tryAcquire(concurrency, Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                inFlight.release(concurrency);
+            }
+            productCacheService.preloadCompleted();
+            log.info("Product cache preload complete total={} loaded={} failed={} tookMs={}", total.get(),
+                    loaded.get(), failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.warn("Product cache preload failed err={}", ex.getMessage());
+        } finally {
+            completed = true;
+            writers.shutdown();
+        }
+    }
+
+    private LambdaQueryWrapper<Product> pageAfter(long lastId) {
+        return new LambdaQueryWrapper<Product>()
+                .select(Product::getId, Product::getCategoryId, Product::getName, Product::getDescription,
+                        Product::getImageUrl, Product::getPrice)
+                .gt(Product::getId, lastId)
+                .orderByAsc(Product::getId)
+                .last("LIMIT " + pageSize);
+    }
+
+    private double progress() {
+        long t = total.get();
+        return t == 0 ? (completed ? 1.0 : 0.0) : Math.min((double) (loaded.get() + failed.get()) / t, 1.0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
     }
 }
@@ -7,6 +7,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 // Product catalog read service with Redis cache lookup before DB fallback.
@@ -37,6 +42,33 @@ public class ProductCatalogService {
         return Optional.of(response);
     }
 
+    // Batch lookup: one cache round-trip for all ids, one IN query for the misses, one pipelined backfill.
+    // Results follow the request order; unknown ids are left out.
+    public List<ProductResponse> findByIds(Collection<Long> productIds) {
+        List<Long> ids = productIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductResponse> found = productCacheService.getAll(ids);
+        List<Long> misses = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!misses.isEmpty()) {
+            List<ProductResponse> loaded = productMapper.selectBatchIds(misses).stream().map(this::toResponse).toList();
+            loaded.forEach(product -> found.put(product.getId(), product));
+            productCacheService.putAll(loaded);
+            if (loaded.size() < misses.size()) {
+                log.debug("Products not found in storage DB: {}", misses.size() - loaded.size());
+            }
+        }
+        List<ProductResponse> result = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            ProductResponse product = found.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
     private ProductResponse toResponse(Product product) {
         return new ProductResponse(
                 product.getId(),
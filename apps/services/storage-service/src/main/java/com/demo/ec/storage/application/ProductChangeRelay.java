@@ -0,0 +1,135 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.demo.ec.storage.domain.Product;
+import com.demo.ec.storage.gateway.ProductMapper;
+import com.demo.ec.storage.gateway.messaging.kafka.ProductEventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Relays t_product changes to Kafka by polling update_time, so the search index follows the product master.
+// Rows are read in (update_time, product_id) order after a persisted watermark; the watermark only advances
+// once the broker has acknowledged the batch, so a failed publish is retried on the next poll.
+// Rows newer than settle-time are left for the next poll to avoid skipping transactions that commit late
+// with an earlier update_time. Deleted rows are not detected; products are retired by changing status.
+// Relayed rows are also written through the product cache, which invalidates every instance's near-cache.
+// Only the instance holding the Redis relay lock polls, and the watermark is re-read from Redis on each poll.
+@Component
+public class ProductChangeRelay {
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeRelay.class);
+    private static final String WATERMARK_KEY = "product-events:watermark";
+    private static final String LOCK_KEY = "product-events:relay-lock";
+
+    private final ProductMapper productMapper;
+    private final ProductEventPublisher productEventPublisher;
+    private final ProductCacheService productCacheService;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration settleTime;
+    private final long sendTimeoutMs;
+    private final RelayLock lock;
+
+    public ProductChangeRelay(
+            ProductMapper productMapper,
+            ProductEventPublisher productEventPublisher,
+            ProductCacheService productCacheService,
+            StringRedisTemplate redisTemplate,
+            @Value("${app.product-events.enabled:true}") boolean enabled,
+            @Value("${app.product-events.batch-size:500}") int batchSize,
+            @Value("${app.product-events.settle-time:2s}") Duration settleTime,
+            @Value("${app.product-events.send-timeout-ms:10000}") long sendTimeoutMs,
+            @Value("${app.product-events.lock-ttl:30s}") Duration lockTtl) {
+        this.productMapper = productMapper;
+        this.productEventPublisher = productEventPublisher;
+        this.productCacheService = productCacheService;
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(batchSize, 1);
+        this.settleTime = settleTime;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.lock = new RelayLock(redisTemplate, LOCK_KEY, lockTtl);
+    }
+
+    @Scheduled(fixedDelayString = "${app.product-events.poll-interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        Watermark watermark = null;
+        boolean locked = false;
+        try {
+            locked = lock.tryAcquire();
+            if (!locked) {
+                return;
+            }
+            // Read every poll: the last run may have been on another instance
+            watermark = loadWatermark();
+            List<Product> changed;
+            do {
+                changed = productMapper.selectList(changedSince(watermark));
+                if (changed.isEmpty()) {
+                    return;
+                }
+                productEventPublisher.publishChanged(changed, sendTimeoutMs);
+                productCacheService.refresh(changed);
+                Product last = changed.get(changed.size() - 1);
+                watermark = new Watermark(last.getUpdatedAt(), last.getId());
+                saveWatermark(watermark);
+                log.info("Product changes relayed count={} watermark={}", changed.size(), watermark);
+                if (!lock.renew()) {
+                    log.warn("Product change relay lost its lock, stopping at watermark={}", watermark);
+                    return;
+                }
+            } while (changed.size() == batchSize);
+        } catch (Exception ex) {
+            log.warn("Product change relay failed, retrying from watermark={} err={}", watermark, ex.toString());
+        } finally {
+            if (locked) {
+                lock.release();
+            }
+        }
+    }
+
+    private LambdaQueryWrapper<Product> changedSince(Watermark mark) {
+        return new LambdaQueryWrapper<Product>()
+                .and(w -> w.gt(Product::getUpdatedAt, mark.updatedAt())
+                        .or(o -> o.eq(Product::getUpdatedAt, mark.updatedAt()).gt(Product::getId, mark.productId())))
+                .apply("update_time <= DATE_SUB(NOW(), INTERVAL {0} SECOND)", settleTime.toSeconds())
+                .orderByAsc(Product::getUpdatedAt, Product::getId)
+                .last("LIMIT " + batchSize);
+    }
+
+    // Without a stored watermark only changes from now on are relayed; the initial load is the CSV import.
+    private Watermark loadWatermark() {
+        String stored = redisTemplate.opsForValue().get(WATERMARK_KEY);
+        if (stored != null) {
+            String[] parts = stored.split("\\|", 2);
+            return new Watermark(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        }
+        Product latest = productMapper.selectOne(new LambdaQueryWrapper<Product>()
+                .orderByDesc(Product::getUpdatedAt, Product::getId)
+                .last("LIMIT 1"));
+        Watermark initial = latest == null || latest.getUpdatedAt() == null
+                ? new Watermark(LocalDateTime.of(1970, 1, 1, 0, 0), 0L)
+                : new Watermark(latest.getUpdatedAt(), latest.getId());
+        saveWatermark(initial);
+        log.info("Product change relay starting from watermark={}", initial);
+        return initial;
+    }
+
+    private void saveWatermark(Watermark mark) {
+        redisTemplate.opsForValue().set(WATERMARK_KEY, mark.updatedAt() + "|" + mark.productId());
+    }
+
+    private record Watermark(LocalDateTime updatedAt, long productId) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.demo.ec.storage.application;
+
+import com.demo.ec.storage.web.dto.ProductResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-JVM LRU near-cache in front of the Redis product cache.
+// Other instances' writes reach it as pub/sub invalidations (see ProductCacheInvalidation). Every write and
+// invalidation is stamped with a sequence number, and an invalidation leaves a tombstone, so a lookup that read
+// Redis before a newer write or invalidation of the same product was seen does not put the older copy back (fill).
+// The TTL bounds staleness for what this cannot see: messages dropped while the subscription reconnects and
+// changes that reach Redis without a message.
+@Component
+public class ProductNearCache {
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Map<Long, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Guarded by entries, like the map itself
+    private long sequence;
+    private long droppedSequence;
+
+    public ProductNearCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.product-cache.local.enabled:true}") boolean enabled,
+            @Value("${app.product-cache.local.max-entries:10000}") int maxEntries,
+            @Value("${app.product-cache.local.ttl:60s}") Duration ttl) {
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        int capacity = Math.max(maxEntries, 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > capacity) {
+                    dropped(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        ProductCacheMetrics.register(meterRegistry, "local", hits, misses);
+        Gauge.builder("product.cache.local.size", this, ProductNearCache::size).register(meterRegistry);
+    }
+
+    public ProductResponse get(Long productId) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(productId);
+            if (entry != null && entry.expiresAt() > now) {
+                if (entry.value() != null) {
+                    hits.incrementAndGet();
+                    return entry.value();
+                }
+            } else if (entry != null) {
+                entries.remove(productId);
+                dropped(entry);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // Taken before reading Redis and handed to fill, which then knows whether anything newer was seen meanwhile.
+    public long sequence() {
+        synchronized (entries) {
+            return sequence;
+        }
+    }
+
+    // A write by this instance: always replaces the local copy.
+    public void put(ProductResponse product) {
+        if (!enabled || product == null || product.getId() == null) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (entries) {
+            entries.put(product.getId(), new Entry(product, ++sequence, expiresAt));
+        }
+    }
+
+    // A copy read from Redis after sequence() returned readSequence. Skipped when this product was written or
+    // invalidated (or the cache cleared, or a newer entry evicted) since then, since the copy may predate that.
+    public void fill(ProductResponse product, long readSequence) {
+        if (!enabled || product == null || product.getId() == null) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (entries) {
+            Entry current = entries.get(product.getId());
+            if (droppedSequence > readSequence || (current != null && current.sequence() > readSequence)) {
+                return;
+            }
+            entries.put(product.getId(), new Entry(product, readSequence, expiresAt));
+        }
+    }
+
+    public void invalidate(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (entries) {
+            entries.put(productId, new Entry(null, ++sequence, expiresAt));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            droppedSequence = ++sequence;
+        }
+    }
+
+    // Forgetting an entry also forgets its sequence, so fills that started before it must be refused.
+    private void dropped(Entry entry) {
+        droppedSequence = Math.max(droppedSequence, entry.sequence());
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // value is null for a tombstone left by invalidate
+    private record Entry(ProductResponse value, long sequence, long expiresAt) {
+    }
+
+    // Per-layer request counters plus the lifetime hit ratio, tagged by layer (local, redis).
+    static final class ProductCacheMetrics {
+        private ProductCacheMetrics() {
+        }
+
+        static void register(MeterRegistry meterRegistry, String layer, AtomicLong hits, AtomicLong misses) {
+            FunctionCounter.builder("product.cache.requests", hits, AtomicLong::doubleValue)
+                    .tag("layer", layer)
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("product.cache.requests", misses, AtomicLong::doubleValue)
+                    .tag("layer", layer)
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+            Gauge.builder("product.cache.hit.ratio", () -> {
+                        long h = hits.get();
+                        long total = h + misses.get();
+                        return total == 0 ? 0.0 : (double) h / total;
+                    })
+                    .tag("layer", layer)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.demo.ec.storage.application;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+// Redis lease that lets only one instance run a change relay at a time. The lease expires after `ttl`, so a crashed
+// holder is replaced on a later poll; the holder renews it after every batch. Renew and release only touch the key
+// while this instance still owns it. HotSkuReservationService also takes the hot-SKU flush lock with it.
+final class RelayLock {
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+    private final Duration ttl;
+    private final String owner = UUID.randomUUID().toString();
+
+    RelayLock(StringRedisTemplate redisTemplate, String key, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.key = key;
+        this.ttl = ttl;
+    }
+
+    boolean tryAcquire() {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, owner, ttl));
+    }
+
+    // Returns false when the lease was lost (expired and possibly taken by another instance).
+    boolean renew() {
+        Long renewed = redisTemplate.execute(RENEW, List.of(key), owner, String.valueOf(ttl.toMillis()));
+        return Objects.equals(renewed, 1L);
+    }
+
+    void release() {
+        redisTemplate.execute(UNLOCK, List.of(key), owner);
+    }
+}
@@ -0,0 +1,124 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.gateway.StorageMapper;
+import com.demo.ec.storage.gateway.messaging.kafka.StockEventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Relays t_storage changes to Kafka by polling update_time, so the search index knows which products are in stock.
+// Works like ProductChangeRelay: rows are read in (update_time, id) order after a persisted watermark that only
+// advances once the broker has acknowledged the batch. AT and Saga deductions and compensations touch update_time,
+// so no write path has to publish on its own; a row changed several times between polls is sent once.
+// The TCC demo keeps its stock in tcc_storage and is not relayed.
+// As there, one instance at a time polls, under a Redis relay lock.
+@Component
+public class StockChangeRelay {
+    private static final Logger log = LoggerFactory.getLogger(StockChangeRelay.class);
+    private static final String WATERMARK_KEY = "stock-events:watermark";
+    private static final String LOCK_KEY = "stock-events:relay-lock";
+
+    private final StorageMapper storageMapper;
+    private final StockEventPublisher stockEventPublisher;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration settleTime;
+    private final long sendTimeoutMs;
+    private final RelayLock lock;
+
+    public StockChangeRelay(
+            StorageMapper storageMapper,
+            StockEventPublisher stockEventPublisher,
+            StringRedisTemplate redisTemplate,
+            @Value("${app.stock-events.enabled:true}") boolean enabled,
+            @Value("${app.stock-events.batch-size:500}") int batchSize,
+            @Value("${app.stock-events.settle-time:2s}") Duration settleTime,
+            @Value("${app.stock-events.send-timeout-ms:10000}") long sendTimeoutMs,
+            @Value("${app.stock-events.lock-ttl:30s}") Duration lockTtl) {
+        this.storageMapper = storageMapper;
+        this.stockEventPublisher = stockEventPublisher;
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(batchSize, 1);
+        this.settleTime = settleTime;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.lock = new RelayLock(redisTemplate, LOCK_KEY, lockTtl);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock-events.poll-interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        Watermark watermark = null;
+        boolean locked = false;
+        try {
+            locked = lock.tryAcquire();
+            if (!locked) {
+                return;
+            }
+            // Read every poll: the last run may have been on another instance
+            watermark = loadWatermark();
+            List<Storage> changed;
+            do {
+                changed = storageMapper.selectList(changedSince(watermark));
+                if (changed.isEmpty()) {
+                    return;
+                }
+                stockEventPublisher.publishChanged(changed, sendTimeoutMs);
+                Storage last = changed.get(changed.size() - 1);
+                watermark = new Watermark(last.getUpdateTime(), last.getId());
+                saveWatermark(watermark);
+                log.info("Stock changes relayed count={} watermark={}", changed.size(), watermark);
+                if (!lock.renew()) {
+                    log.warn("Stock change relay lost its lock, stopping at watermark={}", watermark);
+                    return;
+                }
+            } while (changed.size() == batchSize);
+        } catch (Exception ex) {
+            log.warn("Stock change relay failed, retrying from watermark={} err={}", watermark, ex.toString());
+        } finally {
+            if (locked) {
+                lock.release();
+            }
+        }
+    }
+
+    private LambdaQueryWrapper<Storage> changedSince(Watermark mark) {
+        return new LambdaQueryWrapper<Storage>()
+                .and(w -> w.gt(Storage::getUpdateTime, mark.updatedAt())
+                        .or(o -> o.eq(Storage::getUpdateTime, mark.updatedAt()).gt(Storage::getId, mark.id())))
+                .apply("update_time <= DATE_SUB(NOW(), INTERVAL {0} SECOND)", settleTime.toSeconds())
+                .orderByAsc(Storage::getUpdateTime, Storage::getId)
+                .last("LIMIT " + batchSize);
+    }
+
+    // Without a stored watermark every row is relayed once, which gives the index its initial stock levels.
+    private Watermark loadWatermark() {
+        String stored = redisTemplate.opsForValue().get(WATERMARK_KEY);
+        if (stored != null) {
+            String[] parts = stored.split("\\|", 2);
+            return new Watermark(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        }
+        Watermark initial = new Watermark(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+        log.info("Stock change relay starting from watermark={}", initial);
+        return initial;
+    }
+
+    private void saveWatermark(Watermark mark) {
+        redisTemplate.opsForValue().set(WATERMARK_KEY, mark.updatedAt() + "|" + mark.id());
+    }
+
+    private record Watermark(LocalDateTime updatedAt, long id) {
+    }
+}
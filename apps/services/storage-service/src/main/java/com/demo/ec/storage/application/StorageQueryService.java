@@ -5,6 +5,8 @@ import com.demo.ec.storage.domain.Storage;
 import com.demo.ec.storage.gateway.StorageMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -20,4 +22,12 @@ public class StorageQueryService {
                 new LambdaQueryWrapper<Storage>().eq(Storage::getProductId, productId));
         return Optional.ofNullable(storage);
     }
+
+    public List<Storage> findByProductIds(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return storageMapper.selectList(
+                new LambdaQueryWrapper<Storage>().in(Storage::getProductId, productIds));
+    }
 }
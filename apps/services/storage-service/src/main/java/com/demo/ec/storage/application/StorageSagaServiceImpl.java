@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class StorageSagaServiceImpl implements StorageSagaService {
@@ -17,20 +18,46 @@ public class StorageSagaServiceImpl implements StorageSagaService {
 
     private final StorageMapper storageMapper;
     private final StorageTxStepLogMapper txStepLogMapper;
+    private final HotSkuReservationService hotSkuReservationService;
+    private final DeductGroupCommitter deductGroupCommitter;
+    private final TransactionTemplate transactionTemplate;
 
-    private static final String STEP_DEDUCT = "STORAGE_DEDUCT";
+    static final String STEP_DEDUCT = "STORAGE_DEDUCT";
     private static final String STEP_COMPENSATE = "STORAGE_COMPENSATE";
     private static final String STEP_CONFIRM = "STORAGE_CONFIRM";
 
-    public StorageSagaServiceImpl(StorageMapper storageMapper, StorageTxStepLogMapper txStepLogMapper) {
+    public StorageSagaServiceImpl(StorageMapper storageMapper, StorageTxStepLogMapper txStepLogMapper,
+                                  HotSkuReservationService hotSkuReservationService,
+                                  DeductGroupCommitter deductGroupCommitter, TransactionTemplate transactionTemplate) {
         this.storageMapper = storageMapper;
         this.txStepLogMapper = txStepLogMapper;
+        this.hotSkuReservationService = hotSkuReservationService;
+        this.deductGroupCommitter = deductGroupCommitter;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    // Not @Transactional: callers waiting for a group commit must not hold a connection of their own.
     @Override
-    @Transactional
     public boolean deduct(Long productId, Integer count, String orderNo) {
         log.info("[SAGA][Storage] deduct begin: orderNo={}, productId={}, count={}", orderNo, productId, count);
+        if (hotSkuReservationService.handles(productId)) {
+            // Flagged flash-sale SKUs are reserved in Redis and written to t_storage by HotSkuWriteBehind
+            return hotSkuReservationService.reserve(productId, count, orderNo);
+        }
+        if (deductGroupCommitter.enabled()) {
+            if (orderNo == null || orderNo.trim().isEmpty()) {
+                throw new IllegalArgumentException("orderNo must not be blank");
+            }
+            try {
+                return deductGroupCommitter.deduct(productId, count, orderNo);
+            } catch (DeductGroupCommitter.GroupCommitAbortedException ex) {
+                log.info("[SAGA][Storage] group deduct aborted, retrying alone. orderNo={}", orderNo);
+            }
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> deductSingle(productId, count, orderNo)));
+    }
+
+    private boolean deductSingle(Long productId, Integer count, String orderNo) {
         Long logId = createStepIfAbsent(orderNo, STEP_DEDUCT);
         if (logId == null) {
             log.info("[SAGA][Storage] deduct already processed. orderNo={}", orderNo);
@@ -56,6 +83,9 @@ public class StorageSagaServiceImpl implements StorageSagaService {
     @Transactional
     public boolean compensate(Long productId, Integer count, String orderNo) {
         log.info("[SAGA][Storage] compensate begin: orderNo={}, productId={}, count={}", orderNo, productId, count);
+        if (hotSkuReservationService.handles(productId)) {
+            return hotSkuReservationService.compensate(productId, count, orderNo);
+        }
         Long logId = createStepIfAbsent(orderNo, STEP_COMPENSATE);
         if (logId == null) {
             log.info("[SAGA][Storage] compensate already processed. orderNo={}", orderNo);
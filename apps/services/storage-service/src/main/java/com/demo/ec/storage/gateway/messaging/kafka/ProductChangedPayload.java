@@ -0,0 +1,16 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+public record ProductChangedPayload(
+        @JsonProperty("productId") Long productId,
+        @JsonProperty("categoryId") Long categoryId,
+        @JsonProperty("name") String name,
+        @JsonProperty("description") String description,
+        @JsonProperty("price") BigDecimal price,
+        @JsonProperty("status") String status,
+        @JsonProperty("createdAt") String createdAt,
+        @JsonProperty("updatedAt") String updatedAt
+) {}
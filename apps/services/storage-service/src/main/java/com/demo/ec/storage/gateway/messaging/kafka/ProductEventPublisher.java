@@ -0,0 +1,75 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+import com.demo.ec.storage.domain.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Publishes ProductChanged events keyed by productId, so changes to one product stay ordered within a partition.
+@Component
+public class ProductEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(ProductEventPublisher.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String productsEventsTopic;
+
+    public ProductEventPublisher(
+            KafkaTemplate<String, String> kafkaTemplate,
+            ObjectMapper objectMapper,
+            @Value("${ec-demo.kafka.topics.products-events:" + TopicNames.PRODUCTS_EVENTS_V1 + "}") String productsEventsTopic
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.productsEventsTopic = productsEventsTopic;
+    }
+
+    /**
+     * Sends one event per product and waits until the broker has acknowledged all of them.
+     * Throws if any send fails, so the caller can retry the whole batch (consumers are idempotent per product).
+     */
+    public void publishChanged(List<Product> products, long timeoutMs) throws Exception {
+        List<CompletableFuture<?>> sends = new ArrayList<>(products.size());
+        for (Product product : products) {
+            String productId = String.valueOf(product.getId());
+            ProductChangedEvent event = new ProductChangedEvent(
+                    UUID.randomUUID().toString(),
+                    "ProductChanged",
+                    1,
+                    "Product",
+                    productId,
+                    Instant.now().toString(),
+                    new ProductChangedPayload(
+                            product.getId(),
+                            product.getCategoryId(),
+                            product.getName(),
+                            product.getDescription(),
+                            product.getPrice(),
+                            product.getStatus(),
+                            toInstant(product.getCreatedAt()),
+                            toInstant(product.getUpdatedAt())
+                    )
+            );
+            sends.add(kafkaTemplate.send(productsEventsTopic, productId, objectMapper.writeValueAsString(event)));
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(timeoutMs, TimeUnit.MILLISECONDS);
+        log.debug("[Kafka] published eventType=ProductChanged count={}", products.size());
+    }
+
+    // Timestamps are stored in UTC (serverTimezone=UTC on the datasource URL)
+    private static String toInstant(LocalDateTime time) {
+        return time == null ? null : time.toInstant(ZoneOffset.UTC).toString();
+    }
+}
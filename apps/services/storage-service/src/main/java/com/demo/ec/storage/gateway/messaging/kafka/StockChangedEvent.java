@@ -0,0 +1,13 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record StockChangedEvent(
+        @JsonProperty("eventId") String eventId,
+        @JsonProperty("eventType") String eventType,
+        @JsonProperty("schemaVersion") int schemaVersion,
+        @JsonProperty("aggregateType") String aggregateType,
+        @JsonProperty("aggregateId") String aggregateId,
+        @JsonProperty("occurredAt") String occurredAt,
+        @JsonProperty("payload") StockChangedPayload payload
+) {}
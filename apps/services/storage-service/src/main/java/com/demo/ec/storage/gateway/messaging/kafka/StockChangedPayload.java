@@ -0,0 +1,11 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record StockChangedPayload(
+        @JsonProperty("productId") Long productId,
+        @JsonProperty("total") Integer total,
+        @JsonProperty("residue") Integer residue,
+        @JsonProperty("frozen") Integer frozen,
+        @JsonProperty("updatedAt") String updatedAt
+) {}
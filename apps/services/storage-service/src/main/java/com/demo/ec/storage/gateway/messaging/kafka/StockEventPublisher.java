@@ -0,0 +1,72 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+import com.demo.ec.storage.domain.Storage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Publishes StockChanged events keyed by productId, so stock changes of one product stay ordered within a partition.
+@Component
+public class StockEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(StockEventPublisher.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String stockEventsTopic;
+
+    public StockEventPublisher(
+            KafkaTemplate<String, String> kafkaTemplate,
+            ObjectMapper objectMapper,
+            @Value("${ec-demo.kafka.topics.stock-events:" + TopicNames.STOCK_EVENTS_V1 + "}") String stockEventsTopic
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.stockEventsTopic = stockEventsTopic;
+    }
+
+    /**
+     * Sends one event per stock row and waits until the broker has acknowledged all of them.
+     * Throws if any send fails, so the caller can retry the whole batch (events carry absolute values).
+     */
+    public void publishChanged(List<Storage> stocks, long timeoutMs) throws Exception {
+        List<CompletableFuture<?>> sends = new ArrayList<>(stocks.size());
+        for (Storage stock : stocks) {
+            String productId = String.valueOf(stock.getProductId());
+            StockChangedEvent event = new StockChangedEvent(
+                    UUID.randomUUID().toString(),
+                    "StockChanged",
+                    1,
+                    "Stock",
+                    productId,
+                    Instant.now().toString(),
+                    new StockChangedPayload(
+                            stock.getProductId(),
+                            stock.getTotal(),
+                            stock.getResidue(),
+                            stock.getFrozen(),
+                            toInstant(stock.getUpdateTime())
+                    )
+            );
+            sends.add(kafkaTemplate.send(stockEventsTopic, productId, objectMapper.writeValueAsString(event)));
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(timeoutMs, TimeUnit.MILLISECONDS);
+        log.debug("[Kafka] published eventType=StockChanged count={}", stocks.size());
+    }
+
+    // Timestamps are stored in UTC (serverTimezone=UTC on the datasource URL)
+    private static String toInstant(LocalDateTime time) {
+        return time == null ? null : time.toInstant(ZoneOffset.UTC).toString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.demo.ec.storage.gateway.messaging.kafka;
+
+public final class TopicNames {
+    public static final String PRODUCTS_EVENTS_V1 = "ec-demo.products.events.v1";
+    public static final String STOCK_EVENTS_V1 = "ec-demo.stock.events.v1";
+
+    private TopicNames() {}
+}
@@ -0,0 +1,87 @@
+package com.demo.ec.storage.gateway.messaging.redis;
+
+import com.demo.ec.storage.application.ProductNearCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Broadcasts product cache invalidations to every storage-service instance over Redis pub/sub.
+// Messages are "<origin>|<productId>[,<productId>...]" or "<origin>|*"; an instance ignores its own messages because it has
+// already updated its near-cache when it sent them.
+@Component
+public class ProductCacheInvalidation implements MessageListener {
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheInvalidation.class);
+    private static final String ALL = "*";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductNearCache nearCache;
+    private final String channel;
+    private final String origin = UUID.randomUUID().toString();
+
+    public ProductCacheInvalidation(
+            StringRedisTemplate redisTemplate,
+            ProductNearCache nearCache,
+            @Value("${app.product-cache.invalidation-channel:product-cache:invalidate}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.channel = channel;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    public void publish(Long productId) {
+        send(String.valueOf(productId));
+    }
+
+    // One message for the whole batch, so a batch write costs a single publish.
+    public void publish(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        send(productIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    public void publishAll() {
+        send(ALL);
+    }
+
+    private void send(String target) {
+        try {
+            redisTemplate.convertAndSend(channel, origin + "|" + target);
+        } catch (Exception ex) {
+            log.warn("Product cache invalidation publish failed target={} err={}", target, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.indexOf('|');
+        if (sep < 0 || body.substring(0, sep).equals(origin)) {
+            return;
+        }
+        String target = body.substring(sep + 1);
+        if (ALL.equals(target)) {
+            nearCache.clear();
+            return;
+        }
+        try {
+            for (String productId : target.split(",")) {
+                nearCache.invalidate(Long.parseLong(productId));
+            }
+        } catch (NumberFormatException ex) {
+            log.warn("Invalid product cache invalidation message={}", body);
+        }
+    }
+}
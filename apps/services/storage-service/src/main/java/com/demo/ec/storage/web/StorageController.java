@@ -1,5 +1,7 @@
 package com.demo.ec.storage.web;
 
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.web.dto.BatchLookupRequest;
 import com.demo.ec.storage.web.dto.CommonResponse;
 import com.demo.ec.storage.web.dto.DeductRequest;
 import com.demo.ec.storage.web.dto.ProductResponse;
@@ -23,6 +25,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Objects;
+
 @RestController
 @RequestMapping("/api/storage")
 public class StorageController {
@@ -184,13 +189,30 @@ public class StorageController {
     @GetMapping("/stocks/{productId}")
     public ResponseEntity<CommonResponse<StockResponse>> getStock(@PathVariable("productId") Long productId) {
         return storageQueryService.findByProductId(productId)
-                .map(storage -> ResponseEntity.ok(CommonResponse.ok(
-                        new StockResponse(storage.getProductId(), storage.getTotal(),
-                                storage.getUsed(), storage.getResidue(), storage.getFrozen()))))
+                .map(storage -> ResponseEntity.ok(CommonResponse.ok(toStockResponse(storage))))
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(CommonResponse.fail("Stock not found for productId: " + productId)));
     }
 
+    // Batch lookups return only the products that exist; callers treat missing ids as not found.
+    @PostMapping("/products:batch")
+    public CommonResponse<List<ProductResponse>> getProducts(@Valid @RequestBody BatchLookupRequest req) {
+        return CommonResponse.ok(productCatalogService.findByIds(req.getProductIds()));
+    }
+
+    @PostMapping("/stocks:batch")
+    public CommonResponse<List<StockResponse>> getStocks(@Valid @RequestBody BatchLookupRequest req) {
+        List<Long> productIds = req.getProductIds().stream().filter(Objects::nonNull).distinct().toList();
+        return CommonResponse.ok(storageQueryService.findByProductIds(productIds).stream()
+                .map(this::toStockResponse)
+                .toList());
+    }
+
+    private StockResponse toStockResponse(Storage storage) {
+        return new StockResponse(storage.getProductId(), storage.getTotal(),
+                storage.getUsed(), storage.getResidue(), storage.getFrozen());
+    }
+
     @ExceptionHandler(StorageATServiceImpl.InsufficientStockException.class)
     public ResponseEntity<CommonResponse<Void>> handleStock(StorageATServiceImpl.InsufficientStockException ex) {
         return ResponseEntity.badRequest().body(CommonResponse.fail(ex.getMessage()));
@@ -0,0 +1,21 @@
+package com.demo.ec.storage.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BatchLookupRequest {
+    public static final int MAX_IDS = 200;
+
+    @NotEmpty(message = "productIds is required")
+    @Size(max = MAX_IDS, message = "productIds must not exceed " + MAX_IDS + " entries")
+    @JsonProperty("productIds")
+    @JsonAlias({"product_ids", "productIDs"})
+    private List<Long> productIds;
+
+    public List<Long> getProductIds() { return productIds; }
+    public void setProductIds(List<Long> productIds) { this.productIds = productIds; }
+}
@@ -0,0 +1,199 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.domain.StorageTxStepLog;
+import com.demo.ec.storage.gateway.StorageMapper;
+import com.demo.ec.storage.gateway.StorageTxStepLogMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DeductGroupCommitterTest {
+    private static final Long PRODUCT_ID = 1L;
+
+    private StorageMapper storageMapper;
+    private StorageTxStepLogMapper txStepLogMapper;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService callers;
+    private DeductGroupCommitter committer;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // The lambda wrappers resolve column names from MyBatis-Plus table metadata
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, Storage.class);
+        TableInfoHelper.initTableInfo(assistant, StorageTxStepLog.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        storageMapper = mock(StorageMapper.class);
+        txStepLogMapper = mock(StorageTxStepLogMapper.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(storageMapper.update(isNull(), any())).thenReturn(1);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (committer != null) {
+            committer.shutdown();
+        }
+    }
+
+    @Test
+    void admitsOrdersInArrivalOrderWhileResidueLasts() throws Exception {
+        residue(5);
+        processed();
+        // A full batch flushes at once, so the long window never elapses
+        committer = committer(Duration.ofSeconds(10), 3, Duration.ofSeconds(5));
+
+        Future<Object> first = deduct("order-1", 3);
+        Thread.sleep(100);
+        Future<Object> second = deduct("order-2", 3);
+        Thread.sleep(100);
+        Future<Object> third = deduct("order-3", 2);
+
+        assertEquals(true, first.get(5, TimeUnit.SECONDS));
+        assertEquals(StorageATServiceImpl.InsufficientStockException.class, second.get(5, TimeUnit.SECONDS));
+        assertEquals(true, third.get(5, TimeUnit.SECONDS));
+        assertTrue(updateSql().contains("residue = residue - 5"), updateSql());
+        assertEquals(List.of("order-1", "order-3"), insertedOrders());
+    }
+
+    @Test
+    void countsProcessedAndDuplicateOrdersOnce() throws Exception {
+        residue(10);
+        processed("order-1");
+        committer = committer(Duration.ofSeconds(10), 3, Duration.ofSeconds(5));
+
+        Future<Object> done = deduct("order-1", 2);
+        Future<Object> retry1 = deduct("order-2", 2);
+        Future<Object> retry2 = deduct("order-2", 2);
+
+        assertEquals(true, done.get(5, TimeUnit.SECONDS));
+        assertEquals(true, retry1.get(5, TimeUnit.SECONDS));
+        assertEquals(true, retry2.get(5, TimeUnit.SECONDS));
+        assertTrue(updateSql().contains("residue = residue - 2"), updateSql());
+        assertEquals(List.of("order-2"), insertedOrders());
+    }
+
+    @Test
+    void skipsTheUpdateWhenNothingIsAdmitted() throws Exception {
+        residue(1);
+        processed("order-1");
+        committer = committer(Duration.ofSeconds(10), 2, Duration.ofSeconds(5));
+
+        Future<Object> done = deduct("order-1", 1);
+        Future<Object> tooLarge = deduct("order-2", 2);
+
+        assertEquals(true, done.get(5, TimeUnit.SECONDS));
+        assertEquals(StorageATServiceImpl.InsufficientStockException.class, tooLarge.get(5, TimeUnit.SECONDS));
+        verify(storageMapper, never()).update(isNull(), any());
+        verify(txStepLogMapper, never()).insert(anyCollection());
+    }
+
+    @Test
+    void abortsEveryCallerWhenTheGroupTransactionFails() throws Exception {
+        doThrow(new IllegalStateException("deadlock")).when(transactionTemplate).execute(any());
+        committer = committer(Duration.ofSeconds(10), 2, Duration.ofSeconds(5));
+
+        Future<Object> first = deduct("order-1", 1);
+        Future<Object> second = deduct("order-2", 1);
+
+        assertEquals(DeductGroupCommitter.GroupCommitAbortedException.class, first.get(5, TimeUnit.SECONDS));
+        assertEquals(DeductGroupCommitter.GroupCommitAbortedException.class, second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void withdrawsACallerThatTimesOutBeforeTheFlush() throws Exception {
+        committer = committer(Duration.ofMillis(300), 100, Duration.ofMillis(50));
+
+        assertEquals(DeductGroupCommitter.GroupCommitAbortedException.class,
+                deduct("order-1", 1).get(5, TimeUnit.SECONDS));
+        Thread.sleep(600);
+
+        // The window elapsed with an empty batch, so no transaction ran for the withdrawn order
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private DeductGroupCommitter committer(Duration window, int maxBatchSize, Duration awaitTimeout) {
+        return new DeductGroupCommitter(storageMapper, txStepLogMapper, transactionTemplate, new SimpleMeterRegistry(),
+                true, window, maxBatchSize, 1, awaitTimeout);
+    }
+
+    // Completes with the result of deduct, or with the class of the exception it threw
+    private Future<Object> deduct(String orderNo, int count) {
+        return callers.submit(() -> {
+            try {
+                return committer.deduct(PRODUCT_ID, count, orderNo);
+            } catch (RuntimeException ex) {
+                return ex.getClass();
+            }
+        });
+    }
+
+    private void residue(int residue) {
+        Storage storage = new Storage();
+        storage.setProductId(PRODUCT_ID);
+        storage.setResidue(residue);
+        when(storageMapper.selectOne(any())).thenReturn(storage);
+    }
+
+    private void processed(String... orderNos) {
+        List<StorageTxStepLog> steps = new ArrayList<>();
+        for (String orderNo : orderNos) {
+            StorageTxStepLog step = new StorageTxStepLog();
+            step.setOrderNo(orderNo);
+            steps.add(step);
+        }
+        when(txStepLogMapper.selectList(any())).thenReturn(steps);
+    }
+
+    private String updateSql() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Wrapper<Storage>> update = ArgumentCaptor.forClass(Wrapper.class);
+        verify(storageMapper).update(isNull(), update.capture());
+        return update.getValue().getSqlSet();
+    }
+
+    private List<String> insertedOrders() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<StorageTxStepLog>> steps = ArgumentCaptor.forClass(Collection.class);
+        verify(txStepLogMapper).insert(steps.capture());
+        return steps.getValue().stream().map(StorageTxStepLog::getOrderNo).toList();
+    }
+}
@@ -0,0 +1,220 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.gateway.StorageMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Runs the reservation scripts against a real Redis (REDIS_HOST / REDIS_PORT / REDIS_PASSWORD, as the application
+// uses them) and is skipped when none is reachable. t_storage is a mock holding the residue the stock is seeded from.
+class HotSkuReservationServiceTest {
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private StorageMapper storageMapper;
+    private HotSkuReservationService service;
+    private Long productId;
+
+    @BeforeAll
+    static void connect() {
+        // The seed query's lambda wrapper resolves column names from MyBatis-Plus table metadata
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Storage.class);
+
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                env("REDIS_HOST", "localhost"), Integer.parseInt(env("REDIS_PORT", "6379")));
+        config.setPassword(env("REDIS_PASSWORD", "123456"));
+        connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        boolean reachable;
+        try {
+            reachable = "PONG".equals(redisTemplate.execute(connection -> connection.ping(), true));
+        } catch (Exception ex) {
+            reachable = false;
+        }
+        Assumptions.assumeTrue(reachable, "Redis not reachable; skipping hot-SKU script tests");
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        // A product id of its own per test, so runs never see each other's keys
+        productId = ThreadLocalRandom.current().nextLong(1_000_000_000L, Long.MAX_VALUE);
+        storageMapper = mock(StorageMapper.class);
+        service = new HotSkuReservationService(redisTemplate, storageMapper, new SimpleMeterRegistry(), true,
+                productId.toString(), Duration.ofMinutes(5), Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        Set<String> keys = redisTemplate.keys("hot-sku:{" + productId + "}:*");
+        if (keys != null && !keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        residue(50);
+        ExecutorService callers = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String orderNo = "order-" + i;
+                results.add(callers.submit(() -> {
+                    try {
+                        return service.reserve(productId, 1, orderNo);
+                    } catch (StorageATServiceImpl.InsufficientStockException ex) {
+                        return false;
+                    }
+                }));
+            }
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                reserved += result.get() ? 1 : 0;
+            }
+
+            assertEquals(50, reserved);
+            assertEquals("0", stock());
+            assertEquals(50, journal().size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void reservationIsTakenOncePerOrder() {
+        residue(10);
+
+        assertTrue(service.reserve(productId, 3, "order-1"));
+        assertTrue(service.reserve(productId, 3, "order-1"));
+
+        assertEquals("7", stock());
+        assertEquals(List.of("STORAGE_DEDUCT|order-1|3"), journal());
+    }
+
+    @Test
+    void compensationBeforeItsReservationBlocksTheReservation() {
+        residue(10);
+        service.reserve(productId, 1, "order-0");
+
+        assertTrue(service.compensate(productId, 3, "order-1"));
+        assertTrue(service.reserve(productId, 3, "order-1"));
+
+        assertEquals("9", stock());
+        assertEquals(List.of("STORAGE_DEDUCT|order-0|1"), journal());
+    }
+
+    @Test
+    void compensationRestoresWhatWasReservedOnce() {
+        residue(10);
+
+        service.reserve(productId, 4, "order-1");
+        service.compensate(productId, 4, "order-1");
+        service.compensate(productId, 4, "order-1");
+
+        assertEquals("10", stock());
+        assertEquals(List.of("STORAGE_DEDUCT|order-1|4", "STORAGE_COMPENSATE|order-1|4"), journal());
+    }
+
+    @Test
+    void insufficientStockIsRejected() {
+        residue(2);
+
+        assertThrows(StorageATServiceImpl.InsufficientStockException.class,
+                () -> service.reserve(productId, 3, "order-1"));
+        assertEquals("2", stock());
+    }
+
+    @Test
+    void stockIsNotSeededWhileTheJournalIsUnflushed() {
+        residue(10);
+        service.reserve(productId, 4, "order-1");
+        // The stock key is lost (evicted or deleted) before the write-behind applied the reservation
+        redisTemplate.delete(HotSkuReservationService.stockKey(productId));
+
+        assertThrows(IllegalStateException.class, () -> service.reserve(productId, 1, "order-2"));
+        assertNull(stock());
+    }
+
+    @Test
+    void compensationWithoutStockIsOnlyJournaled() {
+        residue(10);
+        service.reserve(productId, 4, "order-1");
+        redisTemplate.delete(HotSkuReservationService.stockKey(productId));
+
+        service.compensate(productId, 4, "order-1");
+
+        // Restoring onto a missing key would create a stock of 4; the seed reads it from t_storage after the flush
+        assertNull(stock());
+        assertEquals(List.of("STORAGE_DEDUCT|order-1|4", "STORAGE_COMPENSATE|order-1|4"), journal());
+    }
+
+    @Test
+    void stockIsNotSeededWhileAFlushHoldsTheLock() {
+        residue(10);
+        String lockKey = HotSkuReservationService.flushLockKey(productId);
+        redisTemplate.opsForValue().set(lockKey, "write-behind", Duration.ofSeconds(30));
+
+        assertThrows(IllegalStateException.class, () -> service.reserve(productId, 1, "order-1"));
+        assertNull(stock());
+
+        redisTemplate.delete(lockKey);
+        assertTrue(service.reserve(productId, 1, "order-1"));
+        assertEquals("9", stock());
+    }
+
+    private void residue(int residue) {
+        Storage storage = new Storage();
+        storage.setProductId(productId);
+        storage.setResidue(residue);
+        when(storageMapper.selectOne(any())).thenReturn(storage);
+    }
+
+    private String stock() {
+        return redisTemplate.opsForValue().get(HotSkuReservationService.stockKey(productId));
+    }
+
+    private List<String> journal() {
+        return redisTemplate.opsForList().range(HotSkuReservationService.journalKey(productId), 0, -1);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
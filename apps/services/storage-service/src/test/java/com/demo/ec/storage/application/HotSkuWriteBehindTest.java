@@ -0,0 +1,131 @@
+package com.demo.ec.storage.application;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.demo.ec.storage.domain.Storage;
+import com.demo.ec.storage.domain.StorageTxStepLog;
+import com.demo.ec.storage.gateway.StorageMapper;
+import com.demo.ec.storage.gateway.StorageTxStepLogMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotSkuWriteBehindTest {
+    private static final Long PRODUCT_ID = 1L;
+    private static final String JOURNAL = HotSkuReservationService.journalKey(PRODUCT_ID);
+
+    private StorageMapper storageMapper;
+    private StorageTxStepLogMapper txStepLogMapper;
+    private ListOperations<String, String> journal;
+    private HotSkuWriteBehind writeBehind;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // The lambda wrappers resolve column names from MyBatis-Plus table metadata
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, Storage.class);
+        TableInfoHelper.initTableInfo(assistant, StorageTxStepLog.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        storageMapper = mock(StorageMapper.class);
+        txStepLogMapper = mock(StorageTxStepLogMapper.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        journal = mock(ListOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(redisTemplate.opsForList()).thenReturn(journal);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        HotSkuReservationService reservations = mock(HotSkuReservationService.class);
+        when(reservations.productIds()).thenReturn(Set.of(PRODUCT_ID));
+
+        writeBehind = new HotSkuWriteBehind(reservations, storageMapper, txStepLogMapper, redisTemplate,
+                transactionTemplate, new SimpleMeterRegistry(), 500, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void appliesTheNetChangeOfTheJournal() {
+        when(journal.range(JOURNAL, 0, 499)).thenReturn(List.of(
+                "STORAGE_DEDUCT|order-1|2", "STORAGE_DEDUCT|order-2|3", "STORAGE_COMPENSATE|order-1|2"));
+        when(txStepLogMapper.insert(any(StorageTxStepLog.class))).thenReturn(1);
+
+        writeBehind.flush();
+
+        assertTrue(updateSql().contains("residue = residue - 3"), updateSql());
+        verify(journal).trim(JOURNAL, 3, -1);
+    }
+
+    @Test
+    void replayedEntriesAreNotCountedAgain() {
+        // A crash between the commit and LTRIM leaves applied entries in the journal
+        when(journal.range(JOURNAL, 0, 499)).thenReturn(List.of(
+                "STORAGE_DEDUCT|order-1|2", "STORAGE_DEDUCT|order-2|3"));
+        when(txStepLogMapper.insert(any(StorageTxStepLog.class)))
+                .thenThrow(new DuplicateKeyException("uk_order_step"))
+                .thenReturn(1);
+
+        writeBehind.flush();
+
+        assertTrue(updateSql().contains("residue = residue - 3"), updateSql());
+        verify(journal).trim(JOURNAL, 2, -1);
+    }
+
+    @Test
+    void aFullyReplayedBatchLeavesStockAlone() {
+        when(journal.range(JOURNAL, 0, 499)).thenReturn(List.of("STORAGE_DEDUCT|order-1|2"));
+        when(txStepLogMapper.insert(any(StorageTxStepLog.class))).thenThrow(new DuplicateKeyException("uk_order_step"));
+
+        writeBehind.flush();
+
+        verify(storageMapper, never()).update(isNull(), any());
+        verify(journal).trim(JOURNAL, 1, -1);
+    }
+
+    @Test
+    void anEmptyJournalIsNotTrimmed() {
+        when(journal.range(JOURNAL, 0, 499)).thenReturn(List.of());
+
+        writeBehind.flush();
+
+        verify(journal, never()).trim(eq(JOURNAL), anyLong(), anyLong());
+        verify(storageMapper, never()).update(isNull(), any());
+    }
+
+    private String updateSql() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Wrapper<Storage>> update = ArgumentCaptor.forClass(Wrapper.class);
+        verify(storageMapper).update(isNull(), update.capture());
+        return update.getValue().getSqlSet();
+    }
+}
@@ -7,9 +7,24 @@ import type { Product } from '../store'
 export interface SearchApiResponse {
   items: ProductCard[]
   total: number
+  /** 'gte' のとき total は件数の下限（上限を超えたため数え打ち切り） */
+  totalRelation?: 'eq' | 'gte'
   page: number
   size: number
   didYouMean?: string
+  nextCursor?: string
+  facets?: SearchFacets
+  /** シャードのタイムアウトなどで結果が不完全な場合 true */
+  partial?: boolean
+}
+
+/**
+ * 検索結果のファセット件数（facets=true 指定時のみ）
+ * 各ファセットは自身のフィルタを除いた条件で集計される
+ */
+export interface SearchFacets {
+  categories: { categoryId: number; count: number }[]
+  priceRanges: { key: string; from?: number; to?: number; count: number }[]
 }
 
 /**
@@ -22,6 +37,7 @@ export interface ProductCard {
   price: number
   thumbnailUrl: string
   createdAt: string
+  inStock?: boolean
 }
 
 /**
@@ -37,18 +37,40 @@ else
     -H 'Content-Type: application/json' \
     -d @- <<'JSON'
 {
+  "settings": {
+    "analysis": {
+      "tokenizer": {
+        "title_ngram": { "type": "ngram", "min_gram": 2, "max_gram": 3, "token_chars": ["letter", "digit"] }
+      },
+      "analyzer": {
+        "title_ngram": { "type": "custom", "tokenizer": "title_ngram", "filter": ["cjk_width", "lowercase"] }
+      }
+    }
+  },
   "mappings": {
     "properties": {
       "productId": { "type": "long" },
       "title": {
         "type": "text",
-        "fields": { "keyword": { "type": "keyword", "ignore_above": 256 } }
+        "fields": {
+          "keyword": { "type": "keyword", "ignore_above": 256 },
+          "ngram": { "type": "text", "analyzer": "title_ngram" },
+          "suggest": {
+            "type": "completion",
+            "contexts": [ { "name": "status", "type": "category", "path": "status" } ]
+          }
+        }
       },
       "description": { "type": "text" },
       "price": { "type": "long" },
       "status": { "type": "keyword" },
+      "categoryId": { "type": "long" },
       "thumbnailUrl": { "type": "keyword" },
-      "createdAt": { "type": "date" }
+      "createdAt": { "type": "date" },
+      "imageHash": { "type": "keyword", "index": false },
+      "contentHash": { "type": "keyword", "index": false },
+      "residue": { "type": "integer" },
+      "inStock": { "type": "boolean" }
     }
   }
 }
@@ -0,0 +1,104 @@
+#!/bin/bash
+
+# ホット SKU 在庫引当ベンチマーク・整合性チェックスクリプト
+# storage-service の Saga 引当 API (/api/storage/deduct/saga) に同一商品への注文を並列で投げ、
+# スループットを計測したうえで「売り越しがないこと」と「write-behind 後の t_storage 残数が一致すること」を確認する
+#
+# 比較手順:
+#   1. HOT_SKU_ENABLED=false SAGA_GROUP_COMMIT_ENABLED=false で storage-service を起動して実行（1 リクエスト 1 トランザクション）
+#   2. HOT_SKU_ENABLED=false SAGA_GROUP_COMMIT_ENABLED=true で再起動して実行（グループコミット経路）
+#   3. HOT_SKU_ENABLED=true HOT_SKU_PRODUCT_IDS=<商品ID> で再起動して実行（Redis Lua 経路）
+#   ※ 実行前に対象商品の在庫 (t_storage.residue) を同じ値に戻しておくこと
+#
+# Usage:
+#   ./test-hot-sku-bench.sh [productId] [requests] [concurrency] [count]
+#
+# 例:
+#   ./test-hot-sku-bench.sh 1 2000 64 1
+
+set -e
+
+# デフォルト値
+PRODUCT_ID="${1:-1}"
+REQUESTS="${2:-1000}"
+CONCURRENCY="${3:-32}"
+COUNT="${4:-1}"
+STORAGE_BASE_URL="${STORAGE_BASE_URL:-http://localhost:8083}"
+FLUSH_WAIT_SECONDS="${FLUSH_WAIT_SECONDS:-30}"
+RESULTS=$(mktemp)
+trap 'rm -f "${RESULTS}"' EXIT
+
+residue() {
+  curl -fsS "${STORAGE_BASE_URL}/api/storage/stocks/${PRODUCT_ID}" | jq -r '.data.residue'
+}
+
+INITIAL=$(residue)
+RUN_ID=$(date +%s)
+
+echo "=========================================="
+echo "ホット SKU 在庫引当ベンチマーク"
+echo "=========================================="
+echo "API URL:          ${STORAGE_BASE_URL}/api/storage/deduct/saga"
+echo "Product ID:       ${PRODUCT_ID}"
+echo "Requests:         ${REQUESTS} (count=${COUNT}, concurrency=${CONCURRENCY})"
+echo "初期在庫:         ${INITIAL}"
+echo ""
+
+# 並列引当（注文番号は実行ごとに一意）
+export STORAGE_BASE_URL PRODUCT_ID COUNT RUN_ID
+START=$(date +%s.%N)
+seq 1 "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} sh -c '
+  curl -sS -X POST "${STORAGE_BASE_URL}/api/storage/deduct/saga" -H "Content-Type: application/json" \
+    -d "{\"productId\":${PRODUCT_ID},\"count\":${COUNT},\"orderNo\":\"bench-${RUN_ID}-{}\"}" \
+    | jq -r ".success"
+' >> "${RESULTS}"
+END=$(date +%s.%N)
+
+SUCCESS=$(grep -c '^true$' "${RESULTS}" || true)
+FAILED=$((REQUESTS - SUCCESS))
+ELAPSED=$(echo "${END} - ${START}" | bc)
+RPS=$(echo "scale=1; ${REQUESTS} / ${ELAPSED}" | bc)
+RESERVED=$((SUCCESS * COUNT))
+EXPECTED=$((INITIAL - RESERVED))
+
+echo "成功: ${SUCCESS} / 失敗: ${FAILED}"
+printf '所要時間: %.2fs  スループット: %s req/s\n' "${ELAPSED}" "${RPS}"
+echo ""
+
+# write-behind の反映待ち（ホット SKU モードでは t_storage への反映が非同期）
+FINAL=$(residue)
+for _ in $(seq 1 "${FLUSH_WAIT_SECONDS}"); do
+  if [ "${FINAL}" -eq "${EXPECTED}" ]; then
+    break
+  fi
+  sleep 1
+  FINAL=$(residue)
+done
+
+# 整合性チェック
+STATUS=0
+if [ "${RESERVED}" -gt "${INITIAL}" ]; then
+  echo "NG: 売り越し (引当 ${RESERVED} > 初期在庫 ${INITIAL})"
+  STATUS=1
+else
+  echo "OK: 売り越しなし (引当 ${RESERVED} <= 初期在庫 ${INITIAL})"
+fi
+if [ "${FINAL}" -ne "${EXPECTED}" ]; then
+  echo "NG: t_storage 残数不一致 (実際 ${FINAL} / 期待 ${EXPECTED})"
+  STATUS=1
+else
+  echo "OK: t_storage 残数一致 (${FINAL})"
+fi
+if [ $((REQUESTS * COUNT)) -ge "${INITIAL}" ] && [ "${RESERVED}" -lt $((INITIAL - COUNT + 1)) ]; then
+  echo "WARN: 需要が在庫を上回ったのに在庫が残っている (残 ${FINAL})。失敗理由をログで確認すること"
+fi
+
+# Redis 側の在庫（redis-cli がある場合のみ）
+if command -v redis-cli > /dev/null 2>&1; then
+  REDIS_STOCK=$(redis-cli -h "${REDIS_HOST:-localhost}" -p "${REDIS_PORT:-6379}" GET "hot-sku:{${PRODUCT_ID}}:stock")
+  if [ -n "${REDIS_STOCK}" ]; then
+    echo "Redis 在庫:       ${REDIS_STOCK}"
+  fi
+fi
+
+exit "${STATUS}"
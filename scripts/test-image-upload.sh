@@ -0,0 +1,41 @@
+#!/bin/bash
+
+# es-service 画像アップロード確認スクリプト
+# presigned URL で MinIO へ直接アップロードし、完了通知でサムネイル生成を非同期に実行する
+# Usage:
+#   ./test-image-upload.sh <productId> <imageFile>
+#
+# 例:
+#   ./test-image-upload.sh 1001 ./sample.jpg
+
+set -e
+
+PRODUCT_ID="${1:?productId を指定してください}"
+IMAGE_FILE="${2:?画像ファイルを指定してください}"
+ES_SERVICE_URL="${ES_SERVICE_URL:-http://localhost:8086}"
+FILENAME=$(basename "${IMAGE_FILE}")
+
+echo "=========================================="
+echo "es-service 画像アップロード (presigned)"
+echo "=========================================="
+echo "Product ID:       ${PRODUCT_ID}"
+echo "Image:            ${IMAGE_FILE}"
+echo "API URL:          ${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image"
+echo ""
+
+# 1. アップロード先 URL を発行
+UPLOAD=$(curl -s -X POST "${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image/upload-url?filename=${FILENAME}")
+OBJECT_NAME=$(echo "${UPLOAD}" | jq -r '.objectName')
+UPLOAD_URL=$(echo "${UPLOAD}" | jq -r '.uploadUrl')
+CONTENT_TYPE=$(echo "${UPLOAD}" | jq -r '.contentType')
+echo "objectName:       ${OBJECT_NAME}"
+
+# 2. MinIO へ直接 PUT（es-service を経由しない）
+curl -s -f -X PUT -H "Content-Type: ${CONTENT_TYPE}" --upload-file "${IMAGE_FILE}" "${UPLOAD_URL}" \
+  -w "PUT:              %{http_code} (%{time_total}s)\n" -o /dev/null
+
+# 3. 完了通知（サムネイル生成はバックグラウンドで実行される）
+curl -s -X POST "${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image/complete?objectName=${OBJECT_NAME}" | jq .
+
+echo ""
+echo "サムネイル生成の状況: ${ES_SERVICE_URL}/actuator/metrics/es.thumbnail.render"
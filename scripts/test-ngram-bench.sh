@@ -0,0 +1,126 @@
+#!/bin/bash
+
+# タイトル部分一致ベンチマークスクリプト
+# 合成カタログを Elasticsearch に直接投入し、変更前 (multi_match + fuzziness AUTO) と
+# 変更後 (title.ngram サブフィールドへの match) のクエリ took・ヒット件数を比較する
+# Usage:
+#   ./test-ngram-bench.sh [docs] [requests]
+#
+# 例:
+#   ./test-ngram-bench.sh 100000 200
+
+set -e
+
+# デフォルト値
+DOCS="${1:-50000}"
+REQUESTS="${2:-100}"
+ES_BASE_URL="${ES_BASE_URL:-http://localhost:9200}"
+INDEX="${INDEX:-bench_ngram_products}"
+BATCH=5000
+
+echo "=========================================="
+echo "タイトル部分一致ベンチマーク (fuzzy vs n-gram)"
+echo "=========================================="
+echo "ES:               ${ES_BASE_URL}"
+echo "Index:            ${INDEX}"
+echo "Docs:             ${DOCS}"
+echo "Requests:         ${REQUESTS}"
+echo ""
+
+# インデックス作成（IndexAdminService.createIndex と同じ title マッピング）
+curl -s -o /dev/null -X DELETE "${ES_BASE_URL}/${INDEX}"
+curl -fsS -o /dev/null -X PUT "${ES_BASE_URL}/${INDEX}" -H 'Content-Type: application/json' -d @- <<'JSON'
+{
+  "settings": {
+    "number_of_replicas": 0,
+    "refresh_interval": "-1",
+    "analysis": {
+      "tokenizer": {
+        "title_ngram": { "type": "ngram", "min_gram": 2, "max_gram": 3, "token_chars": ["letter", "digit"] }
+      },
+      "analyzer": {
+        "title_ngram": { "type": "custom", "tokenizer": "title_ngram", "filter": ["cjk_width", "lowercase"] }
+      }
+    }
+  },
+  "mappings": {
+    "properties": {
+      "productId": { "type": "long" },
+      "title": {
+        "type": "text",
+        "fields": {
+          "keyword": { "type": "keyword", "ignore_above": 256 },
+          "ngram": { "type": "text", "analyzer": "title_ngram" }
+        }
+      },
+      "description": { "type": "text" },
+      "status": { "type": "keyword" }
+    }
+  }
+}
+JSON
+
+# 合成カタログ投入（ブランド × 品目 × 色 × 型番の日本語タイトル）
+echo "合成カタログを投入中..."
+BRANDS=(ナイキ アディダス ユニクロ 無印良品 パナソニック ソニー シャープ 象印 タイガー アイリスオーヤマ)
+ITEMS=(ランニングシューズ スニーカー ダウンジャケット 電気ケトル 炊飯器 ワイヤレスイヤホン 加湿器 掃除機 トートバッグ 腕時計)
+COLORS=(ブラック ホワイト ネイビー レッド グレー ベージュ)
+for ((start = 1; start <= DOCS; start += BATCH)); do
+  end=$((start + BATCH - 1))
+  if [ "${end}" -gt "${DOCS}" ]; then
+    end="${DOCS}"
+  fi
+  for ((i = start; i <= end; i++)); do
+    title="${BRANDS[$((i % 10))]} ${ITEMS[$((i / 10 % 10))]} ${COLORS[$((i / 100 % 6))]} ${i}型"
+    printf '{"index":{"_id":"%d"}}\n{"productId":%d,"title":"%s","description":"%s の説明文","status":"ACTIVE"}\n' \
+      "${i}" "${i}" "${title}" "${title}"
+  done | curl -fsS -o /dev/null -X POST "${ES_BASE_URL}/${INDEX}/_bulk" -H 'Content-Type: application/x-ndjson' \
+    --data-binary @-
+done
+curl -fsS -o /dev/null -X POST "${ES_BASE_URL}/${INDEX}/_refresh"
+curl -fsS -o /dev/null -X POST "${ES_BASE_URL}/${INDEX}/_forcemerge?max_num_segments=1"
+
+# 変更前: SearchService の旧クエリ（3 文字以上で fuzziness AUTO）
+before_query() {
+  jq -n --arg q "$1" '{size: 20, track_total_hits: true, query: {bool: {
+    must: {multi_match: {query: $q, fields: ["title^3", "description"], fuzziness: "AUTO"}},
+    filter: {term: {status: "ACTIVE"}}}}}'
+}
+
+# 変更後: title.ngram への match を should で併用
+after_query() {
+  jq -n --arg q "$1" '{size: 20, track_total_hits: true, query: {bool: {
+    must: {bool: {should: [
+      {multi_match: {query: $q, fields: ["title^3", "description"]}},
+      {match: {"title.ngram": {query: $q, minimum_should_match: "75%"}}}
+    ], minimum_should_match: 1}},
+    filter: {term: {status: "ACTIVE"}}}}}'
+}
+
+# took の p50 / p99 / 平均とヒット件数を表示する（request_cache は無効化）
+measure() {
+  local label="$1" body="$2"
+  local hits
+  hits=$(echo "${body}" | curl -fsS -X POST "${ES_BASE_URL}/${INDEX}/_search?request_cache=false" \
+    -H 'Content-Type: application/json' --data-binary @- | jq '.hits.total.value')
+  local times
+  times=$(for _ in $(seq 1 "${REQUESTS}"); do
+    echo "${body}" | curl -fsS -X POST "${ES_BASE_URL}/${INDEX}/_search?request_cache=false" \
+      -H 'Content-Type: application/json' --data-binary @- | jq '.took'
+  done | sort -n)
+  local p50 p99 avg
+  p50=$(echo "${times}" | awk -v n="${REQUESTS}" 'NR==int(n*0.50)+1 {print $1}')
+  p99=$(echo "${times}" | awk -v n="${REQUESTS}" 'NR==int(n*0.99) {print $1}')
+  avg=$(echo "${times}" | awk '{s+=$1} END {printf "%.2f", s/NR}')
+  printf '  %-7s took avg=%sms p50=%sms p99=%sms hits=%s\n' "${label}" "${avg}" "${p50}" "${p99}" "${hits}"
+}
+
+# 完全一致 / 部分一致（語の途中）/ 表記ゆれ（半角カナ）の代表クエリ
+for Q in "ワイヤレスイヤホン" "イヤホン" "ケトル" "アイリス" "ダウン ネイビー" "ﾅｲｷ"; do
+  echo "q=${Q}"
+  measure "before" "$(before_query "${Q}")"
+  measure "after" "$(after_query "${Q}")"
+done
+
+echo ""
+echo "後片付け: curl -X DELETE ${ES_BASE_URL}/${INDEX}"
@@ -0,0 +1,51 @@
+#!/bin/bash
+
+# es-service Search API ベンチマークスクリプト
+# 1 ページ 20 件 / 100 件の検索レイテンシとレスポンスサイズを計測する（結果キャッシュは Cache-Control: no-cache で回避）
+# ヒットのデシリアライズとカード変換だけを従来実装と比較する場合は es-service の JMH ベンチマーク (SearchHitMappingBenchmark) を使う:
+#   mvn -Pjmh -pl apps/services/es-service test-compile exec:exec -Djmh.args="SearchHitMappingBenchmark -prof gc"
+# Usage:
+#   ./test-search-bench.sh [q] [requests]
+#
+# 例:
+#   ./test-search-bench.sh "iPhone" 500
+
+set -e
+
+# デフォルト値
+Q="${1:-}"
+REQUESTS="${2:-200}"
+ES_SERVICE_URL="${ES_SERVICE_URL:-http://localhost:8086}"
+
+ENCODED_Q=$(printf '%s' "${Q}" | jq -s -R -r @uri)
+
+echo "=========================================="
+echo "es-service Search API ベンチマーク"
+echo "=========================================="
+echo "Query (q):        ${Q}"
+echo "Requests:         ${REQUESTS}"
+echo "API URL:          ${ES_SERVICE_URL}/api/search/products"
+echo ""
+
+for SIZE in 20 100; do
+  URL="${ES_SERVICE_URL}/api/search/products?q=${ENCODED_Q}&page=0&size=${SIZE}"
+
+  # ウォームアップ
+  for _ in $(seq 1 20); do
+    curl -s -o /dev/null -H 'Cache-Control: no-cache' "${URL}"
+  done
+
+  TIMES=$(for _ in $(seq 1 "${REQUESTS}"); do
+    curl -s -o /dev/null -H 'Cache-Control: no-cache' -w '%{time_total}\n' "${URL}"
+  done | sort -n)
+
+  P50=$(echo "${TIMES}" | awk -v n="${REQUESTS}" 'NR==int(n*0.50)+1 {printf "%.2f", $1*1000}')
+  P99=$(echo "${TIMES}" | awk -v n="${REQUESTS}" 'NR==int(n*0.99) {printf "%.2f", $1*1000}')
+  AVG=$(echo "${TIMES}" | awk '{s+=$1} END {printf "%.2f", s/NR*1000}')
+  BYTES=$(curl -s -H 'Cache-Control: no-cache' -o /dev/null -w '%{size_download}' "${URL}")
+
+  echo "size=${SIZE}: avg=${AVG}ms p50=${P50}ms p99=${P99}ms response=${BYTES}bytes"
+done
+
+echo ""
+echo "JVM の割り当て量: ${ES_SERVICE_URL}/actuator/metrics/jvm.gc.memory.allocated"
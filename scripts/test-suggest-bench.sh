@@ -0,0 +1,51 @@
+#!/bin/bash
+
+# es-service Suggest API ベンチマークスクリプト
+# in-JVM インデックス (engine=local) と Elasticsearch (engine=elasticsearch) のレイテンシを比較する
+# Usage:
+#   ./test-suggest-bench.sh [q] [requests] [size]
+#
+# 例:
+#   ./test-suggest-bench.sh "ナイキ" 500 10
+
+set -e
+
+# デフォルト値
+Q="${1:-ap}"
+REQUESTS="${2:-200}"
+SIZE="${3:-10}"
+ES_SERVICE_URL="${ES_SERVICE_URL:-http://localhost:8086}"
+
+ENCODED_Q=$(printf '%s' "${Q}" | jq -s -R -r @uri)
+
+echo "=========================================="
+echo "es-service Suggest API ベンチマーク"
+echo "=========================================="
+echo "Query (q):        ${Q}"
+echo "Requests:         ${REQUESTS}"
+echo "Size:             ${SIZE}"
+echo "API URL:          ${ES_SERVICE_URL}/api/search/suggest"
+echo ""
+
+for ENGINE in elasticsearch local; do
+  URL="${ES_SERVICE_URL}/api/search/suggest?q=${ENCODED_Q}&size=${SIZE}&engine=${ENGINE}"
+
+  # ウォームアップ
+  for _ in $(seq 1 20); do
+    curl -s -o /dev/null "${URL}"
+  done
+
+  TIMES=$(for _ in $(seq 1 "${REQUESTS}"); do
+    curl -s -o /dev/null -w '%{time_total}\n' "${URL}"
+  done | sort -n)
+
+  P50=$(echo "${TIMES}" | awk -v n="${REQUESTS}" 'NR==int(n*0.50)+1 {printf "%.2f", $1*1000}')
+  P99=$(echo "${TIMES}" | awk -v n="${REQUESTS}" 'NR==int(n*0.99) {printf "%.2f", $1*1000}')
+  AVG=$(echo "${TIMES}" | awk '{s+=$1} END {printf "%.2f", s/NR*1000}')
+
+  echo "engine=${ENGINE}: avg=${AVG}ms p50=${P50}ms p99=${P99}ms"
+  echo "  sample: $(curl -s "${URL}" | jq -c '.suggestions')"
+done
+
+echo ""
+echo "サーバー側の内訳: ${ES_SERVICE_URL}/actuator/metrics/es.suggest.latency?tag=engine:local"
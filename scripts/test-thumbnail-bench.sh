@@ -0,0 +1,68 @@
+#!/bin/bash
+
+# es-service サムネイル生成ベンチマークスクリプト
+# 同じ画像を繰り返しアップロードし、Actuator メトリクスから 1 枚あたりの処理時間・デコード画素数・割り当てバイト数を表示する
+# 起動中の設定での計測のみ。THUMB_SUBSAMPLING=false は現行実装のサブサンプリング無効化であり、従来実装 (Thumbnails.of(InputStream)) との比較にはならない
+# 従来実装との比較は es-service の JMH ベンチマーク (ThumbnailRenderBenchmark) を使う:
+#   mvn -Pjmh -pl apps/services/es-service test-compile exec:exec -Djmh.args="ThumbnailRenderBenchmark -prof gc"
+# Usage:
+#   ./test-thumbnail-bench.sh <image-file> [requests] [productId]
+#
+# 例:
+#   ./test-thumbnail-bench.sh ./sample/large.jpg 100 1
+
+set -e
+
+IMAGE_FILE="${1:?Usage: $0 <image-file> [requests] [productId]}"
+REQUESTS="${2:-50}"
+PRODUCT_ID="${3:-1}"
+ES_SERVICE_URL="${ES_SERVICE_URL:-http://localhost:8086}"
+
+metric() {
+  # $1: メトリクス名, $2: statistic (COUNT / TOTAL / TOTAL_TIME / MAX)
+  curl -s "${ES_SERVICE_URL}/actuator/metrics/$1" \
+    | jq -r --arg s "$2" '[.measurements[] | select(.statistic == $s) | .value][0] // 0'
+}
+
+echo "=========================================="
+echo "es-service サムネイル生成ベンチマーク"
+echo "=========================================="
+echo "Image:            ${IMAGE_FILE}"
+echo "Requests:         ${REQUESTS}"
+echo "API URL:          ${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image"
+echo ""
+
+# ウォームアップ
+for _ in $(seq 1 5); do
+  curl -s -o /dev/null -F "file=@${IMAGE_FILE}" "${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image"
+done
+
+COUNT0=$(metric es.thumbnail.render COUNT)
+TIME0=$(metric es.thumbnail.render TOTAL_TIME)
+PIXELS0=$(metric es.thumbnail.decoded.pixels TOTAL)
+ALLOC0=$(metric es.thumbnail.allocated.bytes TOTAL)
+
+START=$(date +%s.%N)
+for _ in $(seq 1 "${REQUESTS}"); do
+  curl -s -o /dev/null -F "file=@${IMAGE_FILE}" "${ES_SERVICE_URL}/internal/products/${PRODUCT_ID}/image"
+done
+END=$(date +%s.%N)
+
+COUNT1=$(metric es.thumbnail.render COUNT)
+TIME1=$(metric es.thumbnail.render TOTAL_TIME)
+PIXELS1=$(metric es.thumbnail.decoded.pixels TOTAL)
+ALLOC1=$(metric es.thumbnail.allocated.bytes TOTAL)
+IN_FLIGHT=$(metric es.thumbnail.pixels.in_flight VALUE)
+
+awk -v c0="${COUNT0}" -v c1="${COUNT1}" -v t0="${TIME0}" -v t1="${TIME1}" \
+    -v p0="${PIXELS0}" -v p1="${PIXELS1}" -v a0="${ALLOC0}" -v a1="${ALLOC1}" \
+    -v start="${START}" -v end="${END}" -v inflight="${IN_FLIGHT}" 'BEGIN {
+  n = c1 - c0
+  if (n <= 0) { print "サムネイル生成が記録されませんでした"; exit 1 }
+  printf "renders:              %d\n", n
+  printf "render avg (ms):      %.1f\n", (t1 - t0) / n * 1000
+  printf "decoded px / render:  %.0f\n", (p1 - p0) / n
+  printf "allocated MB / render: %.1f\n", (a1 - a0) / n / 1048576
+  printf "throughput (req/s):   %.1f\n", n / (end - start)
+  printf "in-flight pixels now: %.0f\n", inflight
+}'